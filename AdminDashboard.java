@@ -191,16 +191,32 @@ public class AdminDashboard extends JFrame {
         panel.setBackground(isDarkMode ? darkBackground : lightBackground);
         panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
 
-        // Add stat cards
-        panel.add(createStatCard("Total Users", getTotalUsers()));
-        panel.add(createStatCard("Total Books", getTotalBooks()));
-        panel.add(createStatCard("Active Loans", getActiveLoanCount()));
-        panel.add(createStatCard("Pending Approvals", getPendingApprovals()));
+        // Add stat cards; the counts are filled in once loaded
+        JLabel usersLabel = new JLabel("...");
+        JLabel booksLabel = new JLabel("...");
+        JLabel loansLabel = new JLabel("...");
+        JLabel approvalsLabel = new JLabel("...");
+        panel.add(createStatCard("Total Users", usersLabel));
+        panel.add(createStatCard("Total Books", booksLabel));
+        panel.add(createStatCard("Active Loans", loansLabel));
+        panel.add(createStatCard("Pending Approvals", approvalsLabel));
+
+        DatabaseExecutor.submitRead(panel, conn -> new int[]{
+            getTotalUsers(conn),
+            getTotalBooks(conn),
+            getActiveLoanCount(conn),
+            getPendingApprovals(conn)
+        }, counts -> {
+            usersLabel.setText(String.valueOf(counts[0]));
+            booksLabel.setText(String.valueOf(counts[1]));
+            loansLabel.setText(String.valueOf(counts[2]));
+            approvalsLabel.setText(String.valueOf(counts[3]));
+        }, Exception::printStackTrace);
 
         return panel;
     }
 
-    private JPanel createStatCard(String title, int value) {
+    private JPanel createStatCard(String title, JLabel valueLabel) {
         JPanel card = new JPanel(new BorderLayout(5, 5));
         card.setBackground(isDarkMode ? new Color(45, 45, 45) : new Color(255, 255, 255));
         card.setBorder(BorderFactory.createCompoundBorder(
@@ -212,7 +228,6 @@ public class AdminDashboard extends JFrame {
         titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
         titleLabel.setForeground(isDarkMode ? Color.WHITE : Color.BLACK);
         
-        JLabel valueLabel = new JLabel(String.valueOf(value));
         valueLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
         valueLabel.setForeground(isDarkMode ? new Color(70, 130, 180) : new Color(70, 130, 180));
         
@@ -291,76 +306,37 @@ public class AdminDashboard extends JFrame {
     }
 
     private void loadPendingApprovalsCount() {
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            String query = "SELECT COUNT(*) FROM users WHERE is_active = false";
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(query);
-            
-            if (rs.next() && rs.getInt(1) > 0) {
-                updateStatus("You have " + rs.getInt(1) + " pending user approvals");
+        DatabaseExecutor.submit(statusLabel, this::getPendingApprovals, pending -> {
+            if (pending > 0) {
+                updateStatus("You have " + pending + " pending user approvals");
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        }, Exception::printStackTrace);
     }
 
     // Database utility methods
-    private int getTotalUsers() {
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users WHERE is_active = true");
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0;
+    private int getTotalUsers(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users WHERE is_active = true");
+        return rs.next() ? rs.getInt(1) : 0;
     }
 
-    private int getTotalBooks() {
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM books WHERE is_active = true");
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0;
+    private int getTotalBooks(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM books WHERE is_active = true");
+        return rs.next() ? rs.getInt(1) : 0;
     }
 
-    private int getActiveLoanCount() {
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(
-                "SELECT COUNT(*) FROM book_borrowings WHERE status = 'BORROWED'"
-            );
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0;
+    private int getActiveLoanCount(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery(
+            "SELECT COUNT(*) FROM book_borrowings WHERE status = 'BORROWED'"
+        );
+        return rs.next() ? rs.getInt(1) : 0;
     }
 
-    private int getPendingApprovals() {
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users WHERE is_active = false");
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0;
+    private int getPendingApprovals(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users WHERE is_active = false");
+        return rs.next() ? rs.getInt(1) : 0;
     }
 }
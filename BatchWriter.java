@@ -0,0 +1,178 @@
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes many rows through one parameterized INSERT or UPDATE using JDBC batches.
+ *
+ * Rows are buffered and sent batchSize at a time with addBatch/executeBatch; on MySQL
+ * the driver rewrites batched inserts into multi-row INSERT statements. If a batch
+ * fails, it is rolled back and replayed one row at a time, so every good row is
+ * written and each bad row is reported by its position in the order rows were added.
+ *
+ * With autocommit on, each batch commits on its own. Inside a caller's transaction the
+ * writer uses savepoints and leaves the commit to the caller.
+ */
+public class BatchWriter implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = Integer.getInteger("library.db.batchSize", 500);
+
+    public static class RowError {
+        private final int row;
+        private final SQLException error;
+
+        RowError(int row, SQLException error) {
+            this.row = row;
+            this.error = error;
+        }
+
+        /** Zero-based position of the failed row among all rows added. */
+        public int getRow() { return row; }
+        public SQLException getError() { return error; }
+    }
+
+    public static class Result {
+        private final int succeeded;
+        private final List<RowError> errors;
+
+        Result(int succeeded, List<RowError> errors) {
+            this.succeeded = succeeded;
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        public int getSucceeded() { return succeeded; }
+        public List<RowError> getErrors() { return errors; }
+        public boolean hasErrors() { return !errors.isEmpty(); }
+
+        public boolean failed(int row) {
+            for (RowError error : errors) {
+                if (error.getRow() == row) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final Connection conn;
+    private final PreparedStatement stmt;
+    private final int batchSize;
+    private final List<Object[]> pending = new ArrayList<>();
+    private final List<RowError> errors = new ArrayList<>();
+    private int flushedRows = 0;
+    private int succeeded = 0;
+
+    public BatchWriter(Connection conn, String sql) throws SQLException {
+        this(conn, sql, DEFAULT_BATCH_SIZE);
+    }
+
+    public BatchWriter(Connection conn, String sql, int batchSize) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        this.conn = conn;
+        this.stmt = conn.prepareStatement(sql);
+        this.batchSize = batchSize;
+    }
+
+    /** Queues one row; values bind to the statement's parameters in order. */
+    public void add(Object... values) throws SQLException {
+        pending.add(values);
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /** Sends the queued rows now. */
+    public void flush() throws SQLException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        boolean ownTransaction = conn.getAutoCommit();
+        Savepoint savepoint = null;
+        if (ownTransaction) {
+            conn.setAutoCommit(false);
+        } else {
+            savepoint = conn.setSavepoint();
+        }
+
+        try {
+            try {
+                for (Object[] row : pending) {
+                    bind(row);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                succeeded += pending.size();
+            } catch (BatchUpdateException e) {
+                if (ConnectionPool.isFatal(e)) {
+                    throw e;
+                }
+                // Drivers differ in how far a failed batch got, so undo it and go row by row
+                stmt.clearBatch();
+                if (ownTransaction) {
+                    conn.rollback();
+                } else {
+                    conn.rollback(savepoint);
+                }
+                replayRows();
+            }
+
+            if (ownTransaction) {
+                conn.commit();
+            } else {
+                conn.releaseSavepoint(savepoint);
+            }
+        } catch (SQLException e) {
+            if (ownTransaction) {
+                conn.rollback();
+            } else {
+                conn.rollback(savepoint);
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                conn.setAutoCommit(true);
+            }
+            flushedRows += pending.size();
+            pending.clear();
+        }
+    }
+
+    /** Flushes what is left and returns the outcome for every row added. */
+    public Result finish() throws SQLException {
+        flush();
+        return new Result(succeeded, new ArrayList<>(errors));
+    }
+
+    @Override
+    public void close() throws SQLException {
+        stmt.close();
+    }
+
+    private void replayRows() throws SQLException {
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                bind(pending.get(i));
+                stmt.executeUpdate();
+                succeeded++;
+            } catch (SQLException rowError) {
+                if (ConnectionPool.isFatal(rowError)) {
+                    throw rowError;
+                }
+                errors.add(new RowError(flushedRows + i, rowError));
+            }
+        }
+    }
+
+    private void bind(Object[] row) throws SQLException {
+        for (int i = 0; i < row.length; i++) {
+            stmt.setObject(i + 1, row[i]);
+        }
+    }
+}
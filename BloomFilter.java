@@ -0,0 +1,72 @@
+/**
+ * Bloom filter over long keys: answers "definitely absent" or "possibly present".
+ *
+ * It is sized from the number of keys expected and the false positive rate wanted,
+ * which at 1% is under 10 bits per key, whatever the keys are. Each key sets k bits
+ * chosen by double hashing one 64-bit mix of it. Once more keys than expected are
+ * added the false positive rate climbs; the owner should rebuild it larger.
+ * Not thread-safe.
+ */
+public class BloomFilter {
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashes;
+    private final int expected;
+    private int size = 0;
+
+    /**
+     * @param expected          keys the filter should hold at the given rate
+     * @param falsePositiveRate e.g. 0.01 for one false "possibly present" in a hundred
+     */
+    public BloomFilter(int expected, double falsePositiveRate) {
+        this.expected = Math.max(1, expected);
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-this.expected * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bits = new long[(int) Math.max(1, (m + 63) / 64)];
+        this.bitCount = bits.length * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) bitCount / this.expected * ln2));
+    }
+
+    public void add(long key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        size++;
+    }
+
+    /** False means the key was never added; true means it probably was. */
+    public boolean mightContain(long key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Keys added, counting repeats. */
+    public int size() {
+        return size;
+    }
+
+    /** True once more keys were added than the filter was sized for. */
+    public boolean isOverfull() {
+        return size > expected;
+    }
+
+    // SplitMix64 finalizer: consecutive ISBNs land on unrelated bits
+    static long mix(long key) {
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return key ^ (key >>> 31);
+    }
+}
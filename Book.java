@@ -1,32 +1,54 @@
-public class Book {
-    private int id;
-    private String isbn;
-    private String title;
-    private String author;
-    private String publisher;
-    private int publicationYear;
-    private int quantity;
-    private int availableQuantity;
-    private boolean isActive;
+/**
+ * A row of the books table, as read by CatalogService. Immutable: columns outside the
+ * projection a query selected are null or 0, and a changed copy is a new Book.
+ */
+public final class Book {
+    private final int id;
+    private final String isbn;
+    private final String title;
+    private final String author;
+    private final String publisher;
+    private final int publicationYear;
+    private final String category;
+    private final int quantity;
+    private final int availableQuantity;
+    private final boolean isActive;
 
-    public Book(int id, String isbn, String title, String author, String publisher, 
-                int publicationYear, int quantity, int availableQuantity, boolean isActive) {
+    public Book(int id, String isbn, String title, String author, String publisher, int publicationYear,
+                String category, int quantity, int availableQuantity, boolean isActive) {
         this.id = id;
         this.isbn = isbn;
         this.title = title;
         this.author = author;
         this.publisher = publisher;
         this.publicationYear = publicationYear;
+        this.category = category;
         this.quantity = quantity;
         this.availableQuantity = availableQuantity;
         this.isActive = isActive;
     }
 
-    // Getters and Setters
+    /** A book as the catalog listings show it: no publisher or publication year. */
+    public static Book listing(int id, String isbn, String title, String author, String category,
+                               int quantity, int availableQuantity, boolean isActive) {
+        return new Book(id, isbn, title, author, null, 0, category, quantity, availableQuantity, isActive);
+    }
+
+    // Getters
     public int getId() { return id; }
     public String getIsbn() { return isbn; }
     public String getTitle() { return title; }
     public String getAuthor() { return author; }
+    public String getPublisher() { return publisher; }
+    public int getPublicationYear() { return publicationYear; }
+    public String getCategory() { return category; }
+    public int getQuantity() { return quantity; }
     public int getAvailableQuantity() { return availableQuantity; }
     public boolean isActive() { return isActive; }
+
+    /** This book with another available quantity, e.g. after an issue or a return. */
+    public Book withAvailableQuantity(int availableQuantity) {
+        return new Book(id, isbn, title, author, publisher, publicationYear, category,
+                        quantity, availableQuantity, isActive);
+    }
 }
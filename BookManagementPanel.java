@@ -2,12 +2,23 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.*;
+import java.util.List;
 
 public class BookManagementPanel extends JPanel {
+    // Result of an add turned away because the ISBN is already in the catalog
+    private static final int DUPLICATE_ISBN = -1;
+    private static final CatalogService.Projection COLUMNS = CatalogService.Projection.of(
+        CatalogService.Column.TITLE, CatalogService.Column.AUTHOR, CatalogService.Column.CATEGORY,
+        CatalogService.Column.QUANTITY, CatalogService.Column.AVAILABLE_QUANTITY);
+
     private int userId;
     private boolean isDarkMode;
     private JTable booksTable;
     private DefaultTableModel tableModel;
+    private KeysetPager pager;
+    private FacetBar facetBar;
+    // Bumped by every load, so facet counts from an older one are dropped
+    private int facetRequest = 0;
     private JTextField titleField, authorField, categoryField, quantityField, isbnField;
     private Color darkBackground = new Color(33, 33, 33);
     private Color lightBackground = new Color(242, 242, 242);
@@ -52,6 +63,10 @@ public class BookManagementPanel extends JPanel {
 
         booksTable = new JTable(tableModel);
         JScrollPane scrollPane = new JScrollPane(booksTable);
+        pager = new KeysetPager(this, "books", booksTable, COLUMNS, CatalogService.Filter.ACTIVE,
+            this::toRow, ex -> showError("Error loading books: " + ex.getMessage()));
+        facetBar = new FacetBar(this::loadBooks, true);
+        facetBar.setTextColor(isDarkMode ? Color.WHITE : Color.BLACK);
 
         // Button Panel
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
@@ -73,10 +88,15 @@ public class BookManagementPanel extends JPanel {
         buttonPanel.add(clearButton);
 
         // Add components to main panel
+        JPanel controls = new JPanel(new BorderLayout());
+        controls.setOpaque(false);
+        controls.add(buttonPanel, BorderLayout.CENTER);
+        controls.add(facetBar, BorderLayout.SOUTH);
+
         JPanel topPanel = new JPanel(new BorderLayout());
         topPanel.setBackground(isDarkMode ? darkBackground : lightBackground);
         topPanel.add(inputPanel, BorderLayout.CENTER);
-        topPanel.add(buttonPanel, BorderLayout.SOUTH);
+        topPanel.add(controls, BorderLayout.SOUTH);
 
         add(topPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
@@ -111,58 +131,100 @@ public class BookManagementPanel extends JPanel {
     }
 
     private void loadBooks() {
-        tableModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            String sql = "SELECT * FROM books WHERE is_active = 1";
-            try (PreparedStatement stmt = conn.prepareStatement(sql);
-                 ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Object[] row = {
-                        rs.getInt("book_id"),
-                        rs.getString("title"),
-                        rs.getString("author"),
-                        rs.getString("category"),
-                        rs.getInt("quantity"),
-                        rs.getInt("available_quantity")
-                    };
-                    tableModel.addRow(row);
-                }
-            }
-        } catch (SQLException ex) {
-            showError("Error loading books: " + ex.getMessage());
+        String category = facetBar.getCategory();
+        boolean availableOnly = facetBar.isAvailableOnly();
+        boolean filtered = category != null || availableOnly;
+        int request = ++facetRequest;
+        if (!filtered) {
+            // The unfiltered listing does not need the facets, so paint it straight away
+            pager.setIdFilter(null);
+            pager.reload();
         }
+        DatabaseExecutor.submitLatest(this, "facets", conn ->
+            FacetIndex.getInstance(conn).select(null, category, availableOnly),
+        facets -> {
+            if (request != facetRequest) {
+                return;
+            }
+            facetBar.update(facets);
+            if (filtered) {
+                pager.setIdFilter(facets.getIds());
+                pager.reload();
+            }
+        }, ex -> showError("Error loading books: " + ex.getMessage()));
+    }
+
+    private Object[] toRow(Book book) {
+        return new Object[]{
+            book.getId(),
+            book.getTitle(),
+            book.getAuthor(),
+            book.getCategory(),
+            book.getQuantity(),
+            book.getAvailableQuantity()
+        };
     }
 
     private void addBook() {
         if (!validateInputs()) return;
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        int quantity = Integer.parseInt(quantityField.getText().trim());
+        String title = titleField.getText().trim();
+        String author = authorField.getText().trim();
+        String category = categoryField.getText().trim();
+        String isbn = Isbn.normalize(isbnField.getText().trim());
+        if (isbn == null) {
+            showError("ISBN must be a valid ISBN-10 or ISBN-13");
+            return;
+        }
+
+        DatabaseExecutor.submit(this, conn -> {
+            IsbnIndex isbns = IsbnIndex.getInstance(conn);
+            if (isbns.contains(isbn)) {
+                return DUPLICATE_ISBN;
+            }
             String sql = "INSERT INTO books (title, author, category, quantity, available_quantity, isbn, is_active) VALUES (?, ?, ?, ?, ?, ?, 1)";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                int quantity = Integer.parseInt(quantityField.getText().trim());
-                stmt.setString(1, titleField.getText().trim());
-                stmt.setString(2, authorField.getText().trim());
-                stmt.setString(3, categoryField.getText().trim());
+            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                stmt.setString(1, title);
+                stmt.setString(2, author);
+                stmt.setString(3, category);
                 stmt.setInt(4, quantity);
                 stmt.setInt(5, quantity);
-                stmt.setString(6, isbnField.getText().trim());
+                stmt.setString(6, isbn);
                 
-                stmt.executeUpdate();
-                showSuccess("Book added successfully");
-                clearFields();
-                loadBooks();
+                int result = stmt.executeUpdate();
+                ResultSet keys = stmt.getGeneratedKeys();
+                if (keys.next()) {
+                    int bookId = keys.getInt(1);
+                    isbns.put(isbn, bookId);
+                    CatalogIndex index = CatalogIndex.getLoadedInstance();
+                    if (index != null) {
+                        index.put(bookId, title, author, category, isbn);
+                    }
+                    FacetIndex facets = FacetIndex.getLoadedInstance();
+                    if (facets != null) {
+                        facets.put(bookId, category, quantity);
+                    }
+                    SearchCache.getInstance().bookChanged(bookId, title, author, category);
+                }
+                return result;
+            }
+        }, result -> {
+            if (result == DUPLICATE_ISBN) {
+                showError("A book with this ISBN already exists");
+                return;
             }
-        } catch (SQLException ex) {
-            if (ex.getMessage().contains("Duplicate entry")) {
+            showSuccess("Book added successfully");
+            clearFields();
+            loadBooks();
+        }, ex -> {
+            // Another client may have added the ISBN since the index was loaded
+            if (ex.getMessage() != null && ex.getMessage().contains("Duplicate entry")) {
                 showError("A book with this ISBN already exists");
             } else {
                 showError("Error adding book: " + ex.getMessage());
             }
-        } catch (NumberFormatException ex) {
-            showError("Quantity must be a number");
-        }
+        });
     }
 
     private void updateBook() {
@@ -174,32 +236,65 @@ public class BookManagementPanel extends JPanel {
 
         if (!validateInputs()) return;
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        int bookId = (Integer) tableModel.getValueAt(row, 0);
+        int newQuantity = Integer.parseInt(quantityField.getText().trim());
+        String title = titleField.getText().trim();
+        String author = authorField.getText().trim();
+        String category = categoryField.getText().trim();
+
+        DatabaseExecutor.submit(this, conn -> {
+            // The quantity edit adjusts available_quantity, so only while the copies are all on the book row
             String sql = "UPDATE books SET title = ?, author = ?, category = ?, quantity = ?, " +
-                        "available_quantity = available_quantity + (? - quantity) WHERE book_id = ?";
-            
+                        "available_quantity = available_quantity + (? - quantity) " +
+                        "WHERE book_id = ? AND stock_slots = 0";
+
+            int result;
+            conn.setAutoCommit(false);
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                int bookId = (Integer) tableModel.getValueAt(row, 0);
-                int newQuantity = Integer.parseInt(quantityField.getText().trim());
-                
-                stmt.setString(1, titleField.getText().trim());
-                stmt.setString(2, authorField.getText().trim());
-                stmt.setString(3, categoryField.getText().trim());
+                // A split title's copies go back on its row, which stays locked until the update commits
+                Inventory.mergeForUpdate(conn, bookId);
+                stmt.setString(1, title);
+                stmt.setString(2, author);
+                stmt.setString(3, category);
                 stmt.setInt(4, newQuantity);
                 stmt.setInt(5, newQuantity);
                 stmt.setInt(6, bookId);
-                
-                int result = stmt.executeUpdate();
-                if (result > 0) {
-                    showSuccess("Book updated successfully");
-                    clearFields();
-                    loadBooks();
+
+                result = stmt.executeUpdate();
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+            if (result > 0) {
+                CatalogIndex index = CatalogIndex.getLoadedInstance();
+                if (index != null) {
+                    index.put(bookId, title, author, category, null);
+                }
+                FacetIndex facets = FacetIndex.getLoadedInstance();
+                if (facets != null) {
+                    // The new available count depends on the old quantity, so read it back
+                    Book updated = CatalogService.findById(conn, CatalogService.Projection.of(
+                        CatalogService.Column.AVAILABLE_QUANTITY), bookId);
+                    if (updated != null) {
+                        facets.put(bookId, category, updated.getAvailableQuantity());
+                    }
                 }
+                SearchCache.getInstance().bookChanged(bookId, title, author, category);
             }
-        } catch (SQLException ex) {
-            showError("Error updating book: " + ex.getMessage());
-        }
+            return result;
+        }, result -> {
+            if (result > 0) {
+                showSuccess("Book updated successfully");
+                clearFields();
+                loadBooks();
+            } else {
+                showError("The book was not updated: it was deleted or changed meanwhile. Refresh and try again.");
+            }
+        }, ex -> showError("Error updating book: " + ex.getMessage()));
     }
 
     private void deleteBook() {
@@ -215,23 +310,32 @@ public class BookManagementPanel extends JPanel {
             JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                Connection conn = DatabaseConnection.getConnection();
+            int bookId = (Integer) tableModel.getValueAt(row, 0);
+            DatabaseExecutor.submit(this, conn -> {
                 String sql = "UPDATE books SET is_active = 0 WHERE book_id = ?";
                 try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                    int bookId = (Integer) tableModel.getValueAt(row, 0);
                     stmt.setInt(1, bookId);
-                    
                     int result = stmt.executeUpdate();
+                    CatalogIndex index = CatalogIndex.getLoadedInstance();
+                    if (index != null && result > 0) {
+                        index.remove(bookId);
+                    }
+                    FacetIndex facets = FacetIndex.getLoadedInstance();
+                    if (facets != null && result > 0) {
+                        facets.remove(bookId);
+                    }
                     if (result > 0) {
-                        showSuccess("Book deleted successfully");
-                        clearFields();
-                        loadBooks();
+                        SearchCache.getInstance().bookRemoved(bookId);
                     }
+                    return result;
                 }
-            } catch (SQLException ex) {
-                showError("Error deleting book: " + ex.getMessage());
-            }
+            }, result -> {
+                if (result > 0) {
+                    showSuccess("Book deleted successfully");
+                    clearFields();
+                    loadBooks();
+                }
+            }, ex -> showError("Error deleting book: " + ex.getMessage()));
         }
     }
 
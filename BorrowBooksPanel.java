@@ -3,11 +3,17 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.*;
 import java.time.LocalDate;
+import java.util.List;
 
 public class BorrowBooksPanel extends JPanel {
+    private static final CatalogService.Projection COLUMNS = CatalogService.Projection.of(
+        CatalogService.Column.ISBN, CatalogService.Column.TITLE, CatalogService.Column.AUTHOR,
+        CatalogService.Column.AVAILABLE_QUANTITY);
+
     private int userId;
     private JTable bookTable;
     private DefaultTableModel tableModel;
+    private KeysetPager pager;
     private JTextField searchField;
 
     public BorrowBooksPanel(int userId) {
@@ -22,6 +28,11 @@ public class BorrowBooksPanel extends JPanel {
         createBookTable();
         JScrollPane scrollPane = new JScrollPane(bookTable);
         add(scrollPane, BorderLayout.CENTER);
+        pager = new KeysetPager(this, "books", bookTable, COLUMNS, CatalogService.Filter.AVAILABLE,
+            this::toRow, e -> {
+                e.printStackTrace();
+                JOptionPane.showMessageDialog(this, "Error loading books: " + e.getMessage());
+            });
         
         // Create borrow button panel
         JPanel buttonPanel = new JPanel();
@@ -38,7 +49,7 @@ public class BorrowBooksPanel extends JPanel {
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         panel.add(new JLabel("Search:"));
         searchField = new JTextField(30);
-        searchField.addActionListener(e -> searchBooks());
+        SearchAsYouType.install(searchField, this::searchBooks, CatalogIndex::suggest);
         panel.add(searchField);
         
         JButton searchButton = new JButton("Search");
@@ -60,57 +71,45 @@ public class BorrowBooksPanel extends JPanel {
     }
 
     private void loadAvailableBooks() {
-        tableModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            String query = "SELECT * FROM books WHERE available_quantity > 0 AND is_active = true";
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(query);
-            
-            while (rs.next()) {
-                Object[] row = {
-                    rs.getInt("book_id"),
-                    rs.getString("isbn"),
-                    rs.getString("title"),
-                    rs.getString("author"),
-                    rs.getInt("available_quantity")
-                };
-                tableModel.addRow(row);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error loading books: " + e.getMessage());
-        }
+        pager.reload();
     }
 
     private void searchBooks() {
         String searchTerm = searchField.getText().trim();
-        tableModel.setRowCount(0);
-        
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            String query = "SELECT * FROM books WHERE (title LIKE ? OR author LIKE ? OR isbn LIKE ?) " +
-                          "AND available_quantity > 0 AND is_active = true";
-            PreparedStatement pstmt = conn.prepareStatement(query);
-            String searchPattern = "%" + searchTerm + "%";
-            pstmt.setString(1, searchPattern);
-            pstmt.setString(2, searchPattern);
-            pstmt.setString(3, searchPattern);
-            
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                Object[] row = {
-                    rs.getInt("book_id"),
-                    rs.getString("isbn"),
-                    rs.getString("title"),
-                    rs.getString("author"),
-                    rs.getInt("available_quantity")
-                };
-                tableModel.addRow(row);
-            }
-        } catch (SQLException e) {
+        if (searchTerm.isEmpty()) {
+            loadAvailableBooks();
+            return;
+        }
+
+        pager.stop();
+        List<Book> cached = CatalogService.cachedSearch(COLUMNS, CatalogService.Filter.AVAILABLE, searchTerm);
+        if (cached != null) {
+            DatabaseExecutor.cancelLatest(this, "books");
+            showBooks(cached);
+            return;
+        }
+        DatabaseExecutor.submitLatest(this, "books", conn ->
+            CatalogService.search(conn, COLUMNS, CatalogService.Filter.AVAILABLE, searchTerm),
+        this::showBooks, e -> {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error searching books: " + e.getMessage());
+        });
+    }
+
+    private Object[] toRow(Book book) {
+        return new Object[]{
+            book.getId(),
+            book.getIsbn(),
+            book.getTitle(),
+            book.getAuthor(),
+            book.getAvailableQuantity()
+        };
+    }
+
+    private void showBooks(List<Book> books) {
+        tableModel.setRowCount(0);
+        for (Book book : books) {
+            tableModel.addRow(toRow(book));
         }
     }
 
@@ -120,10 +119,9 @@ public class BorrowBooksPanel extends JPanel {
             JOptionPane.showMessageDialog(this, "Please select a book to borrow");
             return;
         }
+        int bookId = (Integer) bookTable.getValueAt(selectedRow, 0);
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            
+        DatabaseExecutor.submit(this, conn -> {
             // Check if user has any overdue books
             String overdueCheck = "SELECT COUNT(*) FROM book_borrowings WHERE user_id = ? " +
                                 "AND status = 'BORROWED' AND due_date < CURRENT_DATE";
@@ -132,33 +130,26 @@ public class BorrowBooksPanel extends JPanel {
             ResultSet checkRs = checkStmt.executeQuery();
             checkRs.next();
             if (checkRs.getInt(1) > 0) {
-                JOptionPane.showMessageDialog(this, "You have overdue books. Please return them first.");
-                return;
+                return false;
             }
 
             // Start transaction
             conn.setAutoCommit(false);
             try {
-                // Update available quantity
-                String updateBook = "UPDATE books SET available_quantity = available_quantity - 1 " +
-                                  "WHERE book_id = ? AND available_quantity > 0";
-                PreparedStatement updateStmt = conn.prepareStatement(updateBook);
-                int bookId = (Integer) bookTable.getValueAt(selectedRow, 0);
-                updateStmt.setInt(1, bookId);
-                int updated = updateStmt.executeUpdate();
-
-                if (updated > 0) {
+                // Take a copy off the shelf
+                if (Inventory.take(conn, bookId)) {
                     // Create borrowing record
                     String insertBorrowing = "INSERT INTO book_borrowings (book_id, user_id, borrow_date, due_date, status) " +
-                                           "VALUES (?, ?, CURRENT_DATE, DATE_ADD(CURRENT_DATE, INTERVAL 14 DAY), 'BORROWED')";
+                                           "VALUES (?, ?, CURRENT_DATE, " + DatabaseConnection.getDialect().addDays("CURRENT_DATE", 14) + ", 'BORROWED')";
                     PreparedStatement borrowStmt = conn.prepareStatement(insertBorrowing);
                     borrowStmt.setInt(1, bookId);
                     borrowStmt.setInt(2, userId);
                     borrowStmt.executeUpdate();
 
                     conn.commit();
-                    JOptionPane.showMessageDialog(this, "Book borrowed successfully!");
-                    loadAvailableBooks();
+                    FacetIndex.availabilityChanged(bookId, -1);
+                    SearchCache.getInstance().availabilityChanged(bookId, -1);
+                    return true;
                 } else {
                     throw new SQLException("Book not available");
                 }
@@ -168,9 +159,16 @@ public class BorrowBooksPanel extends JPanel {
             } finally {
                 conn.setAutoCommit(true);
             }
-        } catch (SQLException e) {
+        }, borrowed -> {
+            if (borrowed) {
+                JOptionPane.showMessageDialog(this, "Book borrowed successfully!");
+                loadAvailableBooks();
+            } else {
+                JOptionPane.showMessageDialog(this, "You have overdue books. Please return them first.");
+            }
+        }, e -> {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error borrowing book: " + e.getMessage());
-        }
+        });
     }
 }
\ No newline at end of file
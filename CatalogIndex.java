@@ -0,0 +1,510 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over the title, author, category and ISBN of active books.
+ *
+ * The search panels ask the index for ranked book IDs instead of running
+ * LIKE '%text%' scans, then load just those rows by primary key. Every search word
+ * must match the start of some word in the book (so "har pot" finds "Harry Potter"),
+ * and books score higher for title and ISBN matches and for whole-word matches. Titles
+ * and authors also feed a PrefixTrie that drives the search fields' autocomplete.
+ * When nothing matches as typed, each word may also match indexed words a typo or
+ * two away, found through a FuzzyMatcher over the index's vocabulary.
+ *
+ * The index is loaded once per client and kept current by BookManagementPanel as books
+ * are added, edited and deleted. Changes made by other clients are picked up by a
+ * background reload every library.catalog.indexRefreshMs.
+ */
+public class CatalogIndex {
+
+    /** Most IDs a search returns; also the size of the padded IN list used to fetch them. */
+    public static final int SEARCH_LIMIT = 100;
+    /** "?, ?, ..." with SEARCH_LIMIT markers, for "book_id IN (" + ID_PLACEHOLDERS + ")". */
+    public static final String ID_PLACEHOLDERS = String.join(", ", java.util.Collections.nCopies(SEARCH_LIMIT, "?"));
+
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int SUGGESTION_LIMIT = 8;
+    // Corrections tried per misspelled word
+    private static final int FUZZY_ALTERNATIVES = 8;
+    private static final long REFRESH_MS = Long.getLong("library.catalog.indexRefreshMs", 10 * 60 * 1000);
+
+    private static final byte TITLE = 1;
+    private static final byte AUTHOR = 2;
+    private static final byte CATEGORY = 4;
+    private static final byte ISBN = 8;
+
+    private static CatalogIndex instance;
+    private static boolean reloading = false;
+
+    // Ordinals of the books containing a token, sorted, with a bitmask of the fields it appears in
+    private static class Postings {
+        int[] ids = new int[4];
+        byte[] fields = new byte[4];
+        int size = 0;
+
+        void add(int id, byte field) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                fields[pos] |= field;
+                return;
+            }
+            pos = -pos - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            System.arraycopy(fields, pos, fields, pos + 1, size - pos);
+            ids[pos] = id;
+            fields[pos] = field;
+            size++;
+        }
+
+        void remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                System.arraycopy(fields, pos + 1, fields, pos, size - pos - 1);
+                size--;
+            }
+        }
+    }
+
+    private final TreeMap<String, Postings> tokens = new TreeMap<>();
+    // Tokens of each indexed book, so edits and deletes can unindex the old values
+    private final Map<Integer, String[]> bookTokens = new HashMap<>();
+    private final Map<Integer, String> bookIsbns = new HashMap<>();
+    // Titles and authors for autocomplete, and what each book added to it
+    private final PrefixTrie completions = new PrefixTrie();
+    private final Map<Integer, String[]> bookPhrases = new HashMap<>();
+    // Every indexed word, for correcting misspelled search words
+    private final FuzzyMatcher vocabulary = new FuzzyMatcher();
+    private final long loadedAt = System.currentTimeMillis();
+
+    // Postings hold dense ordinals rather than book IDs so a search can score into flat arrays
+    private final Map<Integer, Integer> ordinals = new HashMap<>();
+    private int[] bookIds = new int[1024];
+    private int ordinalCount = 0;
+
+    // Per-search scratch space, indexed by ordinal; seen[] marks entries valid for searchId
+    private int[] seen = new int[0];
+    private int[] matchedTerms = new int[0];
+    private int[] score = new int[0];
+    private int[] termScore = new int[0];
+    private int searchId = 0;
+
+    /**
+     * Returns the shared index, loading it with the given connection on first use.
+     * Call from a DatabaseExecutor worker, never the EDT: the first load reads the catalog.
+     */
+    public static CatalogIndex getInstance(Connection conn) throws SQLException {
+        CatalogIndex current;
+        synchronized (CatalogIndex.class) {
+            current = instance;
+        }
+        if (current == null) {
+            current = load(conn);
+            synchronized (CatalogIndex.class) {
+                if (instance == null) {
+                    instance = current;
+                }
+                current = instance;
+            }
+        }
+        current.reloadIfStale();
+        return current;
+    }
+
+    /** The shared index if it has been loaded, otherwise null; used for incremental updates. */
+    public static synchronized CatalogIndex getLoadedInstance() {
+        return instance;
+    }
+
+    private static CatalogIndex load(Connection conn) throws SQLException {
+        CatalogIndex index = new CatalogIndex();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                 "SELECT book_id, title, author, category, isbn FROM books WHERE is_active = true");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                index.put(rs.getInt("book_id"), rs.getString("title"), rs.getString("author"),
+                          rs.getString("category"), rs.getString("isbn"));
+            }
+        }
+        return index;
+    }
+
+    private void reloadIfStale() {
+        synchronized (CatalogIndex.class) {
+            if (reloading || System.currentTimeMillis() - loadedAt < REFRESH_MS) {
+                return;
+            }
+            reloading = true;
+        }
+        // Keep serving this copy while a fresh one is read from a replica if there is one
+        DatabaseExecutor.submitRead(null, CatalogIndex::load, fresh -> {
+            synchronized (CatalogIndex.class) {
+                instance = fresh;
+                reloading = false;
+            }
+        }, ex -> {
+            ex.printStackTrace();
+            synchronized (CatalogIndex.class) {
+                reloading = false;
+            }
+        });
+    }
+
+    /** Adds or re-indexes a book. A null isbn keeps the ISBN already indexed for it. */
+    public synchronized void put(int bookId, String title, String author, String category, String isbn) {
+        if (isbn == null) {
+            isbn = bookIsbns.get(bookId);
+        }
+        remove(bookId);
+
+        Map<String, Byte> fields = new HashMap<>();
+        addTokens(fields, title, TITLE);
+        addTokens(fields, author, AUTHOR);
+        addTokens(fields, category, CATEGORY);
+        if (isbn != null) {
+            String digits = normalizeIsbn(isbn);
+            if (!digits.isEmpty()) {
+                fields.merge(digits, ISBN, (a, b) -> (byte) (a | b));
+            }
+            bookIsbns.put(bookId, isbn);
+        }
+
+        int ordinal = ordinalFor(bookId);
+        for (Map.Entry<String, Byte> entry : fields.entrySet()) {
+            Postings postings = tokens.get(entry.getKey());
+            if (postings == null) {
+                postings = new Postings();
+                tokens.put(entry.getKey(), postings);
+                vocabulary.add(entry.getKey());
+            }
+            postings.add(ordinal, entry.getValue());
+        }
+        bookTokens.put(bookId, fields.keySet().toArray(new String[0]));
+
+        completions.add(title);
+        completions.add(author);
+        bookPhrases.put(bookId, new String[]{title, author});
+    }
+
+    public synchronized void remove(int bookId) {
+        String[] phrases = bookPhrases.remove(bookId);
+        if (phrases != null) {
+            for (String phrase : phrases) {
+                completions.remove(phrase);
+            }
+        }
+        String[] old = bookTokens.remove(bookId);
+        if (old == null) {
+            return;
+        }
+        int ordinal = ordinals.get(bookId);
+        for (String token : old) {
+            Postings postings = tokens.get(token);
+            if (postings != null) {
+                postings.remove(ordinal);
+                if (postings.size == 0) {
+                    tokens.remove(token);
+                    vocabulary.remove(token);
+                }
+            }
+        }
+    }
+
+    /**
+     * Book IDs matching every word of the query, best match first, at most limit of them.
+     * If no book matches as typed, the search is retried with searchFuzzy.
+     */
+    public synchronized int[] search(String query, int limit) {
+        List<String> terms = queryTerms(query);
+        List<SortedMap<String, Postings>> matches = new ArrayList<>();
+        for (String term : terms) {
+            matches.add(tokensStartingWith(term));
+        }
+        int[] ids = topMatches(terms, matches, limit);
+        return ids.length > 0 || terms.isEmpty() ? ids : searchFuzzy(query, limit);
+    }
+
+    /**
+     * Like search, but each word also matches indexed words within a small edit
+     * distance of it, so "tolkein hobit" finds "The Hobbit" by J.R.R. Tolkien. Corrected
+     * words score as prefix matches rather than whole words.
+     */
+    public synchronized int[] searchFuzzy(String query, int limit) {
+        List<String> terms = queryTerms(query);
+        List<SortedMap<String, Postings>> matches = new ArrayList<>();
+        for (String term : terms) {
+            SortedMap<String, Postings> widened = new TreeMap<>(tokensStartingWith(term));
+            for (String word : vocabulary.matches(term, FUZZY_ALTERNATIVES)) {
+                widened.put(word, tokens.get(word));
+            }
+            matches.add(widened);
+        }
+        return topMatches(terms, matches, limit);
+    }
+
+    private static List<String> queryTerms(String query) {
+        List<String> terms = new ArrayList<>();
+        if (query != null && query.contains("-") && query.trim().matches("[0-9Xx][0-9Xx\\- ]*")) {
+            // An ISBN typed with hyphens should still match the indexed digits
+            terms.add(normalizeIsbn(query));
+        } else {
+            terms.addAll(tokenize(query));
+        }
+        return terms;
+    }
+
+    // Ranks the books matched by every term, given the indexed words each term matches
+    private int[] topMatches(List<String> terms, List<SortedMap<String, Postings>> matches, int limit) {
+        if (terms.isEmpty()) {
+            return new int[0];
+        }
+        // Start with the word matching the fewest books; later words only filter
+        List<long[]> order = new ArrayList<>();
+        for (int t = 0; t < terms.size(); t++) {
+            long total = 0;
+            for (Postings p : matches.get(t).values()) {
+                total += p.size;
+            }
+            if (total == 0) {
+                return new int[0];
+            }
+            order.add(new long[]{total, t});
+        }
+        order.sort((a, b) -> Long.compare(a[0], b[0]));
+
+        if (seen.length < ordinalCount) {
+            int capacity = Math.max(ordinalCount, seen.length * 2);
+            seen = new int[capacity];
+            matchedTerms = new int[capacity];
+            score = new int[capacity];
+            termScore = new int[capacity];
+            searchId = 0;
+        }
+        searchId++;
+
+        int[] candidates = new int[0];
+        int candidateCount = 0;
+        for (int k = 0; k < order.size(); k++) {
+            int t = (int) order.get(k)[1];
+            String term = terms.get(t);
+            for (Map.Entry<String, Postings> entry : matches.get(t).entrySet()) {
+                boolean wholeWord = entry.getKey().equals(term);
+                Postings postings = entry.getValue();
+                for (int i = 0; i < postings.size; i++) {
+                    int ord = postings.ids[i];
+                    if (seen[ord] != searchId) {
+                        if (k > 0) {
+                            continue;
+                        }
+                        seen[ord] = searchId;
+                        matchedTerms[ord] = 0;
+                        score[ord] = 0;
+                        if (candidateCount == candidates.length) {
+                            candidates = Arrays.copyOf(candidates, Math.max(64, candidateCount * 2));
+                        }
+                        candidates[candidateCount++] = ord;
+                    }
+                    if (matchedTerms[ord] < k) {
+                        continue; // missed an earlier word
+                    }
+                    int s = weight(postings.fields[i]) * (wholeWord ? 2 : 1);
+                    if (matchedTerms[ord] == k) {
+                        matchedTerms[ord] = k + 1;
+                        termScore[ord] = s;
+                        score[ord] += s;
+                    } else if (s > termScore[ord]) {
+                        // Another word of the same book matched better; count only the best
+                        score[ord] += s - termScore[ord];
+                        termScore[ord] = s;
+                    }
+                }
+            }
+        }
+
+        // Keep the best `limit` as packed (score, -bookId) keys in a small min-heap
+        PriorityQueue<Long> best = new PriorityQueue<>();
+        for (int c = 0; c < candidateCount; c++) {
+            int ord = candidates[c];
+            if (matchedTerms[ord] != order.size()) {
+                continue;
+            }
+            long key = ((long) score[ord] << 32) | (0xFFFFFFFFL & ~bookIds[ord]);
+            if (best.size() < limit) {
+                best.add(key);
+            } else if (key > best.peek()) {
+                best.poll();
+                best.add(key);
+            }
+        }
+        int[] ids = new int[best.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = ~(int) (long) best.poll();
+        }
+        return ids;
+    }
+
+    private SortedMap<String, Postings> tokensStartingWith(String term) {
+        if (term.length() < MIN_PREFIX_LENGTH) {
+            // A single letter would expand to most of the catalog; match it as a whole word only
+            return tokens.subMap(term, true, term, true);
+        }
+        return tokens.subMap(term, true, term + Character.MAX_VALUE, true);
+    }
+
+    private int ordinalFor(int bookId) {
+        Integer ordinal = ordinals.get(bookId);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        if (ordinalCount == bookIds.length) {
+            bookIds = Arrays.copyOf(bookIds, ordinalCount * 2);
+        }
+        bookIds[ordinalCount] = bookId;
+        ordinals.put(bookId, ordinalCount);
+        return ordinalCount++;
+    }
+
+    /** Titles and authors starting with prefix, for the search field's completion popup. */
+    public List<String> complete(String prefix, int limit) {
+        return completions.complete(prefix, limit);
+    }
+
+    /**
+     * Book IDs of the best SEARCH_LIMIT matches for text, ranked by FullTextSearch when it
+     * is enabled and by the shared index otherwise. Either way a search that finds nothing
+     * is retried allowing typos. A valid ISBN, as a barcode scanner types it, is looked up
+     * in the IsbnIndex first. Call from a DatabaseExecutor worker.
+     */
+    public static int[] rank(Connection conn, String text) throws SQLException {
+        return rank(conn, text, SEARCH_LIMIT);
+    }
+
+    /** Like rank(conn, text), returning up to limit IDs, e.g. to filter them further. */
+    public static int[] rank(Connection conn, String text, int limit) throws SQLException {
+        if (Isbn.isValid(text)) {
+            int bookId = IsbnIndex.getInstance(conn).find(text);
+            if (bookId >= 0) {
+                return new int[] {bookId};
+            }
+        }
+        if (FullTextSearch.isEnabled()) {
+            int[] ids = FullTextSearch.search(conn, text, 0, limit);
+            return ids.length > 0 ? ids : getInstance(conn).searchFuzzy(text, limit);
+        }
+        return getInstance(conn).search(text, limit);
+    }
+
+    /**
+     * Completions from the shared index. Cheap enough to call on the EDT for every
+     * keystroke; until the index is loaded it starts a background load and returns none.
+     */
+    public static List<String> suggest(String prefix) {
+        CatalogIndex index = getLoadedInstance();
+        if (index == null) {
+            preload();
+            return new ArrayList<>();
+        }
+        return index.complete(prefix, SUGGESTION_LIMIT);
+    }
+
+    private static void preload() {
+        synchronized (CatalogIndex.class) {
+            if (instance != null || reloading) {
+                return;
+            }
+            reloading = true;
+        }
+        DatabaseExecutor.submitRead(null, CatalogIndex::load, loaded -> {
+            synchronized (CatalogIndex.class) {
+                if (instance == null) {
+                    instance = loaded;
+                }
+                reloading = false;
+            }
+        }, ex -> {
+            ex.printStackTrace();
+            synchronized (CatalogIndex.class) {
+                reloading = false;
+            }
+        });
+    }
+
+    public synchronized int size() {
+        return bookTokens.size();
+    }
+
+    /**
+     * Binds ids to the ID_PLACEHOLDERS markers starting at firstIndex, padding with 0
+     * (never a book ID) so every search reuses one cached statement.
+     */
+    public static void bindIds(PreparedStatement stmt, int firstIndex, int[] ids) throws SQLException {
+        for (int i = 0; i < SEARCH_LIMIT; i++) {
+            stmt.setInt(firstIndex + i, i < ids.length ? ids[i] : 0);
+        }
+    }
+
+    private static int weight(byte fields) {
+        int weight = 0;
+        if ((fields & ISBN) != 0) weight += 4;
+        if ((fields & TITLE) != 0) weight += 3;
+        if ((fields & AUTHOR) != 0) weight += 2;
+        if ((fields & CATEGORY) != 0) weight += 1;
+        return weight;
+    }
+
+    private static void addTokens(Map<String, Byte> fields, String text, byte field) {
+        for (String token : tokenize(text)) {
+            fields.merge(token, field, (a, b) -> (byte) (a | b));
+        }
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> result = new LinkedHashSet<>();
+        if (text == null) {
+            return result;
+        }
+        // Runs of letters and digits, lower-cased; hand-rolled as this runs for every book on load
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                result.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    private static String normalizeIsbn(String isbn) {
+        StringBuilder sb = new StringBuilder(isbn.length());
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c >= '0' && c <= '9') {
+                sb.append(c);
+            } else if (c == 'X' || c == 'x') {
+                sb.append('x');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,198 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The book queries behind every catalog screen: keyset pages, fetches by ID and
+ * ranked searches, returning immutable Books.
+ *
+ * A screen names the columns it shows as a Projection and which books it lists as a
+ * Filter; only those columns are selected. The SQL for each projection, filter and
+ * query shape is built once and then reused as the same string, so the connection
+ * pool's StatementCache hands back the statement it already prepared. Searches go
+ * through the shared SearchCache.
+ */
+public final class CatalogService {
+
+    public enum Column {
+        ISBN("isbn"),
+        TITLE("title"),
+        AUTHOR("author"),
+        CATEGORY("category"),
+        QUANTITY("quantity"),
+        AVAILABLE_QUANTITY("available_quantity");
+
+        private final String name;
+
+        Column(String name) {
+            this.name = name;
+        }
+    }
+
+    /** The columns a screen reads; book_id and is_active are always read. */
+    public static final class Projection {
+        private final EnumSet<Column> columns;
+        private final String selectList;
+
+        private Projection(EnumSet<Column> columns) {
+            this.columns = columns;
+            StringBuilder sb = new StringBuilder("book_id, is_active");
+            for (Column column : columns) {
+                sb.append(", ").append(column.name);
+            }
+            this.selectList = sb.toString();
+        }
+
+        public static Projection of(Column first, Column... rest) {
+            return new Projection(EnumSet.of(first, rest));
+        }
+
+        public boolean has(Column column) {
+            return columns.contains(column);
+        }
+
+        Projection with(Column column) {
+            if (has(column)) {
+                return this;
+            }
+            EnumSet<Column> wider = EnumSet.copyOf(columns);
+            wider.add(column);
+            return new Projection(wider);
+        }
+
+        @Override
+        public String toString() {
+            return selectList;
+        }
+    }
+
+    public enum Filter {
+        ACTIVE("is_active = true"),
+        AVAILABLE("is_active = true AND available_quantity > 0");
+
+        private final String where;
+
+        Filter(String where) {
+            this.where = where;
+        }
+    }
+
+    // SQL text by projection, filter and query shape
+    private static final Map<String, String> SQL = new ConcurrentHashMap<>();
+
+    private CatalogService() {
+    }
+
+    /**
+     * Up to limit books after afterId in book_id order: one primary key range read
+     * however deep into the catalog the page is.
+     */
+    public static List<Book> page(Connection conn, Projection projection, Filter filter,
+                                  int afterId, int limit) throws SQLException {
+        String sql = sql(projection, filter, "page", () ->
+            "SELECT " + projection.selectList + " FROM books WHERE " + filter.where +
+            " AND book_id > ? ORDER BY book_id LIMIT ?");
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, afterId);
+            stmt.setInt(2, limit);
+            return read(stmt.executeQuery(), projection);
+        }
+    }
+
+    /** The books with these IDs that pass the filter, in the order of ids. */
+    public static List<Book> findByIds(Connection conn, Projection projection, Filter filter,
+                                       int[] ids) throws SQLException {
+        List<Book> found = new ArrayList<>();
+        if (ids.length == 0) {
+            return found;
+        }
+        String sql = sql(projection, filter, "ids", () ->
+            "SELECT " + projection.selectList + " FROM books WHERE " + filter.where +
+            " AND book_id IN (" + CatalogIndex.ID_PLACEHOLDERS + ")");
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int from = 0; from < ids.length; from += CatalogIndex.SEARCH_LIMIT) {
+                int[] chunk = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + CatalogIndex.SEARCH_LIMIT));
+                CatalogIndex.bindIds(stmt, 1, chunk);
+                found.addAll(read(stmt.executeQuery(), projection));
+            }
+        }
+        Map<Integer, Book> byId = new HashMap<>();
+        for (Book book : found) {
+            byId.put(book.getId(), book);
+        }
+        List<Book> ordered = new ArrayList<>(found.size());
+        for (int id : ids) {
+            Book book = byId.get(id);
+            if (book != null) {
+                ordered.add(book);
+            }
+        }
+        return ordered;
+    }
+
+    /** The book with this ID, active or not, or null if there is none. */
+    public static Book findById(Connection conn, Projection projection, int bookId) throws SQLException {
+        String sql = sql(projection, null, "id", () ->
+            "SELECT " + projection.selectList + " FROM books WHERE book_id = ?");
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, bookId);
+            List<Book> books = read(stmt.executeQuery(), projection);
+            return books.isEmpty() ? null : books.get(0);
+        }
+    }
+
+    /**
+     * The best CatalogIndex.rank matches for text that pass the filter, best first,
+     * stored in the SearchCache. Call cachedSearch on the EDT first: a hit needs no
+     * connection at all.
+     */
+    public static List<Book> search(Connection conn, Projection projection, Filter filter,
+                                    String text) throws SQLException {
+        SearchCache cache = SearchCache.getInstance();
+        long version = cache.getVersion();
+        // Cache every active match with its available quantity, so a borrow or a return
+        // can be patched in rather than evicting the entry
+        Projection cachedProjection = projection.with(Column.AVAILABLE_QUANTITY);
+        int[] ids = CatalogIndex.rank(conn, text);
+        List<Book> books = findByIds(conn, cachedProjection, Filter.ACTIVE, ids);
+        return cache.put(projection.toString(), text, filter.name(), books, filter == Filter.AVAILABLE, version);
+    }
+
+    /** Cached results of search(), or null on a miss. Cheap enough for the EDT. */
+    public static List<Book> cachedSearch(Projection projection, Filter filter, String text) {
+        return SearchCache.getInstance().get(projection.toString(), text, filter.name());
+    }
+
+    private interface SqlBuilder {
+        String build();
+    }
+
+    private static String sql(Projection projection, Filter filter, String shape, SqlBuilder builder) {
+        return SQL.computeIfAbsent(projection.selectList + '|' + filter + '|' + shape, k -> builder.build());
+    }
+
+    private static List<Book> read(ResultSet rs, Projection projection) throws SQLException {
+        List<Book> books = new ArrayList<>();
+        while (rs.next()) {
+            books.add(Book.listing(
+                rs.getInt("book_id"),
+                projection.has(Column.ISBN) ? rs.getString("isbn") : null,
+                projection.has(Column.TITLE) ? rs.getString("title") : null,
+                projection.has(Column.AUTHOR) ? rs.getString("author") : null,
+                projection.has(Column.CATEGORY) ? rs.getString("category") : null,
+                projection.has(Column.QUANTITY) ? rs.getInt("quantity") : 0,
+                projection.has(Column.AVAILABLE_QUANTITY) ? rs.getInt("available_quantity") : 0,
+                rs.getBoolean("is_active")
+            ));
+        }
+        return books;
+    }
+}
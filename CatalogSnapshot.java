@@ -0,0 +1,277 @@
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only, column-oriented copy of the active catalog for screens that list all of it.
+ *
+ * A List of Books keeps an object per book plus a String per title, author, category
+ * and ISBN, around 300 bytes a book before a table model boxes it all again. Here each
+ * column is one primitive array: IDs and quantities as ints, authors and categories as
+ * int codes into a dictionary of the distinct names, titles as UTF-8 bytes packed end to
+ * end with an offset per book, and digit-only ISBNs as longs. That is about a quarter of
+ * the memory, and nothing for the garbage collector to trace.
+ *
+ * Rows are in book_id order. Callers read them through the row getters or a View, a
+ * reusable flyweight positioned on one row at a time; titles are decoded when read.
+ */
+public final class CatalogSnapshot {
+
+    private static final int LOAD_PAGE_SIZE = 5000;
+    private static final CatalogService.Projection COLUMNS = CatalogService.Projection.of(
+        CatalogService.Column.ISBN, CatalogService.Column.TITLE, CatalogService.Column.AUTHOR,
+        CatalogService.Column.CATEGORY, CatalogService.Column.QUANTITY, CatalogService.Column.AVAILABLE_QUANTITY);
+
+    private final int size;
+    private final int[] ids;
+    private final int[] quantities;
+    private final int[] availableQuantities;
+    private final byte[] titleBytes;
+    private final int[] titleOffsets;
+    private final String[] authors;
+    private final int[] authorCodes;
+    private final String[] categories;
+    private final int[] categoryCodes;
+    // An ISBN of up to 18 digits is kept as a long and its length, to restore leading zeros
+    private final long[] isbnDigits;
+    private final byte[] isbnLengths;
+    private final Map<Integer, String> otherIsbns;
+
+    /** A movable view of one row, so a table can read any row without allocating per row. */
+    public final class View {
+        private int row;
+
+        public View at(int row) {
+            this.row = row;
+            return this;
+        }
+
+        public int getRow() { return row; }
+        public int getId() { return ids[row]; }
+        public String getIsbn() { return CatalogSnapshot.this.getIsbn(row); }
+        public String getTitle() { return CatalogSnapshot.this.getTitle(row); }
+        public String getAuthor() { return authors[authorCodes[row]]; }
+        public String getCategory() { return categories[categoryCodes[row]]; }
+        public int getQuantity() { return quantities[row]; }
+        public int getAvailableQuantity() { return availableQuantities[row]; }
+    }
+
+    /** Accumulates rows, in ascending book_id order, for a snapshot. */
+    public static final class Builder {
+        private int size = 0;
+        private int[] ids = new int[1024];
+        private int[] quantities = new int[1024];
+        private int[] availableQuantities = new int[1024];
+        private byte[] titleBytes = new byte[32 * 1024];
+        private int titleLength = 0;
+        private int[] titleOffsets = new int[1025];
+        private int[] authorCodes = new int[1024];
+        private int[] categoryCodes = new int[1024];
+        private long[] isbnDigits = new long[1024];
+        private byte[] isbnLengths = new byte[1024];
+        private final Map<Integer, String> otherIsbns = new HashMap<>();
+        private final Dictionary authors = new Dictionary();
+        private final Dictionary categories = new Dictionary();
+
+        public Builder add(int id, String isbn, String title, String author, String category,
+                           int quantity, int availableQuantity) {
+            if (size > 0 && id <= ids[size - 1]) {
+                throw new IllegalArgumentException("Book IDs must be added in ascending order: " + id);
+            }
+            if (size == ids.length) {
+                grow();
+            }
+            ids[size] = id;
+            quantities[size] = quantity;
+            availableQuantities[size] = availableQuantity;
+            authorCodes[size] = authors.code(author);
+            categoryCodes[size] = categories.code(category);
+            if (isbn != null && !isbn.isEmpty() && isbn.length() <= 18 && isAllDigits(isbn)) {
+                isbnDigits[size] = Long.parseLong(isbn);
+                isbnLengths[size] = (byte) isbn.length();
+            } else if (isbn != null) {
+                otherIsbns.put(size, isbn);
+            }
+            byte[] utf8 = title == null ? new byte[0] : title.getBytes(StandardCharsets.UTF_8);
+            if (titleLength + utf8.length > titleBytes.length) {
+                titleBytes = Arrays.copyOf(titleBytes, Math.max(titleBytes.length * 2, titleLength + utf8.length));
+            }
+            System.arraycopy(utf8, 0, titleBytes, titleLength, utf8.length);
+            titleLength += utf8.length;
+            titleOffsets[++size] = titleLength;
+            return this;
+        }
+
+        public Builder add(Book book) {
+            return add(book.getId(), book.getIsbn(), book.getTitle(), book.getAuthor(), book.getCategory(),
+                       book.getQuantity(), book.getAvailableQuantity());
+        }
+
+        public CatalogSnapshot build() {
+            return new CatalogSnapshot(this);
+        }
+
+        private void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            availableQuantities = Arrays.copyOf(availableQuantities, capacity);
+            titleOffsets = Arrays.copyOf(titleOffsets, capacity + 1);
+            authorCodes = Arrays.copyOf(authorCodes, capacity);
+            categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+            isbnDigits = Arrays.copyOf(isbnDigits, capacity);
+            isbnLengths = Arrays.copyOf(isbnLengths, capacity);
+        }
+
+        private static boolean isAllDigits(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Distinct strings and their codes; null is a value like any other
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] values = new String[64];
+        private int size = 0;
+
+        int code(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                code = size;
+                values[size++] = value;
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        String[] values() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private CatalogSnapshot(Builder builder) {
+        size = builder.size;
+        // Trim every column to its length; the builder's slack would otherwise stay live
+        ids = Arrays.copyOf(builder.ids, size);
+        quantities = Arrays.copyOf(builder.quantities, size);
+        availableQuantities = Arrays.copyOf(builder.availableQuantities, size);
+        titleBytes = Arrays.copyOf(builder.titleBytes, builder.titleLength);
+        titleOffsets = Arrays.copyOf(builder.titleOffsets, size + 1);
+        authors = builder.authors.values();
+        authorCodes = Arrays.copyOf(builder.authorCodes, size);
+        categories = builder.categories.values();
+        categoryCodes = Arrays.copyOf(builder.categoryCodes, size);
+        isbnDigits = Arrays.copyOf(builder.isbnDigits, size);
+        isbnLengths = Arrays.copyOf(builder.isbnLengths, size);
+        otherIsbns = new HashMap<>(builder.otherIsbns);
+    }
+
+    /**
+     * Reads every active book through CatalogService in keyset pages, so only one page of
+     * Books is ever held. Call from a DatabaseExecutor worker.
+     */
+    public static CatalogSnapshot load(Connection conn) throws SQLException {
+        Builder builder = new Builder();
+        int lastId = 0;
+        while (true) {
+            List<Book> page = CatalogService.page(conn, COLUMNS, CatalogService.Filter.ACTIVE, lastId, LOAD_PAGE_SIZE);
+            for (Book book : page) {
+                builder.add(book);
+            }
+            if (page.size() < LOAD_PAGE_SIZE) {
+                return builder.build();
+            }
+            lastId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public View view() {
+        return new View();
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    public String getTitle(int row) {
+        return new String(titleBytes, titleOffsets[row], titleOffsets[row + 1] - titleOffsets[row],
+                          StandardCharsets.UTF_8);
+    }
+
+    public String getAuthor(int row) {
+        return authors[authorCodes[row]];
+    }
+
+    public String getCategory(int row) {
+        return categories[categoryCodes[row]];
+    }
+
+    public String getIsbn(int row) {
+        if (isbnLengths[row] == 0) {
+            return otherIsbns.get(row);
+        }
+        String digits = Long.toString(isbnDigits[row]);
+        StringBuilder sb = new StringBuilder(isbnLengths[row]);
+        for (int i = digits.length(); i < isbnLengths[row]; i++) {
+            sb.append('0');
+        }
+        return sb.append(digits).toString();
+    }
+
+    public int getQuantity(int row) {
+        return quantities[row];
+    }
+
+    public int getAvailableQuantity(int row) {
+        return availableQuantities[row];
+    }
+
+    /** The row holding this book, or -1 if it is not in the snapshot. */
+    public int rowOf(int bookId) {
+        int row = Arrays.binarySearch(ids, 0, size, bookId);
+        return row >= 0 ? row : -1;
+    }
+
+    /** The rows of these books in the order given, e.g. ranked search results, skipping absent ones. */
+    public int[] rowsOf(int[] bookIds) {
+        int[] rows = new int[bookIds.length];
+        int n = 0;
+        for (int bookId : bookIds) {
+            int row = rowOf(bookId);
+            if (row >= 0) {
+                rows[n++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, n);
+    }
+
+    /** Approximate bytes held by the columns, dictionaries and their strings included. */
+    public long estimatedBytes() {
+        long bytes = 4L * (ids.length + quantities.length + availableQuantities.length + titleOffsets.length
+                           + authorCodes.length + categoryCodes.length)
+                     + 8L * isbnDigits.length + isbnLengths.length + titleBytes.length;
+        for (String author : authors) {
+            bytes += author == null ? 8 : 48 + author.length();
+        }
+        for (String category : categories) {
+            bytes += category == null ? 8 : 48 + category.length();
+        }
+        return bytes + 96L * otherIsbns.size();
+    }
+}
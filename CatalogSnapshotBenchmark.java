@@ -0,0 +1,133 @@
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares a CatalogSnapshot with a List of Books, and with the DefaultTableModel the
+ * panels used to fill from them, on a generated catalog without a database.
+ *
+ * Run as java -Xmx2g CatalogSnapshotBenchmark [books], 400,000 books by default. For
+ * each form it prints the heap retained (measured around a full GC, so run it with
+ * nothing else in the JVM) and the time to read every cell once through a TableModel,
+ * as a JTable scrolled from top to bottom would. The table model's rows share their
+ * Strings with the Books, so its figure is on top of the List's.
+ */
+public class CatalogSnapshotBenchmark {
+
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = Integer.getInteger("library.bench.runs", 10);
+
+    private static final String[] WORDS = {
+        "Advanced", "Modern", "Practical", "Applied", "Introduction", "Complete", "Essential",
+        "Python", "Java", "Data", "Structures", "Algorithms", "Databases", "Networks", "Calculus",
+        "History", "Poetry", "Learning", "Systems", "Statistics", "of", "the", "and", "for",
+        "Garden", "River", "Night", "Empire", "Stars", "Caf\u00e9", "Na\u00efve", "\u00dcber", "Mountain"
+    };
+    private static final String[] CATEGORIES = {
+        "Computer Science", "Mathematics", "Physics", "Chemistry", "Biology", "History",
+        "Literature", "Philosophy", "Economics", "Engineering", "Art", "Music", "Law", "Medicine"
+    };
+    private static final String[] COLUMN_NAMES = {"Book ID", "ISBN", "Title", "Author", "Total Copies", "Available"};
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 400_000;
+        Random random = new Random(42);
+        String[] authors = new String[Math.max(1, count / 10)];
+        for (int i = 0; i < authors.length; i++) {
+            authors[i] = WORDS[random.nextInt(WORDS.length)] + " " + name(random);
+        }
+
+        long before = usedHeap();
+        List<Book> books = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            StringBuilder title = new StringBuilder();
+            int length = 2 + random.nextInt(5);
+            for (int w = 0; w < length; w++) {
+                title.append(w > 0 ? " " : "").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            int quantity = 1 + random.nextInt(5);
+            books.add(Book.listing(id, String.format("978%010d", id), title.toString(),
+                new String(authors[random.nextInt(authors.length)]),
+                new String(CATEGORIES[random.nextInt(CATEGORIES.length)]), quantity, random.nextInt(quantity + 1), true));
+        }
+        long listBytes = usedHeap() - before;
+
+        before = usedHeap();
+        DefaultTableModel rowModel = new DefaultTableModel(COLUMN_NAMES, 0);
+        for (Book book : books) {
+            rowModel.addRow(new Object[]{book.getId(), book.getIsbn(), book.getTitle(), book.getAuthor(),
+                                         book.getQuantity(), book.getAvailableQuantity()});
+        }
+        long rowModelBytes = usedHeap() - before;
+
+        before = usedHeap();
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        for (Book book : books) {
+            builder.add(book);
+        }
+        CatalogSnapshot snapshot = builder.build();
+        builder = null;
+        long snapshotBytes = usedHeap() - before;
+        CatalogTableModel snapshotModel = new CatalogTableModel(COLUMN_NAMES,
+            CatalogService.Column.ISBN, CatalogService.Column.TITLE, CatalogService.Column.AUTHOR,
+            CatalogService.Column.QUANTITY, CatalogService.Column.AVAILABLE_QUANTITY);
+        snapshotModel.setSnapshot(snapshot);
+
+        System.out.printf("%,d books%n", count);
+        System.out.printf("%-28s %10s %12s%n", "", "heap MB", "bytes/book");
+        print("List<Book>", listBytes, count);
+        print("DefaultTableModel (rows)", rowModelBytes, count);
+        print("CatalogSnapshot", snapshotBytes, count);
+        System.out.printf("  (snapshot's own estimate: %.1f MB)%n", snapshot.estimatedBytes() / 1e6);
+
+        System.out.printf("%nRead every cell once, %d runs after %d warm-up runs:%n", MEASURED_RUNS, WARMUP_RUNS);
+        time("DefaultTableModel (rows)", rowModel);
+        time("CatalogTableModel", snapshotModel);
+        // Keep everything reachable until the end so the heap figures above hold
+        if (books.size() + rowModel.getRowCount() + snapshot.size() == 0) {
+            System.out.println();
+        }
+    }
+
+    private static void time(String label, TableModel model) {
+        long best = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            long start = System.nanoTime();
+            for (int row = 0; row < model.getRowCount(); row++) {
+                for (int column = 0; column < model.getColumnCount(); column++) {
+                    checksum += model.getValueAt(row, column).hashCode();
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            if (run >= WARMUP_RUNS) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        System.out.printf("%-28s %8.1f ms  %6.1f ns/row  (checksum %d)%n",
+            label, best / 1e6, (double) best / model.getRowCount(), checksum);
+    }
+
+    private static void print(String label, long bytes, int count) {
+        System.out.printf("%-28s %10.1f %12.1f%n", label, bytes / 1e6, (double) bytes / count);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String name(Random random) {
+        char[] name = new char[5 + random.nextInt(6)];
+        name[0] = (char) ('A' + random.nextInt(26));
+        for (int i = 1; i < name.length; i++) {
+            name[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(name);
+    }
+}
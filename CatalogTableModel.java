@@ -0,0 +1,109 @@
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model reading cells straight from a CatalogSnapshot, with no object per row.
+ *
+ * JTable asks only for the cells it paints, so showing 400,000 books costs what the
+ * snapshot costs. The first column is always the book ID; the others are the given
+ * CatalogService columns. A search can narrow the table to some rows, in ranked order,
+ * without copying anything.
+ */
+public class CatalogTableModel extends AbstractTableModel {
+
+    private final String[] names;
+    private final CatalogService.Column[] columns;
+    private CatalogSnapshot snapshot;
+    private CatalogSnapshot.View view;
+    private int[] rows;
+
+    /**
+     * @param names   headers, the first one for the book ID column
+     * @param columns the snapshot column behind each header after the first
+     */
+    public CatalogTableModel(String[] names, CatalogService.Column... columns) {
+        if (names.length != columns.length + 1) {
+            throw new IllegalArgumentException("Expected " + (columns.length + 1) + " column names");
+        }
+        this.names = names.clone();
+        this.columns = columns.clone();
+    }
+
+    /** Shows every row of a new snapshot. Call on the EDT. */
+    public void setSnapshot(CatalogSnapshot snapshot) {
+        this.snapshot = snapshot;
+        this.view = snapshot.view();
+        this.rows = null;
+        fireTableDataChanged();
+    }
+
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /** Shows only these books, in this order; books not in the snapshot are left out. */
+    public void showOnly(int[] bookIds) {
+        if (snapshot != null) {
+            rows = snapshot.rowsOf(bookIds);
+            fireTableDataChanged();
+        }
+    }
+
+    public void showAll() {
+        rows = null;
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        if (snapshot == null) {
+            return 0;
+        }
+        return rows != null ? rows.length : snapshot.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return names.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return names[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        if (column == 0) {
+            return Integer.class;
+        }
+        switch (columns[column - 1]) {
+            case QUANTITY:
+            case AVAILABLE_QUANTITY:
+                return Integer.class;
+            default:
+                return String.class;
+        }
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        CatalogSnapshot.View book = view.at(rows != null ? rows[row] : row);
+        if (column == 0) {
+            return book.getId();
+        }
+        switch (columns[column - 1]) {
+            case ISBN:
+                return book.getIsbn();
+            case TITLE:
+                return book.getTitle();
+            case AUTHOR:
+                return book.getAuthor();
+            case CATEGORY:
+                return book.getCategory();
+            case QUANTITY:
+                return book.getQuantity();
+            default:
+                return book.getAvailableQuantity();
+        }
+    }
+}
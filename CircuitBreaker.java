@@ -0,0 +1,97 @@
+/**
+ * Circuit breaker for database connection attempts.
+ *
+ * CLOSED lets every attempt through and counts consecutive failures. Reaching the
+ * failure threshold moves to OPEN, where attempts are refused immediately. After the
+ * open interval one trial attempt is let through (HALF_OPEN): success closes the
+ * breaker, failure opens it again for twice as long, up to maxOpenMs.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long baseOpenMs;
+    private final long maxOpenMs;
+
+    private State state = State.CLOSED;
+    private int failures = 0;
+    private long openMs;
+    private long openedAt;
+    private boolean trialInFlight = false;
+
+    public CircuitBreaker(int failureThreshold, long baseOpenMs, long maxOpenMs) {
+        this.failureThreshold = failureThreshold;
+        this.baseOpenMs = baseOpenMs;
+        this.maxOpenMs = maxOpenMs;
+        this.openMs = baseOpenMs;
+    }
+
+    /** Returns false when the caller should fail fast without touching the database. */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openMs) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                // Only one trial attempt at a time while half-open
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        openMs = baseOpenMs;
+        trialInFlight = false;
+    }
+
+    /** Records a failed attempt; returns true if this failure opened the breaker. */
+    public synchronized boolean recordFailure() {
+        trialInFlight = false;
+        if (state == State.HALF_OPEN) {
+            openMs = Math.min(openMs * 2, maxOpenMs);
+            open();
+            return false;
+        }
+        failures++;
+        if (state == State.CLOSED && failures >= failureThreshold) {
+            open();
+            return true;
+        }
+        return false;
+    }
+
+    /** Ends a trial attempt that neither succeeded nor failed in a way worth counting. */
+    public synchronized void recordIgnored() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /** Milliseconds until the next trial attempt is allowed, or 0 if not open. */
+    public synchronized long getRemainingOpenMs() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openedAt + openMs - System.currentTimeMillis());
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        failures = 0;
+    }
+}
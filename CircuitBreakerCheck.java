@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.sql.Connection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks the timing of DatabaseConnection's circuit breaker by putting a local TCP proxy
+ * between the pool and the MySQL server and switching the proxy off and on.
+ *
+ * Run with the MySQL server up: java -Djava.awt.headless=true CircuitBreakerCheck
+ * [host:port], localhost:3306 by default. Headless mode skips the error dialogs. While
+ * the proxy is down it drops every open connection and closes new ones at once, as a
+ * server that has gone away does. The check sets the breaker to open after
+ * FAILURE_THRESHOLD failed calls for OPEN_MS, and verifies that:
+ * - the breaker opens after that many failed getConnection calls;
+ * - while open, calls fail fast and never reach the proxy;
+ * - after OPEN_MS one trial call reaches the proxy, and its failure reopens the breaker
+ *   for twice as long;
+ * - once the proxy is back, the next trial succeeds and closes the breaker.
+ * Exits 1 if any check fails.
+ */
+public class CircuitBreakerCheck {
+
+    private static final int FAILURE_THRESHOLD = 2;
+    private static final long OPEN_MS = 1000;
+    // Slack for scheduling and the retries inside one getConnection call
+    private static final long MARGIN_MS = 150;
+    private static final long FAIL_FAST_MS = 50;
+
+    private static boolean ok = true;
+
+    public static void main(String[] args) throws Exception {
+        String target = args.length > 0 ? args[0] : "localhost:3306";
+        String host = target.substring(0, target.lastIndexOf(':'));
+        int port = Integer.parseInt(target.substring(target.lastIndexOf(':') + 1));
+
+        try (FaultProxy proxy = new FaultProxy(host, port)) {
+            // Must be set before DatabaseConnection is first used
+            System.setProperty("library.db.url",
+                "jdbc:mysql://127.0.0.1:" + proxy.getPort() + "/library_db");
+            System.setProperty("library.db.breaker.failureThreshold", String.valueOf(FAILURE_THRESHOLD));
+            System.setProperty("library.db.breaker.openMs", String.valueOf(OPEN_MS));
+            System.setProperty("library.db.breaker.maxOpenMs", String.valueOf(OPEN_MS * 4));
+            System.setProperty("library.db.retry.baseBackoffMs", "20");
+            System.setProperty("library.db.retry.maxBackoffMs", "40");
+            // No idle top-ups behind the check's back, and every borrow re-validates
+            System.setProperty("library.db.pool.min", "0");
+            System.setProperty("library.db.pool.validationThresholdMs", "0");
+
+            try {
+                run(proxy);
+            } finally {
+                DatabaseConnection.closeConnection();
+            }
+        }
+        System.out.println(ok ? "OK" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static void run(FaultProxy proxy) throws Exception {
+        Connection conn = DatabaseConnection.getConnection();
+        check("connects through the proxy", conn != null, "getConnection returned null");
+        if (conn == null) {
+            return;
+        }
+        conn.close();
+
+        proxy.setDown(true);
+        for (int call = 1; call <= FAILURE_THRESHOLD; call++) {
+            long start = System.nanoTime();
+            conn = DatabaseConnection.getConnection();
+            System.out.printf("failed call %d took %d ms%n", call, elapsedMs(start));
+            check("call " + call + " fails while the server is down", conn == null, "got a connection");
+        }
+        check("opens after " + FAILURE_THRESHOLD + " failed calls", DatabaseConnection.isCircuitOpen(),
+            "breaker still closed");
+        long openedAt = System.nanoTime();
+
+        expectFailFast(proxy, "fails fast while open");
+
+        sleepUntil(openedAt, OPEN_MS + MARGIN_MS);
+        int reached = proxy.getAccepted();
+        conn = DatabaseConnection.getConnection();
+        check("half-open trial reaches the server after " + OPEN_MS + " ms", proxy.getAccepted() > reached,
+            "no connection attempt reached the proxy");
+        check("failed trial reopens the breaker", conn == null && DatabaseConnection.isCircuitOpen(),
+            "breaker not open after a failed trial");
+        long reopenedAt = System.nanoTime();
+
+        // The second open interval is twice the first
+        sleepUntil(reopenedAt, OPEN_MS + MARGIN_MS);
+        expectFailFast(proxy, "still open after " + OPEN_MS + " ms of a " + 2 * OPEN_MS + " ms interval");
+
+        proxy.setDown(false);
+        sleepUntil(reopenedAt, 2 * OPEN_MS + MARGIN_MS);
+        long start = System.nanoTime();
+        conn = DatabaseConnection.getConnection();
+        System.out.printf("recovering call took %d ms%n", elapsedMs(start));
+        check("successful trial closes the breaker", conn != null && !DatabaseConnection.isCircuitOpen(),
+            "no connection after the server came back");
+        if (conn != null) {
+            conn.close();
+        }
+    }
+
+    private static void expectFailFast(FaultProxy proxy, String label) {
+        int reached = proxy.getAccepted();
+        long start = System.nanoTime();
+        Connection conn = DatabaseConnection.getConnection();
+        long elapsed = elapsedMs(start);
+        check(label, conn == null && elapsed < FAIL_FAST_MS && proxy.getAccepted() == reached,
+            String.format("took %d ms, %d attempts reached the proxy", elapsed, proxy.getAccepted() - reached));
+    }
+
+    private static void check(String label, boolean passed, String detail) {
+        System.out.println((passed ? "ok     " : "FAILED ") + label + (passed ? "" : ": " + detail));
+        ok &= passed;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static void sleepUntil(long startNanos, long afterMs) throws InterruptedException {
+        long remaining = afterMs - elapsedMs(startNanos);
+        if (remaining > 0) {
+            Thread.sleep(remaining);
+        }
+    }
+
+    /** Forwards connections to the server until setDown(true), then refuses them. */
+    private static class FaultProxy implements AutoCloseable {
+        private final ServerSocket server;
+        private final String targetHost;
+        private final int targetPort;
+        private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger accepted = new AtomicInteger();
+        private volatile boolean down;
+
+        FaultProxy(String targetHost, int targetPort) throws IOException {
+            this.targetHost = targetHost;
+            this.targetPort = targetPort;
+            this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::acceptLoop, "fault-proxy");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int getPort() {
+            return server.getLocalPort();
+        }
+
+        /** Connection attempts that reached the proxy, whether forwarded or refused. */
+        int getAccepted() {
+            return accepted.get();
+        }
+
+        void setDown(boolean down) {
+            this.down = down;
+            if (down) {
+                // The server went away: every pooled connection breaks
+                for (Socket socket : open) {
+                    closeQuietly(socket);
+                }
+                open.clear();
+            }
+        }
+
+        private void acceptLoop() {
+            while (!server.isClosed()) {
+                try {
+                    Socket client = server.accept();
+                    accepted.incrementAndGet();
+                    if (down) {
+                        closeQuietly(client);
+                        continue;
+                    }
+                    Socket upstream;
+                    try {
+                        upstream = new Socket(targetHost, targetPort);
+                    } catch (IOException e) {
+                        closeQuietly(client);
+                        continue;
+                    }
+                    open.add(client);
+                    open.add(upstream);
+                    pipe(client, upstream);
+                    pipe(upstream, client);
+                } catch (IOException e) {
+                    // Server socket closed
+                }
+            }
+        }
+
+        private void pipe(Socket from, Socket to) {
+            Thread thread = new Thread(() -> {
+                byte[] buffer = new byte[8192];
+                try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    // Either side closed
+                } finally {
+                    closeQuietly(from);
+                    closeQuietly(to);
+                    open.remove(from);
+                    open.remove(to);
+                }
+            }, "fault-proxy-pipe");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private static void closeQuietly(Socket socket) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            setDown(true);
+            server.close();
+        }
+    }
+}
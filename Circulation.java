@@ -0,0 +1,319 @@
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Issuing books to students at the librarian's desk.
+ *
+ * An issue checks the student, their overdue loans and an existing loan of the same
+ * book, then takes a copy, records the loan and notifies the student. On the MySQL
+ * server that is one call to the issue_book stored procedure (SchemaMigrations
+ * versions 4 and 6), so the book's row lock is held for the procedure's own run time
+ * instead of across six network round trips. The embedded H2 database runs in this
+ * process, where round trips cost nothing, and gets the same steps as statements: one
+ * query for all three checks, then the writes.
+ *
+ * A checkout issues a cart of books to one student in one transaction: the student is
+ * checked once, the copies are taken and the loans written in batches, and the student
+ * gets one notification listing every book. A book that cannot be issued is reported
+ * on its own and does not stop the rest of the cart.
+ */
+public final class Circulation {
+
+    public static final int LOAN_DAYS = 14;
+
+    /** Outcome of an issue; the codes are the ones issue_book returns. */
+    public enum IssueResult {
+        ISSUED(0, "Book issued successfully"),
+        STUDENT_NOT_FOUND(1, "Student ID not found"),
+        STUDENT_INACTIVE(2, "Student account is not active"),
+        HAS_OVERDUE(3, "Student has overdue books"),
+        ALREADY_BORROWED(4, "Student already has this book"),
+        NOT_AVAILABLE(5, "Book not available");
+
+        private final int code;
+        private final String message;
+
+        IssueResult(int code, String message) {
+            this.code = code;
+            this.message = message;
+        }
+
+        public int getCode() { return code; }
+        public String getMessage() { return message; }
+
+        static IssueResult fromCode(int code) {
+            for (IssueResult result : values()) {
+                if (result.code == code) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Unknown issue_book result " + code);
+        }
+    }
+
+    /** Outcome of a checkout: the student's eligibility, then one IssueResult per book. */
+    public static class CheckoutResult {
+        private final IssueResult eligibility;
+        private final Map<Integer, IssueResult> items;
+
+        CheckoutResult(IssueResult eligibility, Map<Integer, IssueResult> items) {
+            this.eligibility = eligibility;
+            this.items = Collections.unmodifiableMap(items);
+        }
+
+        /** ISSUED if the student may borrow, otherwise why nothing in the cart was issued. */
+        public IssueResult getEligibility() { return eligibility; }
+
+        /** Result per book ID, in cart order; empty if the student was not eligible. */
+        public Map<Integer, IssueResult> getItems() { return items; }
+
+        public int getIssuedCount() {
+            int issued = 0;
+            for (IssueResult result : items.values()) {
+                if (result == IssueResult.ISSUED) {
+                    issued++;
+                }
+            }
+            return issued;
+        }
+    }
+
+    /** Most books one checkout may issue. */
+    public static final int CART_LIMIT = 20;
+
+    private Circulation() {
+    }
+
+    /**
+     * Issues a copy of the book to the student for LOAN_DAYS, or reports why not. On
+     * success the shared facets and search cache are told a copy left the shelf.
+     * Call from a DatabaseExecutor worker with a connection in auto-commit mode.
+     */
+    public static IssueResult issue(Connection conn, int studentId, int bookId) throws SQLException {
+        IssueResult result = DatabaseConnection.getDialect() == SqlDialect.MYSQL
+            ? issueWithProcedure(conn, studentId, bookId)
+            : issueWithStatements(conn, studentId, bookId);
+        if (result == IssueResult.ISSUED) {
+            Inventory.changed(bookId);
+            FacetIndex.availabilityChanged(bookId, -1);
+            SearchCache.getInstance().availabilityChanged(bookId, -1);
+        }
+        return result;
+    }
+
+    // One round trip; the procedure commits or rolls back itself
+    static IssueResult issueWithProcedure(Connection conn, int studentId, int bookId) throws SQLException {
+        try (CallableStatement call = conn.prepareCall("{CALL issue_book(?, ?, ?, ?)}")) {
+            call.setInt(1, studentId);
+            call.setInt(2, bookId);
+            call.setInt(3, LOAN_DAYS);
+            call.registerOutParameter(4, Types.INTEGER);
+            call.execute();
+            return IssueResult.fromCode(call.getInt(4));
+        }
+    }
+
+    static IssueResult issueWithStatements(Connection conn, int studentId, int bookId) throws SQLException {
+        SqlDialect dialect = DatabaseConnection.getDialect();
+        conn.setAutoCommit(false);
+        try {
+            IssueResult result = checkStudent(conn, studentId, bookId);
+            if (result == IssueResult.ISSUED) {
+                result = takeCopy(conn, studentId, bookId, dialect);
+            }
+            if (result == IssueResult.ISSUED) {
+                conn.commit();
+            } else {
+                conn.rollback();
+            }
+            return result;
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Issues every book in the cart to the student, or reports per book why not. Books
+     * are locked in book_id order so two desks checking out overlapping carts cannot
+     * deadlock. Call from a DatabaseExecutor worker with a connection in auto-commit mode.
+     */
+    public static CheckoutResult checkout(Connection conn, int studentId, int[] bookIds) throws SQLException {
+        int[] ids = Arrays.stream(bookIds).distinct().toArray();
+        if (ids.length == 0 || ids.length > CART_LIMIT) {
+            throw new IllegalArgumentException("A checkout takes 1 to " + CART_LIMIT + " books, not " + ids.length);
+        }
+        SqlDialect dialect = DatabaseConnection.getDialect();
+        Map<Integer, IssueResult> items = new LinkedHashMap<>();
+        conn.setAutoCommit(false);
+        try {
+            // Book 0 never exists, so this checks only the student; readCart checks the books
+            IssueResult eligibility = checkStudent(conn, studentId, 0);
+            if (eligibility != IssueResult.ISSUED) {
+                conn.rollback();
+                return new CheckoutResult(eligibility, items);
+            }
+            Map<Integer, String> titles = readCart(conn, studentId, ids, items);
+            int[] wanted = items.entrySet().stream()
+                .filter(item -> item.getValue() == IssueResult.ISSUED)
+                .mapToInt(Map.Entry::getKey)
+                .sorted()
+                .toArray();
+            int[] taken = takeCopies(conn, wanted, items);
+            if (taken.length == 0) {
+                conn.rollback();
+                return new CheckoutResult(eligibility, items);
+            }
+            writeLoans(conn, studentId, taken, titles, dialect);
+            conn.commit();
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        for (Map.Entry<Integer, IssueResult> item : items.entrySet()) {
+            if (item.getValue() == IssueResult.ISSUED) {
+                FacetIndex.availabilityChanged(item.getKey(), -1);
+                SearchCache.getInstance().availabilityChanged(item.getKey(), -1);
+            }
+        }
+        return new CheckoutResult(IssueResult.ISSUED, items);
+    }
+
+    // Fills items in cart order: ISSUED for books that may be issued, or why not; returns their titles
+    private static Map<Integer, String> readCart(Connection conn, int studentId, int[] ids,
+                                                 Map<Integer, IssueResult> items) throws SQLException {
+        Map<Integer, String> titles = new HashMap<>();
+        Map<Integer, Boolean> borrowed = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT b.book_id, b.title, " +
+                "(SELECT COUNT(*) FROM book_borrowings WHERE user_id = ? " +
+                " AND book_id = b.book_id AND status = 'BORROWED') AS borrowed " +
+                "FROM books b WHERE b.is_active = true AND b.book_id IN (" + CatalogIndex.ID_PLACEHOLDERS + ")")) {
+            stmt.setInt(1, studentId);
+            CatalogIndex.bindIds(stmt, 2, ids);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                titles.put(rs.getInt("book_id"), rs.getString("title"));
+                borrowed.put(rs.getInt("book_id"), rs.getInt("borrowed") > 0);
+            }
+        }
+        for (int id : ids) {
+            Boolean hasIt = borrowed.get(id);
+            items.put(id, hasIt == null ? IssueResult.NOT_AVAILABLE
+                        : hasIt ? IssueResult.ALREADY_BORROWED : IssueResult.ISSUED);
+        }
+        return titles;
+    }
+
+    // Takes one copy of each book, batched by Inventory; books with none left are marked NOT_AVAILABLE
+    private static int[] takeCopies(Connection conn, int[] ids, Map<Integer, IssueResult> items)
+            throws SQLException {
+        if (ids.length == 0) {
+            return ids;
+        }
+        boolean[] copies = Inventory.take(conn, ids);
+        int[] taken = new int[ids.length];
+        int n = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (!copies[i]) {
+                items.put(ids[i], IssueResult.NOT_AVAILABLE);
+            } else {
+                taken[n++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(taken, n);
+    }
+
+    private static void writeLoans(Connection conn, int studentId, int[] ids, Map<Integer, String> titles,
+                                   SqlDialect dialect) throws SQLException {
+        String dueDate = dialect.addDays("CURRENT_DATE", LOAN_DAYS);
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO book_borrowings (book_id, user_id, borrow_date, due_date, status) " +
+                "VALUES (?, ?, CURRENT_DATE, " + dueDate + ", 'BORROWED')")) {
+            for (int id : ids) {
+                insert.setInt(1, id);
+                insert.setInt(2, studentId);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        StringBuilder message = new StringBuilder(ids.length == 1 ? "Book " : "Books ");
+        for (int i = 0; i < ids.length; i++) {
+            message.append(i > 0 ? ", '" : "'").append(titles.get(ids[i])).append("'");
+        }
+        message.append(ids.length == 1 ? " has" : " have").append(" been issued to you. Due date: ");
+        try (PreparedStatement notify = conn.prepareStatement(
+                "INSERT INTO notifications (user_id, message, is_read) " +
+                "VALUES (?, CONCAT(?, CAST(" + dueDate + " AS DATE)), false)")) {
+            notify.setInt(1, studentId);
+            notify.setString(2, message.toString());
+            notify.executeUpdate();
+        }
+    }
+
+    // The student, overdue and duplicate-loan checks in one query: ISSUED if the student may
+    // borrow the book (0 for any book). Holds.pickUp applies it too.
+    static IssueResult checkStudent(Connection conn, int studentId, int bookId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT u.is_active, " +
+                "(SELECT COUNT(*) FROM book_borrowings WHERE user_id = u.user_id " +
+                " AND status = 'BORROWED' AND due_date < CURRENT_DATE) AS overdue, " +
+                "(SELECT COUNT(*) FROM book_borrowings WHERE user_id = u.user_id " +
+                " AND book_id = ? AND status = 'BORROWED') AS borrowed " +
+                "FROM users u WHERE u.user_id = ? AND u.role = 'STUDENT'")) {
+            stmt.setInt(1, bookId);
+            stmt.setInt(2, studentId);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) {
+                return IssueResult.STUDENT_NOT_FOUND;
+            }
+            if (!rs.getBoolean("is_active")) {
+                return IssueResult.STUDENT_INACTIVE;
+            }
+            if (rs.getInt("overdue") > 0) {
+                return IssueResult.HAS_OVERDUE;
+            }
+            if (rs.getInt("borrowed") > 0) {
+                return IssueResult.ALREADY_BORROWED;
+            }
+            return IssueResult.ISSUED;
+        }
+    }
+
+    private static IssueResult takeCopy(Connection conn, int studentId, int bookId, SqlDialect dialect)
+            throws SQLException {
+        if (!Inventory.take(conn, bookId)) {
+            return IssueResult.NOT_AVAILABLE;
+        }
+        String dueDate = dialect.addDays("CURRENT_DATE", LOAN_DAYS);
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO book_borrowings (book_id, user_id, borrow_date, due_date, status) " +
+                "VALUES (?, ?, CURRENT_DATE, " + dueDate + ", 'BORROWED')")) {
+            insert.setInt(1, bookId);
+            insert.setInt(2, studentId);
+            insert.executeUpdate();
+        }
+        try (PreparedStatement notify = conn.prepareStatement(
+                "INSERT INTO notifications (user_id, message, is_read) " +
+                "SELECT ?, CONCAT('Book ''', title, ''' has been issued to you. Due date: ', " +
+                "CAST(" + dueDate + " AS DATE)), false FROM books WHERE book_id = ?")) {
+            notify.setInt(1, studentId);
+            notify.setInt(2, bookId);
+            notify.executeUpdate();
+        }
+        return IssueResult.ISSUED;
+    }
+}
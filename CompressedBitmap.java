@@ -0,0 +1,320 @@
+import java.util.Arrays;
+
+/**
+ * Set of non-negative ints stored as a compressed bitmap, in the style of Roaring bitmaps.
+ *
+ * Values are split by their high 16 bits into chunks of 65536. A chunk holding few
+ * values keeps them as a sorted char array (2 bytes each); once it passes 4096 values
+ * it switches to a plain 8 KB bit set, which is smaller from then on. Intersections
+ * work chunk by chunk, so intersecting a small set with a large one only touches the
+ * large one's matching chunks. Not thread-safe; FacetIndex guards its bitmaps.
+ */
+public class CompressedBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITSET_WORDS = 65536 / 64;
+
+    private static class Chunk {
+        char[] values;
+        long[] bits;
+        int cardinality;
+
+        static Chunk array(int capacity) {
+            Chunk chunk = new Chunk();
+            chunk.values = new char[capacity];
+            return chunk;
+        }
+
+        static Chunk bitset() {
+            Chunk chunk = new Chunk();
+            chunk.bits = new long[BITSET_WORDS];
+            return chunk;
+        }
+
+        boolean contains(char low) {
+            if (bits != null) {
+                return (bits[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        boolean add(char low) {
+            if (bits != null) {
+                long before = bits[low >>> 6];
+                bits[low >>> 6] = before | (1L << low);
+                if (before == bits[low >>> 6]) {
+                    return false;
+                }
+                cardinality++;
+                return true;
+            }
+            int pos = Arrays.binarySearch(values, 0, cardinality, low);
+            if (pos >= 0) {
+                return false;
+            }
+            if (cardinality == ARRAY_MAX) {
+                toBitset();
+                return add(low);
+            }
+            pos = -pos - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(values, pos, values, pos + 1, cardinality - pos);
+            values[pos] = low;
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(char low) {
+            if (bits != null) {
+                long before = bits[low >>> 6];
+                bits[low >>> 6] = before & ~(1L << low);
+                if (before == bits[low >>> 6]) {
+                    return false;
+                }
+                if (--cardinality <= ARRAY_MAX / 2) {
+                    toArray();
+                }
+                return true;
+            }
+            int pos = Arrays.binarySearch(values, 0, cardinality, low);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(values, pos + 1, values, pos, cardinality - pos - 1);
+            cardinality--;
+            return true;
+        }
+
+        void toBitset() {
+            long[] set = new long[BITSET_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                set[values[i] >>> 6] |= 1L << values[i];
+            }
+            bits = set;
+            values = null;
+        }
+
+        void toArray() {
+            char[] array = new char[cardinality];
+            int n = 0;
+            for (int w = 0; w < BITSET_WORDS; w++) {
+                for (long word = bits[w]; word != 0; word &= word - 1) {
+                    array[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            values = array;
+            bits = null;
+        }
+
+        Chunk copy() {
+            Chunk chunk = new Chunk();
+            chunk.values = values == null ? null : Arrays.copyOf(values, cardinality);
+            chunk.bits = bits == null ? null : bits.clone();
+            chunk.cardinality = cardinality;
+            return chunk;
+        }
+
+        // Intersection, or its size only when into is null
+        static int and(Chunk a, Chunk b, Chunk into) {
+            if (a.bits != null && b.bits != null) {
+                int count = 0;
+                for (int w = 0; w < BITSET_WORDS; w++) {
+                    long word = a.bits[w] & b.bits[w];
+                    if (into != null && word != 0) {
+                        for (long rest = word; rest != 0; rest &= rest - 1) {
+                            into.add((char) ((w << 6) + Long.numberOfTrailingZeros(rest)));
+                        }
+                    }
+                    count += Long.bitCount(word);
+                }
+                return count;
+            }
+            if (a.bits != null) {
+                Chunk swap = a;
+                a = b;
+                b = swap;
+            }
+            // a is now an array: probe each of its values in b
+            int count = 0;
+            if (b.bits != null) {
+                for (int i = 0; i < a.cardinality; i++) {
+                    if (b.contains(a.values[i])) {
+                        count++;
+                        if (into != null) {
+                            into.add(a.values[i]);
+                        }
+                    }
+                }
+                return count;
+            }
+            int i = 0;
+            int j = 0;
+            while (i < a.cardinality && j < b.cardinality) {
+                if (a.values[i] < b.values[j]) {
+                    i++;
+                } else if (a.values[i] > b.values[j]) {
+                    j++;
+                } else {
+                    count++;
+                    if (into != null) {
+                        into.add(a.values[i]);
+                    }
+                    i++;
+                    j++;
+                }
+            }
+            return count;
+        }
+    }
+
+    // Chunks sorted by their high 16 bits
+    private char[] keys = new char[0];
+    private Chunk[] chunks = new Chunk[0];
+    private int chunkCount = 0;
+
+    public static CompressedBitmap of(int... values) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    public boolean add(int value) {
+        char high = (char) (value >>> 16);
+        int pos = Arrays.binarySearch(keys, 0, chunkCount, high);
+        if (pos < 0) {
+            pos = -pos - 1;
+            if (chunkCount == keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(4, chunkCount * 2));
+                chunks = Arrays.copyOf(chunks, keys.length);
+            }
+            System.arraycopy(keys, pos, keys, pos + 1, chunkCount - pos);
+            System.arraycopy(chunks, pos, chunks, pos + 1, chunkCount - pos);
+            keys[pos] = high;
+            chunks[pos] = Chunk.array(4);
+            chunkCount++;
+        }
+        return chunks[pos].add((char) value);
+    }
+
+    public boolean remove(int value) {
+        int pos = Arrays.binarySearch(keys, 0, chunkCount, (char) (value >>> 16));
+        if (pos < 0 || !chunks[pos].remove((char) value)) {
+            return false;
+        }
+        if (chunks[pos].cardinality == 0) {
+            System.arraycopy(keys, pos + 1, keys, pos, chunkCount - pos - 1);
+            System.arraycopy(chunks, pos + 1, chunks, pos, chunkCount - pos - 1);
+            chunks[--chunkCount] = null;
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        int pos = Arrays.binarySearch(keys, 0, chunkCount, (char) (value >>> 16));
+        return pos >= 0 && chunks[pos].contains((char) value);
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            total += chunks[i].cardinality;
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return chunkCount == 0;
+    }
+
+    /** A new bitmap holding the values in both this and other. */
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < chunkCount && j < other.chunkCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Chunk chunk = Chunk.array(4);
+                if (Chunk.and(chunks[i], other.chunks[j], chunk) > 0) {
+                    if (result.chunkCount == result.keys.length) {
+                        result.keys = Arrays.copyOf(result.keys, Math.max(4, result.chunkCount * 2));
+                        result.chunks = Arrays.copyOf(result.chunks, result.keys.length);
+                    }
+                    result.keys[result.chunkCount] = keys[i];
+                    result.chunks[result.chunkCount++] = chunk;
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /** Size of the intersection with other, without building it. */
+    public int andCardinality(CompressedBitmap other) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < chunkCount && j < other.chunkCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                count += Chunk.and(chunks[i], other.chunks[j], null);
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /** Up to limit values greater than after, in ascending order. */
+    public int[] next(int after, int limit) {
+        int[] result = new int[Math.min(limit, cardinality())];
+        int n = 0;
+        for (int c = 0; c < chunkCount && n < result.length; c++) {
+            int base = keys[c] << 16;
+            if (base + 0xFFFF <= after) {
+                continue;
+            }
+            Chunk chunk = chunks[c];
+            if (chunk.bits == null) {
+                for (int i = 0; i < chunk.cardinality && n < result.length; i++) {
+                    int value = base + chunk.values[i];
+                    if (value > after) {
+                        result[n++] = value;
+                    }
+                }
+            } else {
+                for (int w = 0; w < BITSET_WORDS && n < result.length; w++) {
+                    for (long word = chunk.bits[w]; word != 0 && n < result.length; word &= word - 1) {
+                        int value = base + (w << 6) + Long.numberOfTrailingZeros(word);
+                        if (value > after) {
+                            result[n++] = value;
+                        }
+                    }
+                }
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    public CompressedBitmap copy() {
+        CompressedBitmap result = new CompressedBitmap();
+        result.keys = Arrays.copyOf(keys, chunkCount);
+        result.chunks = new Chunk[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            result.chunks[i] = chunks[i].copy();
+        }
+        result.chunkCount = chunkCount;
+        return result;
+    }
+}
@@ -0,0 +1,580 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded JDBC connection pool.
+ *
+ * Callers borrow a connection with {@link #borrow()} and hand it back by calling
+ * {@code close()} on it, so the usual try-with-resources block is all a panel needs.
+ * A background housekeeper keeps at least {@code minSize} connections open, retires
+ * connections older than {@code maxLifetimeMs}, evicts connections idle longer than
+ * {@code idleTimeoutMs} and reports connections held longer than the leak threshold.
+ *
+ * Connections are only validated when they have sat idle longer than
+ * {@code validationThresholdMs}, so a busy pool never pays an extra round trip per
+ * borrow. The housekeeper also pings idle connections every {@code keepaliveIntervalMs}
+ * so the server does not drop them, and any connection that raises a fatal
+ * SQLException (see {@link #isFatal(SQLException)}) is marked dead and discarded on return.
+ *
+ * Each connection keeps a {@link StatementCache} of up to {@code statementCacheSize}
+ * prepared statements. Any statement or ResultSet a caller leaves open is closed when
+ * the connection is handed back, so forgotten cursors never outlive a borrow.
+ *
+ * When a {@link QueryMetrics} is set, every statement execution is timed and its rows
+ * counted under the statement's fingerprint.
+ */
+public class ConnectionPool {
+
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final ConnectionFactory factory;
+    private final int minSize;
+    private final int maxSize;
+    private final long connectionTimeoutMs;
+    private final long maxLifetimeMs;
+    private final long idleTimeoutMs;
+    private final long leakDetectionThresholdMs;
+    private final long validationThresholdMs;
+    private final long keepaliveIntervalMs;
+    private final int statementCacheSize;
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown = false;
+    private volatile QueryMetrics queryMetrics;
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    // MySQL server gone away, lost connection, shutdown in progress, too many connections
+    private static final Set<Integer> FATAL_MYSQL_ERRORS = Set.of(2006, 2013, 1053, 1040, 1152, 1184);
+
+    public ConnectionPool(ConnectionFactory factory, int minSize, int maxSize,
+                          long connectionTimeoutMs, long maxLifetimeMs,
+                          long idleTimeoutMs, long leakDetectionThresholdMs,
+                          long validationThresholdMs, long keepaliveIntervalMs,
+                          int statementCacheSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.factory = factory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.connectionTimeoutMs = connectionTimeoutMs;
+        this.maxLifetimeMs = maxLifetimeMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.leakDetectionThresholdMs = leakDetectionThresholdMs;
+        this.validationThresholdMs = validationThresholdMs;
+        this.keepaliveIntervalMs = keepaliveIntervalMs;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 30, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Borrows a connection, opening a new one if the pool has spare capacity.
+     * Blocks for at most the connection timeout when all connections are in use.
+     */
+    public Connection borrow() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+        try {
+            if (!permits.tryAcquire(connectionTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + connectionTimeoutMs +
+                    "ms waiting for a database connection (pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (!pooled.isExpired() && !pooled.dead && isAliveForBorrow(pooled)) {
+                    break;
+                }
+                pooled.closeQuietly();
+            }
+            if (pooled == null) {
+                pooled = new PooledConnection(factory.create());
+            }
+            pooled.markBorrowed();
+            borrowed.add(pooled);
+            return pooled.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private boolean isAliveForBorrow(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsedAt < validationThresholdMs) {
+            return true; // used recently enough to trust without a round trip
+        }
+        return validate(pooled);
+    }
+
+    private boolean validate(PooledConnection pooled) {
+        try {
+            if (pooled.raw.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                pooled.lastUsedAt = System.currentTimeMillis();
+                return true;
+            }
+        } catch (SQLException e) {
+            // Treated as dead below
+        }
+        pooled.dead = true;
+        return false;
+    }
+
+    /**
+     * Returns true when the exception means the physical connection can no longer be
+     * used: SQLState class 08 (connection exception), server shutdown, or a
+     * communications failure reported by the MySQL driver.
+     */
+    public static boolean isFatal(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLNonTransientConnectionException ||
+                t instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                int code = ((SQLException) t).getErrorCode();
+                if (state != null && state.startsWith("08") || FATAL_MYSQL_ERRORS.contains(code)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        if (!borrowed.remove(pooled)) {
+            return; // already returned
+        }
+        try {
+            pooled.releaseResources();
+            if (!pooled.raw.getAutoCommit()) {
+                // Never hand the next caller someone else's open transaction
+                pooled.raw.rollback();
+                pooled.raw.setAutoCommit(true);
+            }
+            if (shutdown || pooled.dead || pooled.isExpired() || pooled.raw.isClosed()) {
+                pooled.closeQuietly();
+            } else {
+                pooled.lastUsedAt = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            pooled.closeQuietly();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes a borrowed connection instead of returning it to the pool.
+     * Used when the connection is known to be broken.
+     */
+    public void evict(Connection connection) {
+        if (connection == null || !Proxy.isProxyClass(connection.getClass())) {
+            return;
+        }
+        InvocationHandler handler = Proxy.getInvocationHandler(connection);
+        if (handler instanceof PooledConnection) {
+            PooledConnection pooled = (PooledConnection) handler;
+            pooled.closeQuietly();
+            if (!pooled.handedBack) {
+                pooled.handedBack = true;
+                giveBack(pooled);
+            }
+        }
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+
+        // Retire expired connections and trim idle ones above the minimum
+        List<PooledConnection> snapshot = new ArrayList<>(idle);
+        int kept = snapshot.size();
+        for (PooledConnection pooled : snapshot) {
+            boolean idleTooLong = now - pooled.lastUsedAt > idleTimeoutMs && kept > minSize;
+            if ((pooled.isExpired() || idleTooLong) && idle.remove(pooled)) {
+                pooled.closeQuietly();
+                kept--;
+            }
+        }
+
+        // Keep idle connections warm so the server does not time them out
+        for (PooledConnection pooled : new ArrayList<>(idle)) {
+            if (now - pooled.lastUsedAt > keepaliveIntervalMs && idle.remove(pooled)) {
+                if (validate(pooled)) {
+                    idle.offerLast(pooled);
+                } else {
+                    pooled.closeQuietly();
+                }
+            }
+        }
+
+        // Report connections that were never returned
+        for (PooledConnection pooled : borrowed) {
+            if (!pooled.leakReported && now - pooled.borrowedAt > leakDetectionThresholdMs) {
+                pooled.leakReported = true;
+                Exception trace = new Exception("Connection held for " + (now - pooled.borrowedAt) +
+                    "ms by thread " + pooled.borrowerThread + "; possible leak");
+                trace.setStackTrace(pooled.borrowStack);
+                trace.printStackTrace();
+            }
+        }
+
+        // Top the pool back up to its minimum size
+        while (!shutdown && idle.size() + borrowed.size() < minSize) {
+            try {
+                PooledConnection pooled = new PooledConnection(factory.create());
+                idle.offerLast(pooled);
+            } catch (SQLException e) {
+                break;
+            }
+        }
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    /** Starts (or with null, stops) recording statement timings for connections from this pool. */
+    public void setQueryMetrics(QueryMetrics metrics) {
+        this.queryMetrics = metrics;
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.closeQuietly();
+        }
+        for (PooledConnection active : borrowed) {
+            active.closeQuietly();
+        }
+        borrowed.clear();
+    }
+
+    private class PooledConnection implements InvocationHandler {
+        private final Connection raw;
+        private final Connection proxy;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastUsedAt = createdAt;
+        private volatile long borrowedAt;
+        private volatile String borrowerThread;
+        private volatile StackTraceElement[] borrowStack;
+        private volatile boolean leakReported;
+        private volatile boolean handedBack;
+        private volatile boolean dead;
+        private final StatementCache statementCache;
+        // Statements the borrower has not closed yet; each one closes its own result sets
+        private final Set<AutoCloseable> openResources = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+            this.statementCache = statementCacheSize > 0
+                ? new StatementCache(statementCacheSize, statementCacheHits, statementCacheMisses)
+                : null;
+            this.proxy = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        void markBorrowed() {
+            borrowedAt = System.currentTimeMillis();
+            borrowerThread = Thread.currentThread().getName();
+            borrowStack = Thread.currentThread().getStackTrace();
+            leakReported = false;
+            handedBack = false;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - createdAt > maxLifetimeMs;
+        }
+
+        synchronized void trackResource(AutoCloseable resource) {
+            openResources.add(resource);
+        }
+
+        synchronized void untrackResource(AutoCloseable resource) {
+            openResources.remove(resource);
+        }
+
+        synchronized void releaseResources() {
+            for (AutoCloseable resource : new ArrayList<>(openResources)) {
+                try {
+                    resource.close();
+                } catch (Exception e) {
+                    // Best effort; the caller already left it open
+                }
+            }
+            openResources.clear();
+            if (statementCache != null) {
+                statementCache.releaseAll();
+            }
+        }
+
+        void closeQuietly() {
+            if (statementCache != null) {
+                statementCache.closeAll();
+            }
+            try {
+                raw.close();
+            } catch (SQLException e) {
+                // Connection is being discarded anyway
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxyObj, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!handedBack) {
+                        handedBack = true;
+                        giveBack(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return handedBack || raw.isClosed();
+                case "equals":
+                    return proxyObj == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxyObj);
+                case "toString":
+                    return "Pooled" + raw;
+                case "isValid":
+                    if (handedBack) {
+                        return false;
+                    }
+                    return !dead && (Boolean) invokeChecked(raw, method, args);
+                default:
+                    if (handedBack) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    if (statementCache != null && method.getName().equals("prepareStatement") &&
+                            args.length == 1) {
+                        String sql = (String) args[0];
+                        PreparedStatement cached = statementCache.checkOut(sql,
+                            text -> {
+                                try {
+                                    return raw.prepareStatement(text);
+                                } catch (SQLException e) {
+                                    dead = dead || isFatal(e);
+                                    throw e;
+                                }
+                            });
+                        if (cached != null) {
+                            return wrapStatement(cached, PreparedStatement.class, sql, sql);
+                        }
+                    }
+                    Object result = invokeChecked(raw, method, args);
+                    if (result instanceof Statement) {
+                        // Statements report fatal errors back to this connection too
+                        String preparedSql = args != null && args.length > 0 && args[0] instanceof String
+                            ? (String) args[0] : null;
+                        return wrapStatement((Statement) result, method.getReturnType(), null, preparedSql);
+                    }
+                    return result;
+            }
+        }
+
+        private Object invokeChecked(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException && isFatal((SQLException) cause)) {
+                    dead = true;
+                }
+                throw cause;
+            }
+        }
+
+        private Object wrapStatement(Statement statement, Class<?> type, String cachedSql, String preparedSql) {
+            boolean[] released = {false};
+            // Types of the bound parameters, for the slow query log; the values are never kept
+            List<String> bindTypes = new ArrayList<>();
+            QueryMetrics.Stats[] lastStats = {null};
+            // The last result set handed out, closed with the statement so its rows are counted
+            ResultSet[] current = {null};
+            Object wrapped = Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{type},
+                (stmtProxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getConnection":
+                            return proxy;
+                        case "close":
+                            if (current[0] != null) {
+                                current[0].close();
+                                current[0] = null;
+                            }
+                            if (cachedSql == null) {
+                                untrackResource((Statement) stmtProxy);
+                                return invokeChecked(statement, method, args);
+                            }
+                            if (!released[0]) {
+                                released[0] = true;
+                                statementCache.checkIn(cachedSql, (PreparedStatement) statement);
+                            }
+                            return null;
+                        case "isClosed":
+                            return released[0] || statement.isClosed();
+                        case "equals":
+                            return stmtProxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(stmtProxy);
+                        default:
+                            if (released[0]) {
+                                throw new SQLException("Statement has already been closed");
+                            }
+                            QueryMetrics metrics = queryMetrics;
+                            if (metrics == null) {
+                                Object result = invokeChecked(statement, method, args);
+                                if (result instanceof ResultSet) {
+                                    current[0] = (ResultSet) result;
+                                }
+                                return result;
+                            }
+
+                            String name = method.getName();
+                            if (name.startsWith("execute")) {
+                                String sql = args != null && args.length > 0 && args[0] instanceof String
+                                    ? (String) args[0] : preparedSql;
+                                long start = System.nanoTime();
+                                Object result = invokeChecked(statement, method, args);
+                                lastStats[0] = metrics.record(sql, System.nanoTime() - start,
+                                                              countUpdated(result), bindTypes);
+                                if (result instanceof ResultSet) {
+                                    current[0] = wrapResultSet((ResultSet) result, lastStats[0]);
+                                    return current[0];
+                                }
+                                return result;
+                            }
+                            if (name.startsWith("set") && args != null && args.length >= 2 &&
+                                    args[0] instanceof Integer) {
+                                int index = (Integer) args[0];
+                                while (bindTypes.size() < index) {
+                                    bindTypes.add("?");
+                                }
+                                bindTypes.set(index - 1, name.substring(3));
+                            } else if (name.equals("clearParameters")) {
+                                bindTypes.clear();
+                            }
+                            Object result = invokeChecked(statement, method, args);
+                            if (result instanceof ResultSet) {
+                                current[0] = wrapResultSet((ResultSet) result, lastStats[0]);
+                                return current[0];
+                            }
+                            return result;
+                    }
+                });
+            if (cachedSql == null) {
+                // Cached statements are checked back in by StatementCache.releaseAll instead
+                trackResource((Statement) wrapped);
+            }
+            return wrapped;
+        }
+
+        // Counts rows as the caller reads them and adds the total to the statement's stats on close
+        private ResultSet wrapResultSet(ResultSet resultSet, QueryMetrics.Stats stats) {
+            long[] rows = {0};
+            boolean[] closed = {false};
+            return (ResultSet) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (rsProxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            Object hasRow = invokeChecked(resultSet, method, args);
+                            if ((Boolean) hasRow) {
+                                rows[0]++;
+                            }
+                            return hasRow;
+                        case "close":
+                            if (!closed[0]) {
+                                closed[0] = true;
+                                if (stats != null) {
+                                    stats.addRows(rows[0]);
+                                }
+                            }
+                            return invokeChecked(resultSet, method, args);
+                        case "equals":
+                            return rsProxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(rsProxy);
+                        default:
+                            return invokeChecked(resultSet, method, args);
+                    }
+                });
+        }
+    }
+
+    private static long countUpdated(Object result) {
+        if (result instanceof Integer || result instanceof Long) {
+            return ((Number) result).longValue();
+        }
+        long total = 0;
+        if (result instanceof int[]) {
+            for (int count : (int[]) result) {
+                total += Math.max(0, count);
+            }
+        } else if (result instanceof long[]) {
+            for (long count : (long[]) result) {
+                total += Math.max(0, count);
+            }
+        }
+        return total;
+    }
+}
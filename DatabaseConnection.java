@@ -1,78 +1,297 @@
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 public class DatabaseConnection {
-    private static final String URL = "jdbc:mysql://localhost:3306/library_db";
+    private static final String URL = System.getProperty("library.db.url", "jdbc:mysql://localhost:3306/library_db");
     private static final String USERNAME = "root";
     private static final String PASSWORD = "harshilmittal";
+
+    // "mysql" (default) or "embedded" for an in-process H2 database that needs no server
+    private static final String MODE = System.getProperty("library.db.mode", "mysql");
+    private static final String EMBEDDED_URL = System.getProperty("library.db.embeddedUrl",
+        "jdbc:h2:./library_db;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+    private static final SqlDialect DIALECT =
+        "embedded".equalsIgnoreCase(MODE) ? SqlDialect.H2 : SqlDialect.MYSQL;
     
     // Connection pool size
+    private static final int POOL_MIN_SIZE = Integer.getInteger("library.db.pool.min", 2);
+    private static final int POOL_MAX_SIZE = Integer.getInteger("library.db.pool.max", 10);
+    private static final long CONNECTION_TIMEOUT_MS = Long.getLong("library.db.pool.connectionTimeoutMs", 10000);
+    private static final long MAX_LIFETIME_MS = Long.getLong("library.db.pool.maxLifetimeMs", 30 * 60 * 1000);
+    private static final long IDLE_TIMEOUT_MS = Long.getLong("library.db.pool.idleTimeoutMs", 10 * 60 * 1000);
+    private static final long LEAK_THRESHOLD_MS = Long.getLong("library.db.pool.leakThresholdMs", 60 * 1000);
+    // Only re-validate connections that have been idle longer than this
+    private static final long VALIDATION_THRESHOLD_MS = Long.getLong("library.db.pool.validationThresholdMs", 30 * 1000);
+    private static final long KEEPALIVE_INTERVAL_MS = Long.getLong("library.db.pool.keepaliveIntervalMs", 2 * 60 * 1000);
+    // Prepared statements cached per connection (0 disables the cache)
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("library.db.pool.statementCacheSize", 64);
+
+    // Optional read replica for reports and dashboard counters; same dialect as the primary
+    private static final String REPLICA_URL = System.getProperty("library.db.replica.url");
+    private static final String REPLICA_USERNAME = System.getProperty("library.db.replica.username", USERNAME);
+    private static final String REPLICA_PASSWORD = System.getProperty("library.db.replica.password", PASSWORD);
+    // Reads fall back to the primary while the replica is further behind than this
+    private static final long REPLICA_MAX_LAG_SECONDS = Long.getLong("library.db.replica.maxLagSeconds", 30);
+    private static final long REPLICA_LAG_CHECK_MS = Long.getLong("library.db.replica.lagCheckIntervalMs", 5000);
+
+    // Statement timings per SQL fingerprint; executions slower than slowQueryMs are logged
+    private static final QueryMetrics QUERY_METRICS = Boolean.parseBoolean(
+        System.getProperty("library.db.metrics", "true"))
+        ? new QueryMetrics(Long.getLong("library.db.slowQueryMs", 200))
+        : null;
+
+    static {
+        if (QUERY_METRICS != null && Boolean.getBoolean("library.db.metrics.reportOnExit")) {
+            Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> System.err.print(QUERY_METRICS.report() + SearchCache.getInstance().report()),
+                "query-metrics-report"));
+        }
+    }
+
     private static final int MAX_RETRIES = 3;
-    private static Connection connection = null;
+    private static final long RETRY_BASE_BACKOFF_MS = Long.getLong("library.db.retry.baseBackoffMs", 200);
+    private static final long RETRY_MAX_BACKOFF_MS = Long.getLong("library.db.retry.maxBackoffMs", 2000);
+    // Consecutive failed getConnection calls before failing fast, and how long to fail fast for
+    private static final CircuitBreaker BREAKER = new CircuitBreaker(
+        Integer.getInteger("library.db.breaker.failureThreshold", 2),
+        Long.getLong("library.db.breaker.openMs", 5000),
+        Long.getLong("library.db.breaker.maxOpenMs", 60000)
+    );
+    private static ConnectionPool pool = null;
+    private static ConnectionPool replicaPool = null;
+    private static long replicaCheckedAt = 0;
+    private static boolean replicaFresh = false;
 
-    public static Connection getConnection() {
-        int retries = 0;
-        while (retries < MAX_RETRIES) {
-            try {
-                // Check if connection is null or closed
-                if (connection == null || connection.isClosed()) {
-                    // Load the JDBC driver
-                    Class.forName("com.mysql.cj.jdbc.Driver");
-                    
-                    // Create new connection with timeout settings
-                    connection = DriverManager.getConnection(
-                        URL + "?autoReconnect=true&useSSL=false&serverTimezone=UTC",
-                        USERNAME,
-                        PASSWORD
-                    );
-                    
-                    // Test the connection
-                    if (connection.isValid(5)) { // 5 seconds timeout
-                        return connection;
+    private static synchronized ConnectionPool getPool() throws ClassNotFoundException {
+        if (pool == null) {
+            // Load the JDBC driver
+            Class.forName(DIALECT.getDriverClass());
+
+            ConnectionPool.ConnectionFactory factory;
+            if (DIALECT == SqlDialect.H2) {
+                factory = () -> DriverManager.getConnection(EMBEDDED_URL, USERNAME, PASSWORD);
+            } else {
+                factory = () -> DriverManager.getConnection(
+                    URL + "?autoReconnect=true&useSSL=false&serverTimezone=UTC&useServerPrepStmts=true&rewriteBatchedStatements=true&connectTimeout=5000",
+                    USERNAME,
+                    PASSWORD
+                );
+            }
+
+            pool = new ConnectionPool(
+                factory,
+                POOL_MIN_SIZE, POOL_MAX_SIZE, CONNECTION_TIMEOUT_MS,
+                MAX_LIFETIME_MS, IDLE_TIMEOUT_MS, LEAK_THRESHOLD_MS,
+                VALIDATION_THRESHOLD_MS, KEEPALIVE_INTERVAL_MS, STATEMENT_CACHE_SIZE
+            );
+            pool.setQueryMetrics(QUERY_METRICS);
+
+            try (Connection conn = pool.borrow()) {
+                if (DIALECT == SqlDialect.H2) {
+                    // A fresh embedded database has no schema yet
+                    try (java.sql.Statement stmt = conn.createStatement()) {
+                        createTables(stmt);
                     }
-                } else if (connection.isValid(5)) {
-                    return connection;
                 }
+                SchemaMigrations.migrate(conn);
+            } catch (SQLException e) {
+                showError("Error initializing database: " + e.getMessage());
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Borrows a connection from the pool. Callers must close it (ideally with
+     * try-with-resources) to hand it back; closing does not end the physical connection.
+     */
+    public static Connection getConnection() {
+        if (!BREAKER.allowRequest()) {
+            // Database known to be down: fail fast so panels keep showing what they have
+            return null;
+        }
+        // Never sleep on the EDT; background callers get jittered exponential backoff
+        int attempts = SwingUtilities.isEventDispatchThread() ? 1 : MAX_RETRIES;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // The pool validates idle connections itself, so no round trip here
+                Connection conn = getPool().borrow();
+                BREAKER.recordSuccess();
+                return conn;
             } catch (ClassNotFoundException e) {
-                showError("Database driver not found. Please ensure MySQL JDBC driver is in the classpath.\nError: " + e.getMessage());
+                BREAKER.recordIgnored();
+                showError("Database driver not found. Please ensure the " + DIALECT.getDriverClass() +
+                         " JDBC driver is in the classpath.\nError: " + e.getMessage());
                 return null;
             } catch (SQLException e) {
-                retries++;
-                if (retries == MAX_RETRIES) {
-                    showError("Failed to connect to database after " + MAX_RETRIES + " attempts.\n" +
-                             "Please check:\n" +
-                             "1. MySQL server is running\n" +
-                             "2. Database 'library_management' exists\n" +
-                             "3. Username and password are correct\n" +
-                             "4. Port 3306 is correct and available\n\n" +
-                             "Error: " + e.getMessage());
+                if (!ConnectionPool.isFatal(e)) {
+                    // Bad credentials, unknown database, pool exhausted: the server answered,
+                    // so retrying will not help and the breaker stays closed
+                    BREAKER.recordIgnored();
+                    showError(connectFailedMessage(attempt, e));
+                    return null;
+                }
+                if (attempt >= attempts) {
+                    if (BREAKER.recordFailure()) {
+                        showError(connectFailedMessage(attempt, e));
+                    }
                     return null;
                 }
-                // Wait before retrying
                 try {
-                    Thread.sleep(1000); // Wait 1 second before retrying
+                    Thread.sleep(backoffMs(attempt));
                 } catch (InterruptedException ie) {
                     Thread.currentThread().interrupt();
+                    BREAKER.recordIgnored();
+                    return null;
                 }
             }
         }
-        return null;
     }
 
-    public static void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                connection = null;
+    private static String connectFailedMessage(int attempts, SQLException e) {
+        return "Failed to connect to database after " + attempts + (attempts == 1 ? " attempt" : " attempts") + ".\n" +
+               "Please check:\n" +
+               "1. MySQL server is running\n" +
+               "2. Database 'library_management' exists\n" +
+               "3. Username and password are correct\n" +
+               "4. Port 3306 is correct and available\n\n" +
+               "Error: " + e.getMessage();
+    }
+
+    // Half the exponential step plus random jitter, so clients that failed together retry apart
+    private static long backoffMs(int attempt) {
+        long step = Math.min(RETRY_MAX_BACKOFF_MS, RETRY_BASE_BACKOFF_MS << (attempt - 1));
+        return step / 2 + ThreadLocalRandom.current().nextLong(step / 2 + 1);
+    }
+
+    /** True while the circuit breaker is refusing connection attempts. */
+    public static boolean isCircuitOpen() {
+        return BREAKER.getState() == CircuitBreaker.State.OPEN;
+    }
+
+    /** The SQL dialect of the configured database; see SqlDialect. */
+    public static SqlDialect getDialect() {
+        return DIALECT;
+    }
+
+    public static boolean isEmbedded() {
+        return DIALECT == SqlDialect.H2;
+    }
+
+    /**
+     * Borrows a connection for read-only work that can tolerate slightly stale data.
+     * Served by the replica when one is configured and within the lag tolerance,
+     * otherwise by the primary. Writes must use getConnection().
+     */
+    public static Connection getReadConnection() {
+        if (REPLICA_URL != null) {
+            try {
+                Connection conn = getReplicaPool().borrow();
+                if (isReplicaFresh(conn)) {
+                    return conn;
+                }
+                conn.close();
+            } catch (ClassNotFoundException | SQLException e) {
+                // Replica unavailable; the primary serves reads until it is back
             }
+        }
+        return getConnection();
+    }
+
+    private static synchronized ConnectionPool getReplicaPool() throws ClassNotFoundException {
+        if (replicaPool == null) {
+            Class.forName(DIALECT.getDriverClass());
+
+            replicaPool = new ConnectionPool(
+                () -> {
+                    Connection conn = DriverManager.getConnection(REPLICA_URL, REPLICA_USERNAME, REPLICA_PASSWORD);
+                    conn.setReadOnly(true);
+                    return conn;
+                },
+                POOL_MIN_SIZE, POOL_MAX_SIZE, CONNECTION_TIMEOUT_MS,
+                MAX_LIFETIME_MS, IDLE_TIMEOUT_MS, LEAK_THRESHOLD_MS,
+                VALIDATION_THRESHOLD_MS, KEEPALIVE_INTERVAL_MS, STATEMENT_CACHE_SIZE
+            );
+            replicaPool.setQueryMetrics(QUERY_METRICS);
+        }
+        return replicaPool;
+    }
+
+    // Checks replication lag at most once per REPLICA_LAG_CHECK_MS, using the borrowed connection
+    private static synchronized boolean isReplicaFresh(Connection conn) {
+        long now = System.currentTimeMillis();
+        if (now - replicaCheckedAt < REPLICA_LAG_CHECK_MS) {
+            return replicaFresh;
+        }
+        replicaCheckedAt = now;
+        try {
+            Long lag = getReplicationLagSeconds(conn);
+            replicaFresh = lag != null && lag <= REPLICA_MAX_LAG_SECONDS;
         } catch (SQLException e) {
-            showError("Error closing database connection: " + e.getMessage());
+            replicaFresh = false;
+        }
+        return replicaFresh;
+    }
+
+    /** Seconds behind the source, 0 for a standalone stand-in, or null if replication is stopped. */
+    private static Long getReplicationLagSeconds(Connection conn) throws SQLException {
+        if (DIALECT == SqlDialect.H2) {
+            // An embedded stand-in has no replication to lag behind
+            return 0L;
+        }
+        try (java.sql.Statement stmt = conn.createStatement()) {
+            java.sql.ResultSet rs;
+            String lagColumn;
+            try {
+                rs = stmt.executeQuery("SHOW REPLICA STATUS");
+                lagColumn = "Seconds_Behind_Source";
+            } catch (SQLException e) {
+                // Servers before 8.0.22 only know the old name
+                rs = stmt.executeQuery("SHOW SLAVE STATUS");
+                lagColumn = "Seconds_Behind_Master";
+            }
+            if (!rs.next()) {
+                return 0L;
+            }
+            long lag = rs.getLong(lagColumn);
+            return rs.wasNull() ? null : lag;
+        }
+    }
+
+    /** Per-statement timings and row counts, or null if -Dlibrary.db.metrics=false. */
+    public static QueryMetrics getQueryMetrics() {
+        return QUERY_METRICS;
+    }
+
+    public static synchronized long getStatementCacheHits() {
+        return pool == null ? 0 : pool.getStatementCacheHits();
+    }
+
+    public static synchronized long getStatementCacheMisses() {
+        return pool == null ? 0 : pool.getStatementCacheMisses();
+    }
+
+    public static synchronized void closeConnection() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        if (replicaPool != null) {
+            replicaPool.shutdown();
+            replicaPool = null;
         }
     }
 
     private static void showError(String message) {
+        // Connections are mostly borrowed on DatabaseExecutor threads, so hop to the EDT
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> showError(message));
+            return;
+        }
         JOptionPane.showMessageDialog(
             null,
             message,
@@ -83,6 +302,11 @@ public class DatabaseConnection {
 
     // Method to check if database exists and create if it doesn't
     public static void initializeDatabase() {
+        if (isEmbedded()) {
+            // The embedded database is created on first connect; getPool() adds the tables
+            getConnection();
+            return;
+        }
         try {
             // First try to connect to MySQL without specifying database
             Connection tempConn = DriverManager.getConnection(
@@ -101,6 +325,7 @@ public class DatabaseConnection {
 
             // Create necessary tables
             createTables(stmt);
+            SchemaMigrations.migrate(tempConn);
 
             tempConn.close();
         } catch (SQLException e) {
@@ -112,7 +337,7 @@ public class DatabaseConnection {
         // Users table
         stmt.executeUpdate(
             "CREATE TABLE IF NOT EXISTS users (" +
-            "user_id INT PRIMARY KEY AUTO_INCREMENT, " +
+            "user_id " + DIALECT.autoIncrementKey() + ", " +
             "username VARCHAR(50) UNIQUE NOT NULL, " +
             "password VARCHAR(255) NOT NULL, " +
             "full_name VARCHAR(100) NOT NULL, " +
@@ -128,7 +353,7 @@ public class DatabaseConnection {
         // Books table
         stmt.executeUpdate(
             "CREATE TABLE IF NOT EXISTS books (" +
-            "book_id INT PRIMARY KEY AUTO_INCREMENT, " +
+            "book_id " + DIALECT.autoIncrementKey() + ", " +
             "title VARCHAR(255) NOT NULL, " +
             "author VARCHAR(255) NOT NULL, " +
             "isbn VARCHAR(13) UNIQUE NOT NULL, " +
@@ -143,7 +368,7 @@ public class DatabaseConnection {
         // Book borrowings table
         stmt.executeUpdate(
             "CREATE TABLE IF NOT EXISTS book_borrowings (" +
-            "borrowing_id INT PRIMARY KEY AUTO_INCREMENT, " +
+            "borrowing_id " + DIALECT.autoIncrementKey() + ", " +
             "book_id INT NOT NULL, " +
             "user_id INT NOT NULL, " +
             "borrow_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
@@ -158,7 +383,7 @@ public class DatabaseConnection {
         // Notifications table
         stmt.executeUpdate(
             "CREATE TABLE IF NOT EXISTS notifications (" +
-            "notification_id INT PRIMARY KEY AUTO_INCREMENT, " +
+            "notification_id " + DIALECT.autoIncrementKey() + ", " +
             "user_id INT NOT NULL, " +
             "message TEXT NOT NULL, " +
             "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
@@ -167,6 +392,29 @@ public class DatabaseConnection {
             ")"
         );
 
+        // Fines table
+        stmt.executeUpdate(
+            "CREATE TABLE IF NOT EXISTS fines (" +
+            "fine_id " + DIALECT.autoIncrementKey() + ", " +
+            "borrow_id INT NOT NULL, " +
+            "amount DECIMAL(10, 2) NOT NULL, " +
+            "status ENUM('PENDING', 'PAID', 'WAIVED') NOT NULL DEFAULT 'PENDING', " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "paid_at TIMESTAMP NULL, " +
+            "FOREIGN KEY (borrow_id) REFERENCES book_borrowings(borrowing_id)" +
+            ")"
+        );
+
+        // Per-user settings table
+        stmt.executeUpdate(
+            "CREATE TABLE IF NOT EXISTS settings (" +
+            "user_id INT PRIMARY KEY, " +
+            "theme_mode VARCHAR(20) NOT NULL DEFAULT 'Light', " +
+            "notification_enabled BOOLEAN DEFAULT true, " +
+            "FOREIGN KEY (user_id) REFERENCES users(user_id)" +
+            ")"
+        );
+
         // Create default admin account if it doesn't exist
         stmt.executeUpdate(
             "INSERT IGNORE INTO users (username, password, full_name, email, role, is_active) " +
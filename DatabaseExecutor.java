@@ -0,0 +1,219 @@
+import javax.swing.*;
+import java.awt.Cursor;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs database work off the Swing event dispatch thread.
+ *
+ * Work is given a pooled connection on a background thread and its result is handed
+ * back to Swing on the EDT, much like SwingWorker's done(). When a component is removed
+ * from the screen (for example when a dashboard swaps in another panel), its reads
+ * (submitRead and submitLatest) are cancelled; its writes still run to completion and
+ * only their callbacks are skipped. The component shows a wait cursor while it has
+ * work in flight.
+ */
+public class DatabaseExecutor {
+
+    public interface Work<T> {
+        T run(Connection conn) throws Exception;
+    }
+
+    public interface Callback<T> {
+        void accept(T value);
+    }
+
+    private static final String PENDING_KEY = "DatabaseExecutor.pending";
+    private static final String LATEST_KEY_PREFIX = "DatabaseExecutor.latest.";
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    /**
+     * Handle for cancelling submitted work; callbacks never run after cancel(). Work
+     * that has already started is not interrupted, so a JDBC call never stops halfway.
+     */
+    public static class Task {
+        private volatile boolean cancelled;
+        // Owner left the screen during a write: the work finishes, the callbacks are skipped
+        private volatile boolean detached;
+        private volatile Future<?> future;
+
+        public void cancel() {
+            cancelled = true;
+            Future<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        void detach() {
+            detached = true;
+        }
+    }
+
+    public static <T> Task submit(JComponent owner, Work<T> work,
+                                  Callback<T> onSuccess, Callback<Exception> onError) {
+        return submit(owner, false, false, work, onSuccess, onError);
+    }
+
+    /**
+     * Like submit, but the work gets a read-only connection that may come from the
+     * replica. Only for reports and counters that can show slightly stale data.
+     */
+    public static <T> Task submitRead(JComponent owner, Work<T> work,
+                                      Callback<T> onSuccess, Callback<Exception> onError) {
+        return submit(owner, true, true, work, onSuccess, onError);
+    }
+
+    /**
+     * Like submit, but cancels the owner's previous task submitted under the same key,
+     * so only the most recent of them (e.g. the latest search) gets to update the UI.
+     * Must be called on the EDT.
+     */
+    public static <T> Task submitLatest(JComponent owner, String key, Work<T> work,
+                                        Callback<T> onSuccess, Callback<Exception> onError) {
+        return submitLatest(owner, key, false, work, onSuccess, onError);
+    }
+
+    /** submitLatest with a read-only connection that may come from the replica. */
+    public static <T> Task submitLatestRead(JComponent owner, String key, Work<T> work,
+                                            Callback<T> onSuccess, Callback<Exception> onError) {
+        return submitLatest(owner, key, true, work, onSuccess, onError);
+    }
+
+    /** Cancels the owner's latest task under this key, e.g. when a cache answered instead. Call on the EDT. */
+    public static void cancelLatest(JComponent owner, String key) {
+        Task previous = (Task) owner.getClientProperty(LATEST_KEY_PREFIX + key);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private static <T> Task submitLatest(JComponent owner, String key, boolean readOnly, Work<T> work,
+                                         Callback<T> onSuccess, Callback<Exception> onError) {
+        cancelLatest(owner, key);
+        Task task = submit(owner, readOnly, true, work, onSuccess, onError);
+        owner.putClientProperty(LATEST_KEY_PREFIX + key, task);
+        return task;
+    }
+
+    private static <T> Task submit(JComponent owner, boolean readOnly, boolean cancelWithOwner, Work<T> work,
+                                   Callback<T> onSuccess, Callback<Exception> onError) {
+        Task task = new Task();
+        HierarchyListener ownerListener = watchOwner(owner, task, cancelWithOwner);
+        setBusy(owner, true);
+
+        FutureTask<T> future = new FutureTask<T>(() -> {
+            try (Connection conn = readOnly ? DatabaseConnection.getReadConnection()
+                                            : DatabaseConnection.getConnection()) {
+                if (conn == null) {
+                    throw new SQLException(DatabaseConnection.isCircuitOpen()
+                        ? "Database is unavailable, will retry shortly"
+                        : "No database connection available");
+                }
+                return task.isCancelled() ? null : work.run(conn);
+            }
+        }) {
+            // Runs once the work finishes, fails or is cancelled, even if it never started
+            @Override
+            protected void done() {
+                SwingUtilities.invokeLater(() -> {
+                    setBusy(owner, false);
+                    if (ownerListener != null) {
+                        owner.removeHierarchyListener(ownerListener);
+                    }
+                    if (isCancelled() || task.isCancelled() || task.detached) {
+                        return;
+                    }
+                    T value;
+                    try {
+                        value = get();
+                    } catch (ExecutionException e) {
+                        Exception error = e.getCause() instanceof Exception
+                            ? (Exception) e.getCause() : new Exception(e.getCause());
+                        if (onError != null) {
+                            onError.accept(error);
+                        } else {
+                            error.printStackTrace();
+                        }
+                        return;
+                    } catch (InterruptedException e) {
+                        return; // not reached: done() means get() no longer blocks
+                    }
+                    if (onSuccess != null) {
+                        onSuccess.accept(value);
+                    }
+                });
+            }
+        };
+        task.future = future;
+        EXECUTOR.execute(future);
+        return task;
+    }
+
+    private static HierarchyListener watchOwner(JComponent owner, Task task, boolean cancelWithOwner) {
+        if (owner == null) {
+            return null;
+        }
+        // React when the owner is taken off screen, e.g. contentPanel.removeAll()
+        HierarchyListener listener = e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0 &&
+                    !owner.isDisplayable()) {
+                if (cancelWithOwner) {
+                    task.cancel();
+                } else {
+                    task.detach();
+                }
+            }
+        };
+        owner.addHierarchyListener(listener);
+        return listener;
+    }
+
+    private static void setBusy(JComponent owner, boolean busy) {
+        if (owner == null) {
+            return;
+        }
+        Runnable update = () -> {
+            AtomicInteger pending = (AtomicInteger) owner.getClientProperty(PENDING_KEY);
+            if (pending == null) {
+                pending = new AtomicInteger();
+                owner.putClientProperty(PENDING_KEY, pending);
+            }
+            int count = busy ? pending.incrementAndGet() : pending.decrementAndGet();
+            owner.setCursor(count > 0 ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : null);
+        };
+        if (SwingUtilities.isEventDispatchThread()) {
+            update.run();
+        } else {
+            SwingUtilities.invokeLater(update);
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        // Use virtual threads when the runtime has them (Java 21+), otherwise a small daemon pool
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(8, r -> {
+                Thread t = new Thread(r, "database-executor-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
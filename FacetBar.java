@@ -0,0 +1,88 @@
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Category and availability filters for a book table, labelled with live counts.
+ *
+ * The panel owning the bar asks FacetIndex for a selection and passes the result to
+ * update(), which relabels every choice with how many books it would show. Changing
+ * a choice runs the panel's refresh action.
+ */
+public class FacetBar extends JPanel {
+
+    private final JLabel categoryLabel = new JLabel("Category:");
+    private final JComboBox<String> categoryCombo = new JComboBox<>();
+    private final List<String> categoryNames = new ArrayList<>();
+    private final JCheckBox availableOnly;
+    private boolean updating = false;
+
+    /**
+     * @param onChange        run on the EDT when the user changes a filter
+     * @param showAvailability false for panels that only ever list available books
+     */
+    public FacetBar(Runnable onChange, boolean showAvailability) {
+        super(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        setOpaque(false);
+        add(categoryLabel);
+        categoryNames.add(null);
+        categoryCombo.addItem("All categories");
+        categoryCombo.addActionListener(e -> {
+            if (!updating) {
+                onChange.run();
+            }
+        });
+        add(categoryCombo);
+
+        availableOnly = new JCheckBox("Available only");
+        availableOnly.setOpaque(false);
+        availableOnly.addActionListener(e -> onChange.run());
+        if (showAvailability) {
+            add(availableOnly);
+        }
+    }
+
+    /** Colors the labels, e.g. white on a dark theme; the combo box keeps its look. */
+    public void setTextColor(Color color) {
+        categoryLabel.setForeground(color);
+        availableOnly.setForeground(color);
+    }
+
+    /** The selected category, or null for all of them. */
+    public String getCategory() {
+        int index = categoryCombo.getSelectedIndex();
+        return index > 0 ? categoryNames.get(index) : null;
+    }
+
+    public boolean isAvailableOnly() {
+        return availableOnly.isSelected();
+    }
+
+    /** Relabels the choices with the counts of a FacetIndex selection, keeping the current one. */
+    public void update(FacetIndex.Result result) {
+        String selected = getCategory();
+        updating = true;
+        try {
+            categoryCombo.removeAllItems();
+            categoryNames.clear();
+            int total = 0;
+            for (int count : result.getCategoryCounts().values()) {
+                total += count;
+            }
+            categoryNames.add(null);
+            categoryCombo.addItem("All categories (" + total + ")");
+            for (Map.Entry<String, Integer> entry : result.getCategoryCounts().entrySet()) {
+                categoryNames.add(entry.getKey());
+                categoryCombo.addItem(entry.getKey() + " (" + entry.getValue() + ")");
+                if (entry.getKey().equals(selected)) {
+                    categoryCombo.setSelectedIndex(categoryNames.size() - 1);
+                }
+            }
+            availableOnly.setText("Available only (" + result.getAvailableCount() + ")");
+        } finally {
+            updating = false;
+        }
+    }
+}
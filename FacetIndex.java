@@ -0,0 +1,221 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Category and availability facets over active books, kept as CompressedBitmaps of book IDs.
+ *
+ * There is one bitmap per category and one of the books with available_quantity > 0,
+ * so a filter such as "Physics, available, matching 'quantum'" is an intersection of
+ * bitmaps rather than a table scan, and the count shown next to every category is the
+ * size of one more intersection. Like CatalogIndex, the facets are loaded once per
+ * client, updated as this client adds, edits, issues and returns books, and reloaded
+ * in the background every library.catalog.indexRefreshMs to pick up other clients.
+ */
+public class FacetIndex {
+
+    /** Facet name for books with no category. */
+    public static final String UNCATEGORIZED = "Uncategorized";
+    /** Most text matches considered when combining a search with facets. */
+    public static final int MATCH_LIMIT = 5000;
+
+    private static final long REFRESH_MS = Long.getLong("library.catalog.indexRefreshMs", 10 * 60 * 1000);
+
+    private static FacetIndex instance;
+    private static boolean reloading = false;
+
+    /** The books passing a selection, with counts for refining it further. */
+    public static class Result {
+        private final CompressedBitmap ids;
+        private final Map<String, Integer> categoryCounts;
+        private final int availableCount;
+
+        Result(CompressedBitmap ids, Map<String, Integer> categoryCounts, int availableCount) {
+            this.ids = ids;
+            this.categoryCounts = Collections.unmodifiableMap(categoryCounts);
+            this.availableCount = availableCount;
+        }
+
+        /** IDs of the selected books; a snapshot that later updates do not change. */
+        public CompressedBitmap getIds() { return ids; }
+        public int size() { return ids.cardinality(); }
+        /** Books each category would show given the other filters, by category name. */
+        public Map<String, Integer> getCategoryCounts() { return categoryCounts; }
+        /** Books the "available only" filter would show given the other filters. */
+        public int getAvailableCount() { return availableCount; }
+
+        /** The ranked IDs that are in this result, in their ranked order, at most limit. */
+        public int[] keep(int[] rankedIds, int limit) {
+            int[] kept = new int[Math.min(limit, rankedIds.length)];
+            int n = 0;
+            for (int i = 0; i < rankedIds.length && n < kept.length; i++) {
+                if (ids.contains(rankedIds[i])) {
+                    kept[n++] = rankedIds[i];
+                }
+            }
+            return Arrays.copyOf(kept, n);
+        }
+    }
+
+    private final CompressedBitmap active = new CompressedBitmap();
+    private final CompressedBitmap available = new CompressedBitmap();
+    private final Map<String, CompressedBitmap> categories = new TreeMap<>();
+    private final Map<Integer, String> bookCategories = new HashMap<>();
+    private final Map<Integer, Integer> availableQuantities = new HashMap<>();
+    private final long loadedAt = System.currentTimeMillis();
+
+    /**
+     * Returns the shared facets, loading them with the given connection on first use.
+     * Call from a DatabaseExecutor worker, never the EDT.
+     */
+    public static FacetIndex getInstance(Connection conn) throws SQLException {
+        FacetIndex current;
+        synchronized (FacetIndex.class) {
+            current = instance;
+        }
+        if (current == null) {
+            current = load(conn);
+            synchronized (FacetIndex.class) {
+                if (instance == null) {
+                    instance = current;
+                }
+                current = instance;
+            }
+        }
+        current.reloadIfStale();
+        return current;
+    }
+
+    /** The shared facets if they have been loaded, otherwise null; used for incremental updates. */
+    public static synchronized FacetIndex getLoadedInstance() {
+        return instance;
+    }
+
+    /**
+     * Records a committed change to a book's available_quantity, e.g. -1 after an issue
+     * and +1 after a return. Does nothing if the facets are not loaded.
+     */
+    public static void availabilityChanged(int bookId, int delta) {
+        FacetIndex facets = getLoadedInstance();
+        if (facets != null) {
+            facets.adjustAvailable(bookId, delta);
+        }
+    }
+
+    private static FacetIndex load(Connection conn) throws SQLException {
+        FacetIndex facets = new FacetIndex();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                 "SELECT book_id, category, available_quantity FROM books WHERE is_active = true");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                facets.put(rs.getInt("book_id"), rs.getString("category"), rs.getInt("available_quantity"));
+            }
+        }
+        return facets;
+    }
+
+    private void reloadIfStale() {
+        synchronized (FacetIndex.class) {
+            if (reloading || System.currentTimeMillis() - loadedAt < REFRESH_MS) {
+                return;
+            }
+            reloading = true;
+        }
+        DatabaseExecutor.submitRead(null, FacetIndex::load, fresh -> {
+            synchronized (FacetIndex.class) {
+                instance = fresh;
+                reloading = false;
+            }
+        }, ex -> {
+            ex.printStackTrace();
+            synchronized (FacetIndex.class) {
+                reloading = false;
+            }
+        });
+    }
+
+    /** Adds a book or updates its category and available quantity. */
+    public synchronized void put(int bookId, String category, int availableQuantity) {
+        remove(bookId);
+        String facet = facetName(category);
+        active.add(bookId);
+        categories.computeIfAbsent(facet, c -> new CompressedBitmap()).add(bookId);
+        bookCategories.put(bookId, facet);
+        availableQuantities.put(bookId, availableQuantity);
+        if (availableQuantity > 0) {
+            available.add(bookId);
+        }
+    }
+
+    public synchronized void remove(int bookId) {
+        String facet = bookCategories.remove(bookId);
+        if (facet == null) {
+            return;
+        }
+        CompressedBitmap members = categories.get(facet);
+        members.remove(bookId);
+        if (members.isEmpty()) {
+            categories.remove(facet);
+        }
+        active.remove(bookId);
+        available.remove(bookId);
+        availableQuantities.remove(bookId);
+    }
+
+    public synchronized void adjustAvailable(int bookId, int delta) {
+        Integer quantity = availableQuantities.get(bookId);
+        if (quantity == null) {
+            return;
+        }
+        int updated = Math.max(0, quantity + delta);
+        availableQuantities.put(bookId, updated);
+        if (updated > 0) {
+            available.add(bookId);
+        } else {
+            available.remove(bookId);
+        }
+    }
+
+    /**
+     * Intersects the facets for a selection. Counts follow the usual facet rule: each
+     * category's count applies every filter except the category itself, and the
+     * available count every filter except availability.
+     *
+     * @param matches       IDs matching a text search, or null for no text filter
+     * @param category      the category to keep, or null for all
+     * @param availableOnly keep only books with a copy on the shelf
+     */
+    public synchronized Result select(CompressedBitmap matches, String category, boolean availableOnly) {
+        CompressedBitmap base = matches == null ? active : active.and(matches);
+        CompressedBitmap inCategory = base;
+        if (category != null) {
+            CompressedBitmap members = categories.get(category);
+            inCategory = members == null ? new CompressedBitmap() : base.and(members);
+        }
+        int availableCount = inCategory.andCardinality(available);
+
+        CompressedBitmap counted = availableOnly ? base.and(available) : base;
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, CompressedBitmap> entry : categories.entrySet()) {
+            int count = counted.andCardinality(entry.getValue());
+            if (count > 0 || entry.getKey().equals(category)) {
+                counts.put(entry.getKey(), count);
+            }
+        }
+
+        CompressedBitmap ids = availableOnly ? inCategory.and(available) : inCategory;
+        // The live bitmaps must not escape; the intersections above are already copies
+        return new Result(ids == active ? active.copy() : ids, counts, availableCount);
+    }
+
+    private static String facetName(String category) {
+        return category == null || category.trim().isEmpty() ? UNCATEGORIZED : category.trim();
+    }
+}
@@ -2,6 +2,8 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class FineManagementPanel extends JPanel {
     private JTable fineTable;
@@ -82,11 +84,9 @@ public class FineManagementPanel extends JPanel {
             return;
         }
 
-        tableModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             String query = "SELECT f.fine_id, u.full_name, b.title, bb.due_date, " +
-                          "DATEDIFF(IFNULL(bb.return_date, CURRENT_DATE), bb.due_date) as days_late, " +
+                          DatabaseConnection.getDialect().daysBetween("IFNULL(bb.return_date, CURRENT_DATE)", "bb.due_date") + " as days_late, " +
                           "f.amount, f.status " +
                           "FROM fines f " +
                           "JOIN book_borrowings bb ON f.borrow_id = bb.borrow_id " +
@@ -96,40 +96,17 @@ public class FineManagementPanel extends JPanel {
             PreparedStatement pstmt = conn.prepareStatement(query);
             pstmt.setString(1, studentId);
             
-            ResultSet rs = pstmt.executeQuery();
-            double totalFines = 0;
-            
-            while (rs.next()) {
-                Object[] row = {
-                    rs.getInt("fine_id"),
-                    rs.getString("full_name"),
-                    rs.getString("title"),
-                    rs.getDate("due_date"),
-                    rs.getInt("days_late"),
-                    String.format("$%.2f", rs.getDouble("amount")),
-                    rs.getString("status")
-                };
-                tableModel.addRow(row);
-                
-                if ("PENDING".equals(rs.getString("status"))) {
-                    totalFines += rs.getDouble("amount");
-                }
-            }
-            
-            updateTotalFines(totalFines);
-            
-        } catch (SQLException e) {
+            return readFineRows(pstmt.executeQuery());
+        }, this::showFines, e -> {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error searching fines: " + e.getMessage());
-        }
+        });
     }
 
     private void loadAllFines() {
-        tableModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             String query = "SELECT f.fine_id, u.full_name, b.title, bb.due_date, " +
-                          "DATEDIFF(IFNULL(bb.return_date, CURRENT_DATE), bb.due_date) as days_late, " +
+                          DatabaseConnection.getDialect().daysBetween("IFNULL(bb.return_date, CURRENT_DATE)", "bb.due_date") + " as days_late, " +
                           "f.amount, f.status " +
                           "FROM fines f " +
                           "JOIN book_borrowings bb ON f.borrow_id = bb.borrow_id " +
@@ -137,32 +114,45 @@ public class FineManagementPanel extends JPanel {
                           "JOIN books b ON bb.book_id = b.book_id " +
                           "ORDER BY f.created_at DESC";
             Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(query);
-            
-            double totalFines = 0;
-            while (rs.next()) {
-                Object[] row = {
-                    rs.getInt("fine_id"),
-                    rs.getString("full_name"),
-                    rs.getString("title"),
-                    rs.getDate("due_date"),
-                    rs.getInt("days_late"),
-                    String.format("$%.2f", rs.getDouble("amount")),
-                    rs.getString("status")
-                };
-                tableModel.addRow(row);
-                
-                if ("PENDING".equals(rs.getString("status"))) {
-                    totalFines += rs.getDouble("amount");
-                }
-            }
-            
-            updateTotalFines(totalFines);
-            
-        } catch (SQLException e) {
+            return readFineRows(stmt.executeQuery(query));
+        }, this::showFines, e -> {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error loading fines: " + e.getMessage());
+        });
+    }
+
+    private static class FineRows {
+        final List<Object[]> rows = new ArrayList<>();
+        double totalFines = 0;
+    }
+
+    private FineRows readFineRows(ResultSet rs) throws SQLException {
+        FineRows result = new FineRows();
+        while (rs.next()) {
+            result.rows.add(new Object[]{
+                rs.getInt("fine_id"),
+                rs.getString("full_name"),
+                rs.getString("title"),
+                rs.getDate("due_date"),
+                rs.getInt("days_late"),
+                String.format("$%.2f", rs.getDouble("amount")),
+                rs.getString("status")
+            });
+            
+            if ("PENDING".equals(rs.getString("status"))) {
+                result.totalFines += rs.getDouble("amount");
+            }
+        }
+        return result;
+    }
+
+    private void showFines(FineRows result) {
+        tableModel.setRowCount(0);
+        for (Object[] row : result.rows) {
+            tableModel.addRow(row);
         }
+        
+        updateTotalFines(result.totalFines);
     }
 
     private void recordPayment() {
@@ -177,21 +167,21 @@ public class FineManagementPanel extends JPanel {
             return;
         }
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        int fineId = (Integer) tableModel.getValueAt(selectedRow, 0);
+        DatabaseExecutor.submit(this, conn -> {
             String query = "UPDATE fines SET status = 'PAID', paid_at = CURRENT_TIMESTAMP " +
                           "WHERE fine_id = ?";
             PreparedStatement pstmt = conn.prepareStatement(query);
-            pstmt.setInt(1, (Integer) tableModel.getValueAt(selectedRow, 0));
+            pstmt.setInt(1, fineId);
             
-            pstmt.executeUpdate();
+            return pstmt.executeUpdate();
+        }, result -> {
             JOptionPane.showMessageDialog(this, "Payment recorded successfully!");
             searchFines();
-            
-        } catch (SQLException e) {
+        }, e -> {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error recording payment: " + e.getMessage());
-        }
+        });
     }
 
     private void waiveFine() {
@@ -212,21 +202,21 @@ public class FineManagementPanel extends JPanel {
             JOptionPane.YES_NO_OPTION);
             
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                Connection conn = DatabaseConnection.getConnection();
+            int fineId = (Integer) tableModel.getValueAt(selectedRow, 0);
+            DatabaseExecutor.submit(this, conn -> {
                 String query = "UPDATE fines SET status = 'WAIVED', paid_at = CURRENT_TIMESTAMP " +
                               "WHERE fine_id = ?";
                 PreparedStatement pstmt = conn.prepareStatement(query);
-                pstmt.setInt(1, (Integer) tableModel.getValueAt(selectedRow, 0));
+                pstmt.setInt(1, fineId);
                 
-                pstmt.executeUpdate();
+                return pstmt.executeUpdate();
+            }, result -> {
                 JOptionPane.showMessageDialog(this, "Fine waived successfully!");
                 searchFines();
-                
-            } catch (SQLException e) {
+            }, e -> {
                 e.printStackTrace();
                 JOptionPane.showMessageDialog(this, "Error waiving fine: " + e.getMessage());
-            }
+            });
         }
     }
 
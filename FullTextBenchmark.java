@@ -0,0 +1,175 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+/**
+ * Compares the old LIKE book search against FULLTEXT MATCH ... AGAINST on a generated catalog.
+ *
+ * Run against the MySQL server: java FullTextBenchmark [rows]. It fills a scratch
+ * bench_books table (1,000,000 rows by default), builds the FULLTEXT index, and prints
+ * p50/p99 latency and match counts per query for each search. The LIKE query is the
+ * one the panels used before, which returns every match; the FULLTEXT searches return
+ * the first page of CatalogIndex.SEARCH_LIMIT by relevance, as FullTextSearch does.
+ * The table is dropped afterwards unless -Dlibrary.bench.keep=true is set.
+ */
+public class FullTextBenchmark {
+
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = Integer.getInteger("library.bench.runs", 20);
+
+    private static final String[] ADJECTIVES = {
+        "Advanced", "Modern", "Practical", "Applied", "Introductory", "Complete", "Essential",
+        "Hidden", "Lost", "Silent", "Quantum", "Ancient", "Effective", "Concise", "Elementary"
+    };
+    private static final String[] SUBJECTS = {
+        "Python", "Java", "Data Structures", "Algorithms", "Databases", "Networks", "Calculus",
+        "Linear Algebra", "Organic Chemistry", "Thermodynamics", "Economics", "Philosophy",
+        "World History", "Poetry", "Machine Learning", "Operating Systems", "Statistics",
+        "Microbiology", "Architecture", "Astronomy"
+    };
+    private static final String[] SUFFIXES = {
+        "", " for Beginners", " in Practice", ": A Primer", " Handbook", " Explained",
+        ", Second Edition", " and Beyond", " Workbook", " Fundamentals"
+    };
+    private static final String[] FIRST_NAMES = {
+        "Ada", "Alan", "Grace", "Donald", "Barbara", "Edsger", "Niklaus", "Frances", "Ken",
+        "Margaret", "Dennis", "Radia", "John", "Shafi", "Leslie", "Tim", "Sophie", "Rahul"
+    };
+    private static final String[] LAST_NAMES = {
+        "Lovelace", "Turing", "Hopper", "Knuth", "Liskov", "Dijkstra", "Wirth", "Allen",
+        "Thompson", "Hamilton", "Ritchie", "Perlman", "McCarthy", "Goldwasser", "Lamport",
+        "Berners-Lee", "Wilson", "Sharma", "Tolkien", "Austen"
+    };
+    private static final String[] CATEGORIES = {
+        "Computer Science", "Mathematics", "Physics", "Chemistry", "Biology", "History",
+        "Literature", "Economics", "Philosophy", "Engineering"
+    };
+    // Common, mid-frequency and rare terms, plus multi-word queries
+    private static final String[] QUERIES = {
+        "python", "data structures", "tolkien", "organic chemistry", "knuth algorithms",
+        "quantum thermodynamics handbook", "berners-lee"
+    };
+
+    public static void main(String[] args) throws SQLException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        if (DatabaseConnection.getDialect() != SqlDialect.MYSQL) {
+            System.err.println("FULLTEXT search needs the MySQL server; unset library.db.mode");
+            System.exit(2);
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                System.exit(2);
+            }
+            try {
+                createTable(conn, rows);
+                runQueries(conn);
+            } finally {
+                if (!Boolean.getBoolean("library.bench.keep")) {
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.executeUpdate("DROP TABLE IF EXISTS bench_books");
+                    }
+                }
+            }
+        } finally {
+            DatabaseConnection.closeConnection();
+        }
+    }
+
+    private static void createTable(Connection conn, int rows) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DROP TABLE IF EXISTS bench_books");
+            stmt.executeUpdate(
+                "CREATE TABLE bench_books (" +
+                "book_id INT PRIMARY KEY AUTO_INCREMENT, " +
+                "title VARCHAR(255) NOT NULL, " +
+                "author VARCHAR(255) NOT NULL, " +
+                "isbn VARCHAR(13) UNIQUE NOT NULL, " +
+                "category VARCHAR(50), " +
+                "quantity INT NOT NULL DEFAULT 1, " +
+                "available_quantity INT NOT NULL DEFAULT 1, " +
+                "shelf_location VARCHAR(50), " +
+                "is_active BOOLEAN DEFAULT true" +
+                ")"
+            );
+        }
+
+        long start = System.nanoTime();
+        Random random = new Random(42);
+        try (BatchWriter writer = new BatchWriter(conn,
+                "INSERT INTO bench_books (title, author, isbn, category) VALUES (?, ?, ?, ?)")) {
+            for (int i = 0; i < rows; i++) {
+                String title = pick(random, ADJECTIVES) + " " + pick(random, SUBJECTS) + pick(random, SUFFIXES);
+                String author = pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES);
+                writer.add(title, author, String.format("978%010d", i), pick(random, CATEGORIES));
+            }
+            BatchWriter.Result result = writer.finish();
+            System.out.printf("Inserted %,d rows in %.1f s%n",
+                result.getSucceeded(), (System.nanoTime() - start) / 1e9);
+        }
+
+        // Building the index after the load is much faster than maintaining it per row
+        start = System.nanoTime();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE FULLTEXT INDEX ft_bench_books ON bench_books (title, author, category)");
+            stmt.executeUpdate("ANALYZE TABLE bench_books");
+        }
+        System.out.printf("Built FULLTEXT index in %.1f s%n%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    private static void runQueries(Connection conn) throws SQLException {
+        String like =
+            "SELECT book_id FROM bench_books " +
+            "WHERE (title LIKE ? OR author LIKE ? OR category LIKE ?) AND is_active = true";
+        String natural = matchQuery(FullTextSearch.Mode.NATURAL_LANGUAGE);
+        String bool = matchQuery(FullTextSearch.Mode.BOOLEAN);
+
+        System.out.printf("%-32s %-10s %9s %9s %9s%n", "query", "search", "matches", "p50 ms", "p99 ms");
+        for (String query : QUERIES) {
+            String pattern = "%" + query + "%";
+            measure(conn, query, "LIKE", like, pattern, pattern, pattern);
+            measure(conn, query, "natural", natural, query, query, CatalogIndex.SEARCH_LIMIT);
+            String booleanQuery = FullTextSearch.toBooleanQuery(query);
+            measure(conn, query, "boolean", bool, booleanQuery, booleanQuery, CatalogIndex.SEARCH_LIMIT);
+        }
+    }
+
+    private static String matchQuery(FullTextSearch.Mode mode) {
+        String match = "MATCH(title, author, category) AGAINST (? " +
+            (mode == FullTextSearch.Mode.BOOLEAN ? "IN BOOLEAN MODE" : "IN NATURAL LANGUAGE MODE") + ")";
+        return "SELECT book_id FROM bench_books WHERE " + match + " AND is_active = true " +
+               "ORDER BY " + match + " DESC, book_id LIMIT ?";
+    }
+
+    private static void measure(Connection conn, String query, String label, String sql,
+                                Object... params) throws SQLException {
+        LatencyHistogram latency = new LatencyHistogram();
+        int matches = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+                long start = System.nanoTime();
+                matches = 0;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        matches++;
+                    }
+                }
+                if (run >= WARMUP_RUNS) {
+                    latency.record((System.nanoTime() - start) / 1000);
+                }
+            }
+        }
+        System.out.printf("%-32s %-10s %9d %9.1f %9.1f%n", query, label, matches,
+            latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0);
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,102 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Server-side book search through the MySQL FULLTEXT index on books(title, author, category).
+ *
+ * Selected with library.search.mode: "natural" runs MATCH ... AGAINST in natural language
+ * mode, "boolean" requires every word and treats each as a prefix ("dat struct" finds
+ * "Data Structures"). Any other value, and the embedded H2 database, keep searching
+ * through CatalogIndex. Results are book IDs ordered by relevance, a page at a time.
+ */
+public class FullTextSearch {
+
+    public enum Mode {
+        NATURAL_LANGUAGE("IN NATURAL LANGUAGE MODE"),
+        BOOLEAN("IN BOOLEAN MODE");
+
+        private final String modifier;
+
+        Mode(String modifier) {
+            this.modifier = modifier;
+        }
+    }
+
+    public static final Mode MODE = parseMode(System.getProperty("library.search.mode", "index"));
+
+    // InnoDB's default innodb_ft_min_token_size; shorter words are not in the index
+    private static final int MIN_TOKEN_LENGTH = Integer.getInteger("library.search.ftMinTokenSize", 3);
+    private static final String MATCH = "MATCH(title, author, category) AGAINST (? ";
+
+    /** True when searches should go to the FULLTEXT index instead of CatalogIndex. */
+    public static boolean isEnabled() {
+        return MODE != null && DatabaseConnection.getDialect() == SqlDialect.MYSQL;
+    }
+
+    /** One page of active books matching text in the configured mode, most relevant first. */
+    public static int[] search(Connection conn, String text, int offset, int limit) throws SQLException {
+        return search(conn, text, MODE == null ? Mode.NATURAL_LANGUAGE : MODE, offset, limit);
+    }
+
+    public static int[] search(Connection conn, String text, Mode mode, int offset, int limit) throws SQLException {
+        String against = mode == Mode.BOOLEAN ? toBooleanQuery(text) : text.trim();
+        if (against.isEmpty()) {
+            return new int[0];
+        }
+
+        // MySQL evaluates the repeated MATCH once per row and reuses it for the ORDER BY
+        PreparedStatement stmt = conn.prepareStatement(
+            "SELECT book_id FROM books " +
+            "WHERE " + MATCH + mode.modifier + ") AND is_active = true " +
+            "ORDER BY " + MATCH + mode.modifier + ") DESC, book_id " +
+            "LIMIT ? OFFSET ?"
+        );
+        stmt.setString(1, against);
+        stmt.setString(2, against);
+        stmt.setInt(3, limit);
+        stmt.setInt(4, offset);
+
+        int[] ids = new int[limit];
+        int count = 0;
+        ResultSet rs = stmt.executeQuery();
+        while (rs.next() && count < limit) {
+            ids[count++] = rs.getInt(1);
+        }
+        rs.close();
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * "+word*" for each word of text, so all words must match as prefixes. Boolean
+     * operators typed by the user are stripped, and words shorter than the index's
+     * minimum token size are dropped since InnoDB would never match them.
+     */
+    static String toBooleanQuery(String text) {
+        StringBuilder query = new StringBuilder();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}_]+")) {
+            if (word.length() < MIN_TOKEN_LENGTH) {
+                continue;
+            }
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append('+').append(word).append('*');
+        }
+        return query.toString();
+    }
+
+    private static Mode parseMode(String value) {
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "natural":
+                return Mode.NATURAL_LANGUAGE;
+            case "boolean":
+                return Mode.BOOLEAN;
+            default:
+                return null;
+        }
+    }
+}
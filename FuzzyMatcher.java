@@ -0,0 +1,243 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds vocabulary words within a small edit distance of a misspelled word.
+ *
+ * Words are indexed by their trigrams, padded so the first and last letters count
+ * too, and only words sharing enough of the query's trigrams are checked with a
+ * bounded edit distance. An edit changes at most three trigrams and an adjacent swap
+ * ("tolkein") four, so the filter never drops a word k edits away unless two of those
+ * edits are swaps. Trigram postings are kept per word length, so a lookup only reads
+ * words whose length is within reach.
+ *
+ * A swap counts as one edit. Words under four letters are not corrected, four to
+ * seven may be one edit off and longer words two.
+ */
+public class FuzzyMatcher {
+
+    private static final int MIN_WORD_LENGTH = 4;
+    private static final int LONG_WORD_LENGTH = 8;
+
+    // IDs of the words of one length containing a trigram, unordered
+    private static class Grams {
+        int[] ids = new int[4];
+        int size = 0;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    private final Map<String, Integer> wordIds = new HashMap<>();
+    private final Map<String, Grams> grams = new HashMap<>();
+    private String[] words = new String[1024];
+    private int[] freeIds = new int[16];
+    private int freeCount = 0;
+    private int wordCount = 0;
+
+    // Per-lookup scratch, indexed by word ID; shared[] is valid where seen[] == lookupId
+    private int[] shared = new int[0];
+    private int[] seen = new int[0];
+    private int lookupId = 0;
+
+    /** Adds a lower-case word; words without letters (ISBNs, years) are ignored. */
+    public synchronized void add(String word) {
+        if (wordIds.containsKey(word) || !hasLetter(word)) {
+            return;
+        }
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            if (wordCount == words.length) {
+                words = Arrays.copyOf(words, wordCount * 2);
+            }
+            id = wordCount++;
+        }
+        words[id] = word;
+        wordIds.put(word, id);
+        for (String gram : trigrams(word)) {
+            grams.computeIfAbsent(key(gram, word.length()), g -> new Grams()).add(id);
+        }
+    }
+
+    public synchronized void remove(String word) {
+        Integer id = wordIds.remove(word);
+        if (id == null) {
+            return;
+        }
+        for (String gram : trigrams(word)) {
+            String key = key(gram, word.length());
+            Grams g = grams.get(key);
+            g.remove(id);
+            if (g.size == 0) {
+                grams.remove(key);
+            }
+        }
+        words[id] = null;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    /** Up to limit words within the allowed edit distance of word, closest first. */
+    public synchronized List<String> matches(String word, int limit) {
+        int maxEdits = maxEdits(word.length());
+        List<String> result = new ArrayList<>();
+        if (maxEdits == 0) {
+            return result;
+        }
+        if (seen.length < wordCount) {
+            seen = new int[words.length];
+            shared = new int[words.length];
+            lookupId = 0;
+        }
+        lookupId++;
+
+        // Count shared trigrams for words of each possible length
+        List<String> queryGrams = trigrams(word);
+        int[] candidates = new int[64];
+        int candidateCount = 0;
+        for (int length = word.length() - maxEdits; length <= word.length() + maxEdits; length++) {
+            for (String gram : queryGrams) {
+                Grams g = grams.get(key(gram, length));
+                if (g == null) {
+                    continue;
+                }
+                for (int i = 0; i < g.size; i++) {
+                    int id = g.ids[i];
+                    if (seen[id] != lookupId) {
+                        seen[id] = lookupId;
+                        shared[id] = 0;
+                        if (candidateCount == candidates.length) {
+                            candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                        }
+                        candidates[candidateCount++] = id;
+                    }
+                    shared[id]++;
+                }
+            }
+        }
+
+        // Three trigrams per edit, plus one in case an edit is a swap
+        int minShared = Math.max(1, queryGrams.size() - 3 * maxEdits - 1);
+        List<long[]> found = new ArrayList<>();
+        for (int c = 0; c < candidateCount; c++) {
+            int id = candidates[c];
+            if (shared[id] < minShared) {
+                continue;
+            }
+            int distance = distance(word, words[id], maxEdits);
+            if (distance <= maxEdits) {
+                // Closest first, then the word sharing the most trigrams
+                found.add(new long[]{distance, -shared[id], id});
+            }
+        }
+        found.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        for (int i = 0; i < found.size() && i < limit; i++) {
+            result.add(words[(int) found.get(i)[2]]);
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return wordIds.size();
+    }
+
+    static int maxEdits(int length) {
+        if (length < MIN_WORD_LENGTH) {
+            return 0;
+        }
+        return length < LONG_WORD_LENGTH ? 1 : 2;
+    }
+
+    /**
+     * Edit distance counting an adjacent swap as one edit (optimal string alignment),
+     * or max + 1 as soon as it is known to exceed max.
+     */
+    static int distance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) {
+            return max + 1;
+        }
+        // Only cells within max of the diagonal can stay within max; the rest count as max + 1
+        int over = max + 1;
+        int[] previous2 = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = Math.min(j, over);
+        }
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(m, i + max);
+            current[from - 1] = from == 1 ? Math.min(i, over) : over;
+            if (to < m) {
+                current[to + 1] = over;
+            }
+            int rowMin = current[from - 1];
+            char ca = a.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                char cb = b.charAt(j - 1);
+                int cost = ca == cb ? 0 : 1;
+                int d = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+                    d = Math.min(d, previous2[j - 2] + 1);
+                }
+                current[j] = Math.min(d, over);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return over;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[m];
+    }
+
+    private static List<String> trigrams(String word) {
+        String padded = "  " + word + " ";
+        List<String> result = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            String gram = padded.substring(i, i + 3);
+            if (!result.contains(gram)) {
+                result.add(gram);
+            }
+        }
+        return result;
+    }
+
+    private static String key(String gram, int length) {
+        return gram + (char) length;
+    }
+
+    private static boolean hasLetter(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.isLetter(word.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures typo-tolerant CatalogIndex searches on a generated catalog, without a database.
+ *
+ * Run as java -Xmx4g FuzzySearchBenchmark [books]. It indexes 1,000,000 generated
+ * books by default, with made-up words so the vocabulary is as varied as a real
+ * catalog's. Then it times searches for real title and author words with one typo
+ * each: the exact search that finds nothing plus the fuzzy retry. It prints p50, p99
+ * and max latency and how often the misspelled book was among the results, and exits
+ * 1 if p99 is over library.bench.fuzzyP99Ms (20).
+ */
+public class FuzzySearchBenchmark {
+
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ne", "ru", "sa", "ti", "vo", "ber", "cor", "dan", "fel", "gra", "hol",
+        "jen", "kin", "lar", "mor", "nis", "pet", "quin", "ros", "ste", "tor", "ul", "ven", "wick",
+        "yar", "zel", "an", "el", "is", "on", "ur", "th", "ch", "sh", "ph", "ley", "son"
+    };
+    private static final int VOCABULARY_SIZE = 60_000;
+    private static final int SURNAMES = 40_000;
+    private static final int FIRST_NAMES = 3_000;
+    private static final int QUERIES = Integer.getInteger("library.bench.queries", 2_000);
+    private static final long P99_LIMIT_MS = Long.getLong("library.bench.fuzzyP99Ms", 20);
+
+    public static void main(String[] args) {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        String[] vocabulary = words(random, VOCABULARY_SIZE);
+        String[] surnames = words(random, SURNAMES);
+        String[] firstNames = words(random, FIRST_NAMES);
+
+        long start = System.nanoTime();
+        CatalogIndex index = new CatalogIndex();
+        String[] titles = new String[books];
+        String[] authors = new String[books];
+        for (int id = 0; id < books; id++) {
+            StringBuilder title = new StringBuilder();
+            int length = 2 + random.nextInt(4);
+            for (int w = 0; w < length; w++) {
+                title.append(w > 0 ? " " : "").append(capitalize(zipf(random, vocabulary)));
+            }
+            titles[id] = title.toString();
+            authors[id] = capitalize(zipf(random, firstNames)) + " " + capitalize(zipf(random, surnames));
+            index.put(id + 1, titles[id], authors[id], "General", String.format("978%010d", id));
+        }
+        System.out.printf("Indexed %,d books in %.1f s%n", books, (System.nanoTime() - start) / 1e9);
+
+        List<String> queries = new ArrayList<>();
+        List<Integer> expected = new ArrayList<>();
+        while (queries.size() < QUERIES) {
+            int id = random.nextInt(books);
+            String[] titleWords = titles[id].toLowerCase().split(" ");
+            String[] authorWords = authors[id].toLowerCase().split(" ");
+            String word = random.nextBoolean() ? authorWords[1] : titleWords[random.nextInt(titleWords.length)];
+            if (FuzzyMatcher.maxEdits(word.length()) == 0) {
+                continue;
+            }
+            // One misspelled word, half the time with another word from the same book
+            String typo = misspell(random, word);
+            queries.add(random.nextBoolean() ? typo : typo + " " + titleWords[0]);
+            expected.add(id + 1);
+        }
+
+        for (int i = 0; i < Math.min(200, queries.size()); i++) {
+            index.search(queries.get(i), CatalogIndex.SEARCH_LIMIT);
+        }
+        LatencyHistogram latency = new LatencyHistogram();
+        long maxMicros = 0;
+        int found = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            long t0 = System.nanoTime();
+            int[] ids = index.search(queries.get(i), CatalogIndex.SEARCH_LIMIT);
+            long micros = (System.nanoTime() - t0) / 1000;
+            latency.record(micros);
+            maxMicros = Math.max(maxMicros, micros);
+            for (int id : ids) {
+                if (id == expected.get(i)) {
+                    found++;
+                    break;
+                }
+            }
+        }
+
+        double p99 = latency.getValueAtPercentile(99) / 1000.0;
+        System.out.printf("%,d misspelled searches: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+            queries.size(), latency.getValueAtPercentile(50) / 1000.0, p99, maxMicros / 1000.0);
+        System.out.printf("Intended book in the top %d: %.1f%%%n",
+            CatalogIndex.SEARCH_LIMIT, 100.0 * found / queries.size());
+        System.exit(p99 <= P99_LIMIT_MS ? 0 : 1);
+    }
+
+    private static String[] words(Random random, int count) {
+        java.util.Set<String> words = new java.util.LinkedHashSet<>();
+        while (words.size() < count) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words.add(word.toString());
+        }
+        return words.toArray(new String[0]);
+    }
+
+    // Skewed pick: a few words are very common, most are rare, as in real titles
+    private static String zipf(Random random, String[] words) {
+        double u = random.nextDouble();
+        return words[(int) (Math.pow(u, 3) * words.length)];
+    }
+
+    private static String misspell(Random random, String word) {
+        int i = random.nextInt(word.length() - 1);
+        char c = (char) ('a' + random.nextInt(26));
+        switch (random.nextInt(4)) {
+            case 0:
+                return word.substring(0, i) + c + word.substring(i + 1);
+            case 1:
+                return word.substring(0, i) + word.substring(i + 1);
+            case 2:
+                return word.substring(0, i) + c + word.substring(i);
+            default:
+                return word.substring(0, i) + word.charAt(i + 1) + word.charAt(i) + word.substring(i + 2);
+        }
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
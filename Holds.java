@@ -0,0 +1,408 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds on books that have no copy on the shelf: a first-come, first-served queue per
+ * title in the book_holds table.
+ *
+ * A hold waits until a copy of its title is checked in. The copy then goes to the
+ * oldest waiting hold instead of back on the shelf; the hold becomes READY and the
+ * student has library.holds.pickupDays (3) days to pick it up. A hold not picked up in
+ * time expires and its copy goes to the next hold, or back on the shelf if none is
+ * waiting. Expiry is swept every library.holds.sweepMs (60 s) by every running client.
+ *
+ * The next hold is chosen with SELECT ... FOR UPDATE SKIP LOCKED, so check-ins of the
+ * same title at several desks, and sweeps by several clients, each take a different
+ * hold instead of waiting on each other.
+ */
+public final class Holds {
+
+    public static final int PICKUP_DAYS = Integer.getInteger("library.holds.pickupDays", 3);
+    private static final long SWEEP_MS = Long.getLong("library.holds.sweepMs", 60 * 1000);
+    // Expired holds handled per sweep transaction
+    private static final int SWEEP_BATCH = 100;
+    // Notification texts, as SQL over the hold h and its book b
+    private static final String READY_MESSAGE =
+        "CONCAT('Your hold on ''', b.title, ''' is ready. Please pick it up by ', CAST(h.expires_at AS DATE), '.')";
+    private static final String EXPIRED_MESSAGE =
+        "CONCAT('Your hold on ''', b.title, ''' has expired.')";
+
+    public enum PlaceResult {
+        PLACED("Hold placed"),
+        ALREADY_HELD("You already have a hold on this book"),
+        ALREADY_BORROWED("You already have this book borrowed"),
+        AVAILABLE("A copy is on the shelf; borrow it instead"),
+        NOT_FOUND("Book not found");
+
+        private final String message;
+
+        PlaceResult(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() { return message; }
+    }
+
+    /** One of a student's open holds. */
+    public static class Hold {
+        private final int holdId;
+        private final int bookId;
+        private final String title;
+        private final String status;
+        private final Timestamp placedAt;
+        private final Timestamp expiresAt;
+        private final int position;
+
+        Hold(int holdId, int bookId, String title, String status, Timestamp placedAt,
+             Timestamp expiresAt, int position) {
+            this.holdId = holdId;
+            this.bookId = bookId;
+            this.title = title;
+            this.status = status;
+            this.placedAt = placedAt;
+            this.expiresAt = expiresAt;
+            this.position = position;
+        }
+
+        public int getHoldId() { return holdId; }
+        public int getBookId() { return bookId; }
+        public String getTitle() { return title; }
+        /** WAITING or READY. */
+        public String getStatus() { return status; }
+        public Timestamp getPlacedAt() { return placedAt; }
+        /** Pickup deadline of a READY hold, null while waiting. */
+        public Timestamp getExpiresAt() { return expiresAt; }
+        /** Place in the title's queue, 1 for the next copy; only meaningful while WAITING. */
+        public int getPosition() { return position; }
+        public boolean isReady() { return "READY".equals(status); }
+    }
+
+    private static ScheduledExecutorService sweeper;
+
+    private Holds() {
+    }
+
+    /** Puts the student at the back of the book's queue. Needs auto-commit mode. */
+    public static PlaceResult place(Connection conn, int userId, int bookId) throws SQLException {
+        startSweeper();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT b.available_quantity, " +
+                "(SELECT COUNT(*) FROM book_holds WHERE user_id = ? AND book_id = b.book_id " +
+                " AND status IN ('WAITING', 'READY')) AS held, " +
+                "(SELECT COUNT(*) FROM book_borrowings WHERE user_id = ? AND book_id = b.book_id " +
+                " AND status = 'BORROWED') AS borrowed " +
+                "FROM books b WHERE b.book_id = ? AND b.is_active = true")) {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, userId);
+            stmt.setInt(3, bookId);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) {
+                return PlaceResult.NOT_FOUND;
+            }
+            if (rs.getInt("held") > 0) {
+                return PlaceResult.ALREADY_HELD;
+            }
+            if (rs.getInt("borrowed") > 0) {
+                return PlaceResult.ALREADY_BORROWED;
+            }
+            if (rs.getInt("available_quantity") > 0) {
+                return PlaceResult.AVAILABLE;
+            }
+        }
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO book_holds (book_id, user_id, status) VALUES (?, ?, 'WAITING')")) {
+            insert.setInt(1, bookId);
+            insert.setInt(2, userId);
+            insert.executeUpdate();
+        }
+        return PlaceResult.PLACED;
+    }
+
+    /** The student's waiting and ready holds, oldest first. */
+    public static List<Hold> forUser(Connection conn, int userId) throws SQLException {
+        startSweeper();
+        List<Hold> holds = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT h.hold_id, h.book_id, b.title, h.status, h.placed_at, h.expires_at, " +
+                "(SELECT COUNT(*) FROM book_holds q WHERE q.book_id = h.book_id " +
+                " AND q.status = 'WAITING' AND q.hold_id <= h.hold_id) AS position " +
+                "FROM book_holds h JOIN books b ON h.book_id = b.book_id " +
+                "WHERE h.user_id = ? AND h.status IN ('WAITING', 'READY') ORDER BY h.hold_id")) {
+            stmt.setInt(1, userId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                holds.add(new Hold(rs.getInt("hold_id"), rs.getInt("book_id"), rs.getString("title"),
+                    rs.getString("status"), rs.getTimestamp("placed_at"), rs.getTimestamp("expires_at"),
+                    rs.getInt("position")));
+            }
+        }
+        return holds;
+    }
+
+    /**
+     * Lends the copy set aside for a READY hold to its student, if the student may still
+     * borrow under the same rules as Circulation.issue. Returns null on success, otherwise
+     * why not; the hold then stays READY until it is picked up, cancelled or expires.
+     * Needs auto-commit mode.
+     */
+    public static String pickUp(Connection conn, int userId, int holdId) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            int bookId;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT book_id, status, expires_at < CURRENT_TIMESTAMP AS expired FROM book_holds " +
+                    "WHERE hold_id = ? AND user_id = ? FOR UPDATE")) {
+                stmt.setInt(1, holdId);
+                stmt.setInt(2, userId);
+                ResultSet rs = stmt.executeQuery();
+                if (!rs.next()) {
+                    conn.rollback();
+                    return "Hold not found";
+                }
+                if (!"READY".equals(rs.getString("status"))) {
+                    conn.rollback();
+                    return "No copy is ready for this hold yet";
+                }
+                if (rs.getBoolean("expired")) {
+                    conn.rollback();
+                    return "This hold has expired";
+                }
+                bookId = rs.getInt("book_id");
+            }
+            // The student may have fallen overdue while waiting
+            Circulation.IssueResult eligibility = Circulation.checkStudent(conn, userId, bookId);
+            if (eligibility != Circulation.IssueResult.ISSUED) {
+                conn.rollback();
+                return eligibility.getMessage();
+            }
+            // The copy was never put back on the shelf, so no Inventory.take here
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO book_borrowings (book_id, user_id, borrow_date, due_date, status) " +
+                    "VALUES (?, ?, CURRENT_DATE, " +
+                    DatabaseConnection.getDialect().addDays("CURRENT_DATE", Circulation.LOAN_DAYS) + ", 'BORROWED')")) {
+                insert.setInt(1, bookId);
+                insert.setInt(2, userId);
+                insert.executeUpdate();
+            }
+            setStatus(conn, holdId, "FULFILLED");
+            conn.commit();
+            return null;
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /** Cancels one of the student's open holds; a READY hold's copy goes to the next in line. */
+    public static boolean cancel(Connection conn, int userId, int holdId) throws SQLException {
+        int shelved = 0;
+        int bookId;
+        conn.setAutoCommit(false);
+        try {
+            String status;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT book_id, status FROM book_holds WHERE hold_id = ? AND user_id = ? FOR UPDATE")) {
+                stmt.setInt(1, holdId);
+                stmt.setInt(2, userId);
+                ResultSet rs = stmt.executeQuery();
+                if (!rs.next()) {
+                    conn.rollback();
+                    return false;
+                }
+                bookId = rs.getInt("book_id");
+                status = rs.getString("status");
+            }
+            if (!"WAITING".equals(status) && !"READY".equals(status)) {
+                conn.rollback();
+                return false;
+            }
+            setStatus(conn, holdId, "CANCELLED");
+            if ("READY".equals(status)) {
+                shelved = checkIn(conn, bookId, 1);
+            }
+            conn.commit();
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        reportShelved(bookId, shelved);
+        return true;
+    }
+
+    /**
+     * Hands checked-in copies of the book to its oldest waiting holds and puts the rest
+     * back on the shelf through Inventory. Returns the copies put on the shelf. Call with
+     * the transaction that closes the loans; after it commits, report the shelved copies
+     * to FacetIndex and SearchCache.
+     */
+    public static int checkIn(Connection conn, int bookId, int copies) throws SQLException {
+        startSweeper();
+        int shelved = copies - allocate(conn, bookId, copies);
+        if (shelved > 0) {
+            Inventory.give(conn, bookId, shelved);
+        }
+        return shelved;
+    }
+
+    /**
+     * checkIn for copies of several books, e.g. one return desk batch. Only books with a
+     * waiting hold cost a round trip of their own. Returns the copies shelved per book.
+     */
+    public static Map<Integer, Integer> checkIn(Connection conn, Map<Integer, Integer> copiesByBook)
+            throws SQLException {
+        startSweeper();
+        Map<Integer, Integer> shelved = new TreeMap<>(copiesByBook);
+        for (int bookId : booksWithWaitingHolds(conn, copiesByBook.keySet())) {
+            shelved.merge(bookId, -allocate(conn, bookId, copiesByBook.get(bookId)), Integer::sum);
+        }
+        shelved.values().removeIf(copies -> copies == 0);
+        Inventory.give(conn, shelved);
+        return shelved;
+    }
+
+    /** Expires READY holds past their pickup date and passes their copies on. */
+    static void expire(Connection conn) throws SQLException {
+        Map<Integer, Integer> shelved = new TreeMap<>();
+        int expired;
+        do {
+            expired = 0;
+            conn.setAutoCommit(false);
+            try {
+                List<int[]> holds = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT hold_id, book_id FROM book_holds " +
+                        "WHERE status = 'READY' AND expires_at < CURRENT_TIMESTAMP " +
+                        "ORDER BY hold_id LIMIT " + SWEEP_BATCH + " FOR UPDATE SKIP LOCKED")) {
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        holds.add(new int[]{rs.getInt("hold_id"), rs.getInt("book_id")});
+                    }
+                }
+                for (int[] hold : holds) {
+                    setStatus(conn, hold[0], "EXPIRED");
+                    notify(conn, hold[0], EXPIRED_MESSAGE);
+                    int copies = checkIn(conn, hold[1], 1);
+                    if (copies > 0) {
+                        shelved.merge(hold[1], copies, Integer::sum);
+                    }
+                }
+                conn.commit();
+                expired = holds.size();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } while (expired == SWEEP_BATCH);
+        for (Map.Entry<Integer, Integer> book : shelved.entrySet()) {
+            reportShelved(book.getKey(), book.getValue());
+        }
+    }
+
+    // Marks up to copies of the book's oldest waiting holds READY; returns how many
+    private static int allocate(Connection conn, int bookId, int copies) throws SQLException {
+        int allocated = 0;
+        try (PreparedStatement next = conn.prepareStatement(
+                "SELECT hold_id FROM book_holds WHERE book_id = ? AND status = 'WAITING' " +
+                "ORDER BY hold_id LIMIT 1 FOR UPDATE SKIP LOCKED");
+             PreparedStatement ready = conn.prepareStatement(
+                "UPDATE book_holds SET status = 'READY', ready_at = CURRENT_TIMESTAMP, expires_at = " +
+                DatabaseConnection.getDialect().addDays("CURRENT_TIMESTAMP", PICKUP_DAYS) + " WHERE hold_id = ?")) {
+            while (allocated < copies) {
+                next.setInt(1, bookId);
+                ResultSet rs = next.executeQuery();
+                if (!rs.next()) {
+                    break;
+                }
+                int holdId = rs.getInt(1);
+                ready.setInt(1, holdId);
+                ready.executeUpdate();
+                notify(conn, holdId, READY_MESSAGE);
+                allocated++;
+            }
+        }
+        return allocated;
+    }
+
+    private static Set<Integer> booksWithWaitingHolds(Connection conn, Set<Integer> bookIds) throws SQLException {
+        Set<Integer> waiting = new HashSet<>();
+        int[] ids = bookIds.stream().mapToInt(Integer::intValue).toArray();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT DISTINCT book_id FROM book_holds WHERE status = 'WAITING' " +
+                "AND book_id IN (" + CatalogIndex.ID_PLACEHOLDERS + ")")) {
+            for (int from = 0; from < ids.length; from += CatalogIndex.SEARCH_LIMIT) {
+                CatalogIndex.bindIds(stmt, 1,
+                    Arrays.copyOfRange(ids, from, Math.min(ids.length, from + CatalogIndex.SEARCH_LIMIT)));
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    waiting.add(rs.getInt(1));
+                }
+            }
+        }
+        return waiting;
+    }
+
+    private static void setStatus(Connection conn, int holdId, String status) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE book_holds SET status = ? WHERE hold_id = ?")) {
+            stmt.setString(1, status);
+            stmt.setInt(2, holdId);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void notify(Connection conn, int holdId, String message) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO notifications (user_id, message, is_read) " +
+                "SELECT h.user_id, " + message + ", false " +
+                "FROM book_holds h JOIN books b ON h.book_id = b.book_id WHERE h.hold_id = ?")) {
+            stmt.setInt(1, holdId);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void reportShelved(int bookId, int copies) {
+        if (copies > 0) {
+            FacetIndex.availabilityChanged(bookId, copies);
+            SearchCache.getInstance().availabilityChanged(bookId, copies);
+        }
+    }
+
+    private static synchronized void startSweeper() {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "holds-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                if (conn != null) {
+                    expire(conn);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }, 0, SWEEP_MS, TimeUnit.MILLISECONDS);
+    }
+}
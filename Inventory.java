@@ -0,0 +1,476 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes copies of books off the shelf and puts them back, without every desk queueing
+ * on one row for a popular title.
+ *
+ * A book's copies on the shelf are normally counted by books.available_quantity, and a
+ * take is the guarded decrement the panels always ran. When that UPDATE waits longer
+ * than library.inventory.hotWaitMs (50 ms) for the row lock, the title is split: its
+ * copies move to library.inventory.slots (8) rows of book_stock_slots, and
+ * books.stock_slots records the split. A take then decrements one slot chosen at
+ * random, so concurrent borrowers of the same title mostly lock different rows.
+ *
+ * Every decrement, of the book row or of a slot, is guarded by "> 0" on the row it
+ * changes, and the book row is only used while stock_slots = 0 on that same row, so a
+ * copy can never be handed out twice. For a split title books.available_quantity is a
+ * copy for listings and facets, brought up to date with the slots by a background task
+ * every library.inventory.reconcileMs (1 s) instead of on every borrow.
+ *
+ * take, give and mergeForUpdate run inside the caller's transaction; split and merge
+ * run their own.
+ */
+public final class Inventory {
+
+    public static final int SLOTS = Integer.getInteger("library.inventory.slots", 8);
+    private static final long HOT_WAIT_MS = Long.getLong("library.inventory.hotWaitMs", 50);
+    private static final long RECONCILE_MS = Long.getLong("library.inventory.reconcileMs", 1000);
+
+    // Slot count of each split book as last seen; a stale entry costs a retry, never a copy
+    private static final Map<Integer, Integer> split = new ConcurrentHashMap<>();
+    private static final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private static final Set<Integer> hot = ConcurrentHashMap.newKeySet();
+    private static volatile boolean loaded = false;
+    private static ScheduledExecutorService reconciler;
+
+    private Inventory() {
+    }
+
+    /**
+     * Takes one copy of the book, returning false if none is left. Call with the
+     * transaction that records the loan.
+     */
+    public static boolean take(Connection conn, int bookId) throws SQLException {
+        load(conn);
+        if (!split.containsKey(bookId)) {
+            long start = System.nanoTime();
+            int updated;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE books SET available_quantity = available_quantity - 1 " +
+                    "WHERE book_id = ? AND stock_slots = 0 AND available_quantity > 0")) {
+                stmt.setInt(1, bookId);
+                updated = stmt.executeUpdate();
+            }
+            noteWait(bookId, start);
+            if (updated > 0) {
+                return true;
+            }
+            if (readSlots(conn, bookId) == 0) {
+                return false;
+            }
+        }
+        return takeFromSlot(conn, bookId);
+    }
+
+    /**
+     * Takes one copy of each book, in book_id order so overlapping callers cannot
+     * deadlock. Books that are not split are decremented in one batch. Returns whether
+     * each book, by position in bookIds, had a copy.
+     */
+    public static boolean[] take(Connection conn, int[] bookIds) throws SQLException {
+        load(conn);
+        boolean[] taken = new boolean[bookIds.length];
+        List<Integer> order = sortedPositions(bookIds);
+        List<Integer> batched = new ArrayList<>();
+        for (int i : order) {
+            if (!split.containsKey(bookIds[i])) {
+                batched.add(i);
+            }
+        }
+        if (!batched.isEmpty()) {
+            long start = System.nanoTime();
+            int[] counts;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE books SET available_quantity = available_quantity - 1 " +
+                    "WHERE book_id = ? AND stock_slots = 0 AND available_quantity > 0")) {
+                for (int i : batched) {
+                    stmt.setInt(1, bookIds[i]);
+                    stmt.addBatch();
+                }
+                counts = stmt.executeBatch();
+            }
+            for (int n = 0; n < batched.size(); n++) {
+                // The wait is the batch's, so a cart's other titles may be split along with the hot one
+                noteWait(bookIds[batched.get(n)], start);
+                // Connector/J sends the rewritten batch in one round trip and still counts each row
+                taken[batched.get(n)] = counts[n] != 0;
+            }
+        }
+        for (int i : order) {
+            if (!taken[i] && (split.containsKey(bookIds[i]) || readSlots(conn, bookIds[i]) > 0)) {
+                taken[i] = takeFromSlot(conn, bookIds[i]);
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Puts copies of the book back on the shelf. Call with the transaction that closes the
+     * loans; throws if the book is gone, so the caller rolls back rather than lose the copies.
+     */
+    public static void give(Connection conn, int bookId, int copies) throws SQLException {
+        load(conn);
+        if (!split.containsKey(bookId) && giveToBook(conn, bookId, copies)) {
+            return;
+        }
+        for (int attempt = 0; attempt < 2; attempt++) {
+            // Split with another slot count, or merged, since we last looked
+            if (giveToSlot(conn, bookId, copies) || giveToBook(conn, bookId, copies)) {
+                return;
+            }
+            readSlots(conn, bookId);
+        }
+        throw new SQLException("Could not put " + copies + " copies of book " + bookId + " back on the shelf");
+    }
+
+    /** Puts back copies per book ID, in book_id order; books that are not split are updated in one batch. */
+    public static void give(Connection conn, Map<Integer, Integer> copiesByBook) throws SQLException {
+        load(conn);
+        int[] bookIds = copiesByBook.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        List<Integer> slotted = new ArrayList<>();
+        List<Integer> batched = new ArrayList<>();
+        for (int bookId : bookIds) {
+            (split.containsKey(bookId) ? slotted : batched).add(bookId);
+        }
+        if (!batched.isEmpty()) {
+            int[] counts;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE books SET available_quantity = available_quantity + ? " +
+                    "WHERE book_id = ? AND stock_slots = 0")) {
+                for (int bookId : batched) {
+                    stmt.setInt(1, copiesByBook.get(bookId));
+                    stmt.setInt(2, bookId);
+                    stmt.addBatch();
+                }
+                counts = stmt.executeBatch();
+            }
+            for (int n = 0; n < batched.size(); n++) {
+                if (counts[n] == 0) {
+                    slotted.add(batched.get(n));
+                }
+            }
+        }
+        for (int bookId : slotted) {
+            give(conn, bookId, copiesByBook.get(bookId));
+        }
+    }
+
+    /**
+     * Records that a copy of the book was taken or returned elsewhere, e.g. by the
+     * issue_book procedure, so a split book's listed count is reconciled.
+     */
+    public static void changed(int bookId) {
+        if (split.containsKey(bookId)) {
+            dirty.add(bookId);
+        }
+    }
+
+    /**
+     * Spreads the book's copies on the shelf over SLOTS rows. Returns false if it is
+     * already split or has fewer than two copies on the shelf. Needs auto-commit mode.
+     */
+    public static boolean split(Connection conn, int bookId) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            int available;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT available_quantity, stock_slots FROM books WHERE book_id = ? FOR UPDATE")) {
+                stmt.setInt(1, bookId);
+                ResultSet rs = stmt.executeQuery();
+                if (!rs.next() || rs.getInt("stock_slots") > 0 || rs.getInt("available_quantity") < 2) {
+                    conn.rollback();
+                    return false;
+                }
+                available = rs.getInt("available_quantity");
+            }
+            int slots = Math.min(SLOTS, available);
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO book_stock_slots (book_id, slot, available) VALUES (?, ?, ?)")) {
+                for (int slot = 0; slot < slots; slot++) {
+                    insert.setInt(1, bookId);
+                    insert.setInt(2, slot);
+                    insert.setInt(3, available / slots + (slot < available % slots ? 1 : 0));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            try (PreparedStatement update = conn.prepareStatement(
+                    "UPDATE books SET stock_slots = ? WHERE book_id = ?")) {
+                update.setInt(1, slots);
+                update.setInt(2, bookId);
+                update.executeUpdate();
+            }
+            conn.commit();
+            split.put(bookId, slots);
+            return true;
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Moves a split book's copies back onto its books row. Does nothing for a book that is
+     * not split. Needs auto-commit mode.
+     */
+    public static void merge(Connection conn, int bookId) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            mergeForUpdate(conn, bookId);
+            conn.commit();
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * merge inside the caller's transaction, e.g. before the book's quantity is edited.
+     * The book row stays locked until that transaction ends, so no one can split the book
+     * or take a copy before the caller's own update of the row.
+     */
+    public static void mergeForUpdate(Connection conn, int bookId) throws SQLException {
+        // Book row first, then slots: the same order as a take that finds the book split
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT stock_slots FROM books WHERE book_id = ? FOR UPDATE")) {
+            stmt.setInt(1, bookId);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next() || rs.getInt(1) == 0) {
+                split.remove(bookId);
+                return;
+            }
+        }
+        int available = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT available FROM book_stock_slots WHERE book_id = ? FOR UPDATE")) {
+            stmt.setInt(1, bookId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                available += rs.getInt(1);
+            }
+        }
+        try (PreparedStatement update = conn.prepareStatement(
+                "UPDATE books SET available_quantity = ?, stock_slots = 0 WHERE book_id = ?")) {
+            update.setInt(1, available);
+            update.setInt(2, bookId);
+            update.executeUpdate();
+        }
+        try (PreparedStatement delete = conn.prepareStatement(
+                "DELETE FROM book_stock_slots WHERE book_id = ?")) {
+            delete.setInt(1, bookId);
+            delete.executeUpdate();
+        }
+        // Dropped before the commit; a stale entry costs a retry, never a copy
+        split.remove(bookId);
+        dirty.remove(bookId);
+    }
+
+    /** Copies listed for split books are brought up to date with their slots now. */
+    static void reconcile(Connection conn) throws SQLException {
+        Integer[] bookIds = dirty.toArray(new Integer[0]);
+        if (bookIds.length == 0) {
+            return;
+        }
+        dirty.removeAll(Arrays.asList(bookIds));
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE books SET available_quantity = " +
+                "(SELECT COALESCE(SUM(available), 0) FROM book_stock_slots WHERE book_id = ?) " +
+                "WHERE book_id = ? AND stock_slots > 0")) {
+            for (int bookId : bookIds) {
+                stmt.setInt(1, bookId);
+                stmt.setInt(2, bookId);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } catch (SQLException ex) {
+            dirty.addAll(Arrays.asList(bookIds));
+            throw ex;
+        }
+    }
+
+    private static boolean takeFromSlot(Connection conn, int bookId) throws SQLException {
+        int slots = split.getOrDefault(bookId, SLOTS);
+        if (takeSlot(conn, bookId, ThreadLocalRandom.current().nextInt(slots))) {
+            return true;
+        }
+        // That slot is empty; try the ones that still have copies, from a random one on
+        List<Integer> stocked = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT slot FROM book_stock_slots WHERE book_id = ? AND available > 0")) {
+            stmt.setInt(1, bookId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                stocked.add(rs.getInt(1));
+            }
+        }
+        Collections.rotate(stocked, stocked.isEmpty() ? 0 : ThreadLocalRandom.current().nextInt(stocked.size()));
+        for (int slot : stocked) {
+            if (takeSlot(conn, bookId, slot)) {
+                return true;
+            }
+        }
+        if (!stocked.isEmpty()) {
+            return false;
+        }
+        slots = readSlots(conn, bookId);
+        if (slots == 0) {
+            // Merged since we last looked
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE books SET available_quantity = available_quantity - 1 " +
+                    "WHERE book_id = ? AND stock_slots = 0 AND available_quantity > 0")) {
+                stmt.setInt(1, bookId);
+                return stmt.executeUpdate() > 0;
+            }
+        }
+        // Split after this transaction's snapshot was taken: the SELECT above cannot see
+        // the slot rows, but an UPDATE always reads the latest ones
+        for (int slot = 0; slot < slots; slot++) {
+            if (takeSlot(conn, bookId, slot)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean takeSlot(Connection conn, int bookId, int slot) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE book_stock_slots SET available = available - 1 " +
+                "WHERE book_id = ? AND slot = ? AND available > 0")) {
+            stmt.setInt(1, bookId);
+            stmt.setInt(2, slot);
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        dirty.add(bookId);
+        return true;
+    }
+
+    private static boolean giveToBook(Connection conn, int bookId, int copies) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE books SET available_quantity = available_quantity + ? " +
+                "WHERE book_id = ? AND stock_slots = 0")) {
+            stmt.setInt(1, copies);
+            stmt.setInt(2, bookId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    private static boolean giveToSlot(Connection conn, int bookId, int copies) throws SQLException {
+        int slots = split.containsKey(bookId) ? split.get(bookId) : readSlots(conn, bookId);
+        if (slots == 0) {
+            return false;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE book_stock_slots SET available = available + ? WHERE book_id = ? AND slot = ?")) {
+            stmt.setInt(1, copies);
+            stmt.setInt(2, bookId);
+            stmt.setInt(3, ThreadLocalRandom.current().nextInt(slots));
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        dirty.add(bookId);
+        return true;
+    }
+
+    // Reads the book's slot count and corrects the cached one. A locking read, so it sees
+    // a split or merge committed after the caller's transaction took its snapshot.
+    private static int readSlots(Connection conn, int bookId) throws SQLException {
+        int slots = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT stock_slots FROM books WHERE book_id = ? FOR UPDATE")) {
+            stmt.setInt(1, bookId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                slots = rs.getInt(1);
+            }
+        }
+        if (slots > 0) {
+            split.put(bookId, slots);
+        } else {
+            split.remove(bookId);
+        }
+        return slots;
+    }
+
+    private static void noteWait(int bookId, long start) {
+        if (System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(HOT_WAIT_MS)) {
+            hot.add(bookId);
+        }
+    }
+
+    private static List<Integer> sortedPositions(int[] bookIds) {
+        List<Integer> order = new ArrayList<>(bookIds.length);
+        for (int i = 0; i < bookIds.length; i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> Integer.compare(bookIds[a], bookIds[b]));
+        return order;
+    }
+
+    private static void load(Connection conn) throws SQLException {
+        if (loaded) {
+            return;
+        }
+        synchronized (Inventory.class) {
+            if (loaded) {
+                return;
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT book_id, stock_slots FROM books WHERE stock_slots > 0")) {
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    split.put(rs.getInt(1), rs.getInt(2));
+                    // Another process may have left the listed count behind
+                    dirty.add(rs.getInt(1));
+                }
+            }
+            reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "inventory-reconciler");
+                t.setDaemon(true);
+                return t;
+            });
+            reconciler.scheduleWithFixedDelay(Inventory::runBackground, RECONCILE_MS, RECONCILE_MS,
+                                              TimeUnit.MILLISECONDS);
+            loaded = true;
+        }
+    }
+
+    // Splits titles whose row was contended, then reconciles listed counts
+    private static void runBackground() {
+        if (hot.isEmpty() && dirty.isEmpty()) {
+            return;
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                return;
+            }
+            for (Integer bookId : hot.toArray(new Integer[0])) {
+                hot.remove(bookId);
+                split(conn, bookId);
+            }
+            reconcile(conn);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
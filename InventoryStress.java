@@ -0,0 +1,252 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that Inventory never hands out more copies of a title than it has, with many
+ * borrowers taking the same title at once.
+ *
+ * Run against a scratch database: java InventoryStress [threads], 32 threads by
+ * default, on a scratch title of library.stress.copies (200) copies. Three runs:
+ * - whole: every thread takes copies until the title is sold out;
+ * - split: the same with the title split over stock slots;
+ * - churn: for library.stress.seconds (10), threads take and return copies while
+ *   another thread keeps splitting and merging the title.
+ * After each run the copies taken plus those left must equal the copies the title has,
+ * and no counter may be negative. Exits 1 if any check fails.
+ */
+public class InventoryStress {
+
+    private static final int COPIES = Integer.getInteger("library.stress.copies", 200);
+    private static final int SECONDS = Integer.getInteger("library.stress.seconds", 10);
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        boolean ok;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                System.exit(2);
+            }
+            SchemaMigrations.migrate(conn);
+            int bookId = createBook(conn);
+            try {
+                System.out.printf("%d threads, %d copies%n", threads, COPIES);
+                ok = drain("whole", conn, bookId, threads, false);
+                ok &= drain("split", conn, bookId, threads, true);
+                ok &= churn(conn, bookId, threads);
+            } finally {
+                Inventory.merge(conn, bookId);
+                try (PreparedStatement delete = conn.prepareStatement("DELETE FROM books WHERE book_id = ?")) {
+                    delete.setInt(1, bookId);
+                    delete.executeUpdate();
+                }
+            }
+        } finally {
+            DatabaseConnection.closeConnection();
+        }
+        System.out.println(ok ? "OK" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+
+    // Every thread takes until the title is sold out; exactly COPIES takes may succeed
+    private static boolean drain(String label, Connection conn, int bookId, int threads, boolean split)
+            throws Exception {
+        reset(conn, bookId, split);
+        AtomicInteger taken = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+        run(threads, desk -> {
+            try (Connection own = DatabaseConnection.getConnection()) {
+                while (true) {
+                    Boolean took = inTransaction(own, () -> Inventory.take(own, bookId));
+                    if (took == null) {
+                        errors.incrementAndGet();
+                    } else if (took) {
+                        taken.incrementAndGet();
+                    } else {
+                        return;
+                    }
+                }
+            }
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-6s %5d taken in %.2f s (%.0f takes/s), %d errors retried%n",
+            label, taken.get(), seconds, taken.get() / seconds, errors.get());
+        return check(label, conn, bookId, taken.get(), 0);
+    }
+
+    // Threads take and return at random while the title is split and merged under them
+    private static boolean churn(Connection conn, int bookId, int threads) throws Exception {
+        reset(conn, bookId, true);
+        AtomicInteger outstanding = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger operations = new AtomicInteger();
+        AtomicInteger toggles = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        long deadline = System.nanoTime() + SECONDS * 1_000_000_000L;
+
+        Thread toggler = new Thread(() -> {
+            try (Connection own = DatabaseConnection.getConnection()) {
+                while (running.get()) {
+                    Thread.sleep(200);
+                    if (!Inventory.split(own, bookId)) {
+                        Inventory.merge(own, bookId);
+                    }
+                    toggles.incrementAndGet();
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, "toggler");
+        toggler.start();
+
+        run(threads, desk -> {
+            Random random = new Random(desk);
+            int held = 0;
+            try (Connection own = DatabaseConnection.getConnection()) {
+                while (System.nanoTime() < deadline || held > 0) {
+                    boolean returning = System.nanoTime() >= deadline || (held > 0 && random.nextBoolean());
+                    if (returning) {
+                        // Counted as returned before the copy is back, so outstanding never overstates
+                        outstanding.decrementAndGet();
+                        Boolean gave = inTransaction(own, () -> {
+                            Inventory.give(own, bookId, 1);
+                            return true;
+                        });
+                        if (gave == null) {
+                            outstanding.incrementAndGet();
+                        } else {
+                            held--;
+                        }
+                    } else if (Boolean.TRUE.equals(inTransaction(own, () -> Inventory.take(own, bookId)))) {
+                        held++;
+                        peak.accumulateAndGet(outstanding.incrementAndGet(), Math::max);
+                    }
+                    operations.incrementAndGet();
+                }
+            }
+        });
+        running.set(false);
+        toggler.join();
+
+        System.out.printf("churn  %5d operations, %d splits and merges, at most %d copies out%n",
+            operations.get(), toggles.get(), peak.get());
+        boolean ok = true;
+        if (peak.get() > COPIES) {
+            System.out.printf("churn: %d copies were out at once, more than the %d there are%n", peak.get(), COPIES);
+            ok = false;
+        }
+        return check("churn", conn, bookId, 0, COPIES) && ok;
+    }
+
+    // Copies taken plus copies left on the shelf must be all of them, and no counter negative
+    private static boolean check(String label, Connection conn, int bookId, int taken, int expectedLeft)
+            throws SQLException {
+        boolean ok = true;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT COALESCE(MIN(available), 0) " +
+                "FROM book_stock_slots WHERE book_id = ?")) {
+            stmt.setInt(1, bookId);
+            ResultSet rs = stmt.executeQuery();
+            rs.next();
+            if (rs.getInt(1) < 0) {
+                System.out.printf("%s: a stock slot went negative (%d)%n", label, rs.getInt(1));
+                ok = false;
+            }
+        }
+        Inventory.merge(conn, bookId);
+        int left = available(conn, bookId);
+        if (left != expectedLeft || taken + left != COPIES) {
+            System.out.printf("%s: %d taken and %d left of %d copies%n", label, taken, left, COPIES);
+            ok = false;
+        }
+        return ok;
+    }
+
+    private static void reset(Connection conn, int bookId, boolean split) throws SQLException {
+        Inventory.merge(conn, bookId);
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE books SET quantity = ?, available_quantity = ? WHERE book_id = ?")) {
+            stmt.setInt(1, COPIES);
+            stmt.setInt(2, COPIES);
+            stmt.setInt(3, bookId);
+            stmt.executeUpdate();
+        }
+        if (split) {
+            Inventory.split(conn, bookId);
+        }
+    }
+
+    private static int createBook(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO books (title, author, isbn, category, quantity, available_quantity) " +
+                "VALUES ('Inventory Stress', 'Stress', ?, 'Stress', ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, String.format("STRESS%07d", System.currentTimeMillis() % 10_000_000));
+            stmt.setInt(2, COPIES);
+            stmt.setInt(3, COPIES);
+            stmt.executeUpdate();
+            ResultSet keys = stmt.getGeneratedKeys();
+            keys.next();
+            return keys.getInt(1);
+        }
+    }
+
+    private static int available(Connection conn, int bookId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT available_quantity FROM books WHERE book_id = ?")) {
+            stmt.setInt(1, bookId);
+            ResultSet rs = stmt.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private interface Step<T> {
+        T run() throws SQLException;
+    }
+
+    private interface Desk {
+        void run(int desk) throws Exception;
+    }
+
+    // Runs the step in its own transaction; null if it failed, e.g. a deadlock, and was rolled back
+    private static <T> T inTransaction(Connection conn, Step<T> step) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            T result = step.run();
+            conn.commit();
+            return result;
+        } catch (SQLException e) {
+            conn.rollback();
+            return null;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private static void run(int threads, Desk desk) throws InterruptedException {
+        List<Thread> running = new ArrayList<>();
+        for (int d = 0; d < threads; d++) {
+            int id = d;
+            Thread thread = new Thread(() -> {
+                try {
+                    desk.run(id);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }, "desk-" + d);
+            running.add(thread);
+            thread.start();
+        }
+        for (Thread thread : running) {
+            thread.join();
+        }
+    }
+}
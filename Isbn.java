@@ -0,0 +1,82 @@
+/**
+ * Validation and canonical form of ISBNs.
+ *
+ * Both ISBN-10 and ISBN-13 are accepted, with or without hyphens and spaces, and must
+ * carry a correct check digit. The canonical form is the 13 digits of the ISBN-13, so
+ * "0-306-40615-2" and "978-0-306-40615-7" are the same book; it fits the books.isbn
+ * column and, as a number, a long.
+ */
+public final class Isbn {
+
+    private Isbn() {
+    }
+
+    /** The canonical 13-digit form of isbn, or null if it is not a valid ISBN-10 or ISBN-13. */
+    public static String normalize(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        char[] digits = new char[13];
+        int n = 0;
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            boolean checkX = (c == 'X' || c == 'x') && n == 9;
+            if (n == 13 || !(c >= '0' && c <= '9' || checkX)) {
+                return null;
+            }
+            digits[n++] = checkX ? 'X' : c;
+        }
+        if (n == 10) {
+            return isValid10(digits) ? to13(digits) : null;
+        }
+        if (n == 13 && digits[9] != 'X' && isValid13(digits)) {
+            return new String(digits);
+        }
+        return null;
+    }
+
+    public static boolean isValid(String isbn) {
+        return normalize(isbn) != null;
+    }
+
+    /** The canonical form as a number, for compact hashing; see normalize(). */
+    public static long toLong(String canonical) {
+        return Long.parseLong(canonical);
+    }
+
+    private static boolean isValid10(char[] digits) {
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            int value = digits[i] == 'X' ? 10 : digits[i] - '0';
+            sum += (10 - i) * value;
+        }
+        return sum % 11 == 0;
+    }
+
+    private static boolean isValid13(char[] digits) {
+        return checkDigit13(digits) == digits[12] - '0';
+    }
+
+    // Check digit of the first 12 digits: weights alternate 1 and 3
+    private static int checkDigit13(char[] digits) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (i % 2 == 0 ? 1 : 3) * (digits[i] - '0');
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    // Every ISBN-10 is the ISBN-13 with prefix 978 and a recomputed check digit
+    private static String to13(char[] isbn10) {
+        char[] digits = new char[13];
+        digits[0] = '9';
+        digits[1] = '7';
+        digits[2] = '8';
+        System.arraycopy(isbn10, 0, digits, 3, 9);
+        digits[12] = (char) ('0' + checkDigit13(digits));
+        return new String(digits);
+    }
+}
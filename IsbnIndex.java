@@ -0,0 +1,240 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * In-memory map from canonical ISBN to book_id, with a BloomFilter in front.
+ *
+ * ISBNs are stored as longs (see Isbn.toLong) in an open-addressing hash table, about
+ * 24 bytes per book instead of the String and Integer objects a HashMap would keep.
+ * Most lookups are for ISBNs the library does not have yet, so each is first checked
+ * against the Bloom filter, which rules out nearly all of them with a few bit reads.
+ * Every book is indexed, deleted ones included, since their rows still hold the ISBN
+ * and its unique key. Rows whose ISBN is not valid are skipped.
+ *
+ * BookManagementPanel checks new books against the index instead of waiting for the
+ * insert to fail, and search treats a scanned or typed ISBN as an exact lookup. Bulk
+ * imports deduplicate through a Deduplicator. Like CatalogIndex, the index is loaded
+ * once per client and reloaded every library.catalog.indexRefreshMs; a book another
+ * client added since is still caught by the unique key on books.isbn.
+ */
+public class IsbnIndex {
+
+    private static final long REFRESH_MS = Long.getLong("library.catalog.indexRefreshMs", 10 * 60 * 1000);
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final long EMPTY = 0;
+
+    private static IsbnIndex instance;
+    private static boolean reloading = false;
+
+    private long[] keys = new long[1024];
+    private int[] bookIds = new int[1024];
+    private int size = 0;
+    private BloomFilter bloom = new BloomFilter(512, FALSE_POSITIVE_RATE);
+    private final long loadedAt = System.currentTimeMillis();
+
+    /**
+     * Filters a stream of ISBNs down to the valid ones that are neither in the catalog
+     * nor earlier in the same stream, without a query per row. Holds only the ISBNs it
+     * has let through, as longs behind a Bloom filter of their own.
+     */
+    public static class Deduplicator {
+        private final IsbnIndex catalog;
+        private final IsbnIndex seen;
+        private int invalid = 0;
+        private int inCatalog = 0;
+        private int repeated = 0;
+
+        Deduplicator(IsbnIndex catalog, int expected) {
+            this.catalog = catalog;
+            this.seen = new IsbnIndex(expected);
+        }
+
+        /** The canonical ISBN if this row should be imported, or null to skip it. */
+        public String accept(String isbn) {
+            String canonical = Isbn.normalize(isbn);
+            if (canonical == null) {
+                invalid++;
+                return null;
+            }
+            long key = Isbn.toLong(canonical);
+            if (catalog.find(key) >= 0) {
+                inCatalog++;
+                return null;
+            }
+            if (!seen.add(key, 0)) {
+                repeated++;
+                return null;
+            }
+            return canonical;
+        }
+
+        public int getAccepted() { return seen.size(); }
+        public int getInvalid() { return invalid; }
+        public int getInCatalog() { return inCatalog; }
+        public int getRepeated() { return repeated; }
+    }
+
+    IsbnIndex() {
+    }
+
+    private IsbnIndex(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(512, expected) * 2 - 1) * 2;
+        keys = new long[capacity];
+        bookIds = new int[capacity];
+        bloom = new BloomFilter(Math.max(512, expected), FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Returns the shared index, loading it with the given connection on first use.
+     * Call from a DatabaseExecutor worker, never the EDT.
+     */
+    public static IsbnIndex getInstance(Connection conn) throws SQLException {
+        IsbnIndex current;
+        synchronized (IsbnIndex.class) {
+            current = instance;
+        }
+        if (current == null) {
+            current = load(conn);
+            synchronized (IsbnIndex.class) {
+                if (instance == null) {
+                    instance = current;
+                }
+                current = instance;
+            }
+        }
+        current.reloadIfStale();
+        return current;
+    }
+
+    /** The shared index if it has been loaded, otherwise null; used for incremental updates. */
+    public static synchronized IsbnIndex getLoadedInstance() {
+        return instance;
+    }
+
+    private static IsbnIndex load(Connection conn) throws SQLException {
+        IsbnIndex index = new IsbnIndex();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT book_id, isbn FROM books");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                index.put(rs.getString("isbn"), rs.getInt("book_id"));
+            }
+        }
+        return index;
+    }
+
+    private void reloadIfStale() {
+        synchronized (IsbnIndex.class) {
+            if (reloading || System.currentTimeMillis() - loadedAt < REFRESH_MS) {
+                return;
+            }
+            reloading = true;
+        }
+        DatabaseExecutor.submitRead(null, IsbnIndex::load, fresh -> {
+            synchronized (IsbnIndex.class) {
+                instance = fresh;
+                reloading = false;
+            }
+        }, ex -> {
+            ex.printStackTrace();
+            synchronized (IsbnIndex.class) {
+                reloading = false;
+            }
+        });
+    }
+
+    /** Indexes a book's ISBN in any accepted form; returns false if it is not a valid ISBN. */
+    public synchronized boolean put(String isbn, int bookId) {
+        String canonical = Isbn.normalize(isbn);
+        if (canonical == null) {
+            return false;
+        }
+        long key = Isbn.toLong(canonical);
+        int slot = slot(key);
+        if (keys[slot] == key) {
+            bookIds[slot] = bookId;
+        } else {
+            add(key, bookId);
+        }
+        return true;
+    }
+
+    /** The book with this ISBN in any accepted form, or -1 if there is none or it is invalid. */
+    public synchronized int find(String isbn) {
+        String canonical = Isbn.normalize(isbn);
+        return canonical == null ? -1 : find(Isbn.toLong(canonical));
+    }
+
+    public boolean contains(String isbn) {
+        return find(isbn) >= 0;
+    }
+
+    /** Starts deduplicating an import of about expected rows against this index. */
+    public Deduplicator newDeduplicator(int expected) {
+        return new Deduplicator(this, expected);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int find(long key) {
+        if (!bloom.mightContain(key)) {
+            return -1;
+        }
+        int slot = slot(key);
+        return keys[slot] == key ? bookIds[slot] : -1;
+    }
+
+    // Adds a key not yet present; false if it already was
+    private synchronized boolean add(long key, int bookId) {
+        int slot = slot(key);
+        if (keys[slot] == key) {
+            return false;
+        }
+        keys[slot] = key;
+        bookIds[slot] = bookId;
+        bloom.add(key);
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        if (bloom.isOverfull()) {
+            rebuildBloom(size * 2);
+        }
+        return true;
+    }
+
+    // The key's slot, or the empty slot where it would go; linear probing
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) BloomFilter.mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldIds = bookIds;
+        keys = new long[oldKeys.length * 2];
+        bookIds = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                bookIds[slot] = oldIds[i];
+            }
+        }
+    }
+
+    private void rebuildBloom(int expected) {
+        bloom = new BloomFilter(expected, FALSE_POSITIVE_RATE);
+        for (long key : keys) {
+            if (key != EMPTY) {
+                bloom.add(key);
+            }
+        }
+    }
+}
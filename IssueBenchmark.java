@@ -0,0 +1,227 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares issue throughput per desk: the old six-statement transaction against the
+ * issue_book procedure that Circulation.issue calls.
+ *
+ * Run from a desk machine against the MySQL server, so the network round trips are
+ * real: java IssueBenchmark [desks]. Each of the desks (8 by default) is a thread with
+ * its own connection issuing random books to random students for
+ * library.bench.seconds (20) per variant. Students and books are scratch rows that are
+ * deleted afterwards unless -Dlibrary.bench.keep=true is set. There are only a few
+ * books, so desks contend for the same rows, as they do at term start.
+ */
+public class IssueBenchmark {
+
+    private static final int STUDENTS = 5_000;
+    private static final int BOOKS = 50;
+    private static final int SECONDS = Integer.getInteger("library.bench.seconds", 20);
+    private static final String USER_PREFIX = "bench_issue_";
+    private static final String ISBN_PREFIX = "BENCH";
+
+    private interface Issuer {
+        Circulation.IssueResult issue(Connection conn, int studentId, int bookId) throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int desks = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        if (DatabaseConnection.getDialect() != SqlDialect.MYSQL) {
+            System.err.println("The issue_book procedure needs the MySQL server; unset library.db.mode");
+            System.exit(2);
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                System.exit(2);
+            }
+            SchemaMigrations.migrate(conn);
+            try {
+                seed(conn);
+                int[] students = ids(conn, "SELECT user_id FROM users WHERE username LIKE '" + USER_PREFIX + "%'");
+                int[] books = ids(conn, "SELECT book_id FROM books WHERE isbn LIKE '" + ISBN_PREFIX + "%'");
+
+                System.out.printf("%d desks, %d s per variant, %,d students, %d books%n%n",
+                    desks, SECONDS, students.length, books.length);
+                System.out.printf("%-22s %9s %10s %12s %9s %9s %8s%n",
+                    "variant", "issues", "issues/s", "per desk/s", "p50 ms", "p99 ms", "errors");
+                reset(conn);
+                run("six statements", IssueBenchmark::issueInSixStatements, desks, students, books);
+                reset(conn);
+                run("issue_book procedure", Circulation::issueWithProcedure, desks, students, books);
+            } finally {
+                if (!Boolean.getBoolean("library.bench.keep")) {
+                    reset(conn);
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.executeUpdate("DELETE FROM books WHERE isbn LIKE '" + ISBN_PREFIX + "%'");
+                        stmt.executeUpdate("DELETE FROM users WHERE username LIKE '" + USER_PREFIX + "%'");
+                    }
+                }
+            }
+        } finally {
+            DatabaseConnection.closeConnection();
+        }
+    }
+
+    private static void run(String label, Issuer issuer, int desks, int[] students, int[] books)
+            throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong issued = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + SECONDS * 1_000_000_000L;
+        List<Thread> threads = new ArrayList<>();
+        for (int d = 0; d < desks; d++) {
+            Random random = new Random(d);
+            Thread desk = new Thread(() -> {
+                try (Connection conn = DatabaseConnection.getConnection()) {
+                    while (System.nanoTime() < deadline) {
+                        int student = students[random.nextInt(students.length)];
+                        int book = books[random.nextInt(books.length)];
+                        long start = System.nanoTime();
+                        try {
+                            if (issuer.issue(conn, student, book) == Circulation.IssueResult.ISSUED) {
+                                issued.incrementAndGet();
+                            }
+                        } catch (SQLException e) {
+                            // Deadlocks and lock wait timeouts count against the variant
+                            errors.incrementAndGet();
+                        }
+                        latency.record((System.nanoTime() - start) / 1000);
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }, "desk-" + d);
+            threads.add(desk);
+            desk.start();
+        }
+        for (Thread desk : threads) {
+            desk.join();
+        }
+        double perSecond = (double) issued.get() / SECONDS;
+        System.out.printf("%-22s %9d %10.1f %12.1f %9.2f %9.2f %8d%n", label, issued.get(), perSecond,
+            perSecond / desks, latency.getValueAtPercentile(50) / 1000.0,
+            latency.getValueAtPercentile(99) / 1000.0, errors.get());
+    }
+
+    // The transaction IssueBooksPanel ran before the procedure, one round trip per step
+    private static Circulation.IssueResult issueInSixStatements(Connection conn, int studentId, int bookId)
+            throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            Circulation.IssueResult result = sixStatements(conn, studentId, bookId);
+            if (result == Circulation.IssueResult.ISSUED) {
+                conn.commit();
+            } else {
+                conn.rollback();
+            }
+            return result;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private static Circulation.IssueResult sixStatements(Connection conn, int studentId, int bookId)
+            throws SQLException {
+        PreparedStatement student = conn.prepareStatement(
+            "SELECT is_active FROM users WHERE user_id = ? AND role = 'STUDENT'");
+        student.setInt(1, studentId);
+        ResultSet rs = student.executeQuery();
+        if (!rs.next()) {
+            return Circulation.IssueResult.STUDENT_NOT_FOUND;
+        }
+        if (!rs.getBoolean(1)) {
+            return Circulation.IssueResult.STUDENT_INACTIVE;
+        }
+        PreparedStatement overdue = conn.prepareStatement(
+            "SELECT COUNT(*) FROM book_borrowings " +
+            "WHERE user_id = ? AND status = 'BORROWED' AND due_date < CURRENT_DATE");
+        overdue.setInt(1, studentId);
+        rs = overdue.executeQuery();
+        rs.next();
+        if (rs.getInt(1) > 0) {
+            return Circulation.IssueResult.HAS_OVERDUE;
+        }
+        PreparedStatement borrowed = conn.prepareStatement(
+            "SELECT COUNT(*) FROM book_borrowings WHERE user_id = ? AND book_id = ? AND status = 'BORROWED'");
+        borrowed.setInt(1, studentId);
+        borrowed.setInt(2, bookId);
+        rs = borrowed.executeQuery();
+        rs.next();
+        if (rs.getInt(1) > 0) {
+            return Circulation.IssueResult.ALREADY_BORROWED;
+        }
+        PreparedStatement update = conn.prepareStatement(
+            "UPDATE books SET available_quantity = available_quantity - 1 WHERE book_id = ? AND available_quantity > 0");
+        update.setInt(1, bookId);
+        if (update.executeUpdate() == 0) {
+            return Circulation.IssueResult.NOT_AVAILABLE;
+        }
+        PreparedStatement insert = conn.prepareStatement(
+            "INSERT INTO book_borrowings (book_id, user_id, borrow_date, due_date, status) " +
+            "VALUES (?, ?, CURRENT_DATE, DATE_ADD(CURRENT_DATE, INTERVAL 14 DAY), 'BORROWED')");
+        insert.setInt(1, bookId);
+        insert.setInt(2, studentId);
+        insert.executeUpdate();
+        PreparedStatement notify = conn.prepareStatement(
+            "INSERT INTO notifications (user_id, message, is_read) VALUES (?, ?, false)");
+        notify.setInt(1, studentId);
+        notify.setString(2, "Book 'Bench' has been issued to you.");
+        notify.executeUpdate();
+        return Circulation.IssueResult.ISSUED;
+    }
+
+    private static void seed(Connection conn) throws SQLException {
+        try (BatchWriter writer = new BatchWriter(conn,
+                "INSERT INTO users (username, password, full_name, email, role, is_active) " +
+                "VALUES (?, 'x', ?, ?, 'STUDENT', true)")) {
+            for (int i = 0; i < STUDENTS; i++) {
+                writer.add(USER_PREFIX + i, "Bench Student " + i, USER_PREFIX + i + "@bench.invalid");
+            }
+            writer.finish();
+        }
+        // Enough copies that the shelf never runs out during a run
+        try (BatchWriter writer = new BatchWriter(conn,
+                "INSERT INTO books (title, author, isbn, category, quantity, available_quantity) " +
+                "VALUES (?, 'Bench', ?, 'Bench', 1000000, 1000000)")) {
+            for (int i = 0; i < BOOKS; i++) {
+                writer.add("Bench Book " + i, String.format(ISBN_PREFIX + "%08d", i));
+            }
+            writer.finish();
+        }
+    }
+
+    private static void reset(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            String benchUsers = "(SELECT user_id FROM users WHERE username LIKE '" + USER_PREFIX + "%')";
+            stmt.executeUpdate("DELETE FROM notifications WHERE user_id IN " + benchUsers);
+            stmt.executeUpdate("DELETE FROM book_borrowings WHERE user_id IN " + benchUsers);
+            stmt.executeUpdate("UPDATE books SET available_quantity = quantity WHERE isbn LIKE '" + ISBN_PREFIX + "%'");
+        }
+    }
+
+    private static int[] ids(Connection conn, String sql) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Statement stmt = conn.createStatement()) {
+            ResultSet rs = stmt.executeQuery(sql);
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+}
@@ -1,19 +1,57 @@
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.sql.*;
-import java.util.Date;
-import java.util.Calendar;
+import java.util.List;
 
 public class IssueBooksPanel extends JPanel {
+    private static final CatalogService.Projection COLUMNS = CatalogService.Projection.of(
+        CatalogService.Column.TITLE, CatalogService.Column.AUTHOR, CatalogService.Column.CATEGORY,
+        CatalogService.Column.AVAILABLE_QUANTITY);
+
     private int userId;
     private boolean isDarkMode;
     private Color darkBackground = new Color(33, 33, 33);
     private Color lightBackground = new Color(242, 242, 242);
     private JTable booksTable;
     private DefaultTableModel tableModel;
+    private KeysetPager pager;
+    private FacetBar facetBar;
+    // Bumped by every listing or search, so facet counts from an older one are dropped
+    private int facetRequest = 0;
+
+    private static class SearchResult {
+        final List<Book> books;
+        final FacetIndex.Result facets;
+
+        SearchResult(List<Book> books, FacetIndex.Result facets) {
+            this.books = books;
+            this.facets = facets;
+        }
+    }
+    // A book waiting in the checkout cart
+    private static class CartItem {
+        final int bookId;
+        final String title;
+
+        CartItem(int bookId, String title) {
+            this.bookId = bookId;
+            this.title = title;
+        }
+
+        @Override
+        public String toString() {
+            return title + " (#" + bookId + ")";
+        }
+    }
     private JTextField studentIdField;
     private JTextField searchField;
+    private JTextField scanField;
+    private DefaultListModel<CartItem> cartModel;
+    private JList<CartItem> cartList;
+    // Disabled while a checkout is in flight, so the cart cannot change under it
+    private JButton addToCartButton;
+    private JButton removeButton;
+    private JButton checkoutButton;
 
     public IssueBooksPanel(int userId, boolean isDarkMode) {
         this.userId = userId;
@@ -56,12 +94,18 @@ public class IssueBooksPanel extends JPanel {
         JButton searchButton = new JButton("Search");
         styleButton(searchButton);
         searchButton.addActionListener(e -> searchBooks());
+        SearchAsYouType.install(searchField, this::searchBooks, CatalogIndex::suggest);
         searchPanel.add(searchLabel);
         searchPanel.add(searchField);
         searchPanel.add(searchButton);
 
+        // Category filter; this panel only lists books on the shelf, so no availability box
+        facetBar = new FacetBar(this::searchBooks, false);
+        facetBar.setTextColor(isDarkMode ? Color.WHITE : Color.BLACK);
+
         topPanel.add(studentPanel, BorderLayout.WEST);
         topPanel.add(searchPanel, BorderLayout.EAST);
+        topPanel.add(facetBar, BorderLayout.SOUTH);
         add(topPanel, BorderLayout.NORTH);
 
         // Create table
@@ -81,30 +125,85 @@ public class IssueBooksPanel extends JPanel {
 
         JScrollPane scrollPane = new JScrollPane(booksTable);
         add(scrollPane, BorderLayout.CENTER);
+        add(createCartPanel(), BorderLayout.EAST);
+        pager = new KeysetPager(this, "books", booksTable, COLUMNS, CatalogService.Filter.AVAILABLE,
+            this::toRow, ex -> {
+                ex.printStackTrace();
+                JOptionPane.showMessageDialog(this,
+                    "Error loading books: " + ex.getMessage(),
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE);
+            });
 
         // Create buttons panel
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
         buttonPanel.setBackground(isDarkMode ? darkBackground : lightBackground);
 
         JButton issueButton = new JButton("Issue Book");
+        addToCartButton = new JButton("Add to Cart");
         JButton clearButton = new JButton("Clear");
         JButton refreshButton = new JButton("Refresh");
 
         styleButton(issueButton);
+        styleButton(addToCartButton);
         styleButton(clearButton);
         styleButton(refreshButton);
 
         issueButton.addActionListener(e -> issueBook());
+        addToCartButton.addActionListener(e -> addSelectedToCart());
         clearButton.addActionListener(e -> clearFields());
         refreshButton.addActionListener(e -> loadBooks());
 
         buttonPanel.add(issueButton);
+        buttonPanel.add(addToCartButton);
         buttonPanel.add(clearButton);
         buttonPanel.add(refreshButton);
 
         add(buttonPanel, BorderLayout.SOUTH);
     }
 
+    private JPanel createCartPanel() {
+        JPanel cartPanel = new JPanel(new BorderLayout(5, 5));
+        cartPanel.setBackground(isDarkMode ? darkBackground : lightBackground);
+        cartPanel.setPreferredSize(new Dimension(260, 0));
+
+        // A barcode scanner types the ISBN and presses Enter
+        JPanel scanPanel = new JPanel(new BorderLayout(5, 5));
+        scanPanel.setBackground(isDarkMode ? darkBackground : lightBackground);
+        JLabel scanLabel = new JLabel("Scan ISBN / Book ID:");
+        scanLabel.setForeground(isDarkMode ? Color.WHITE : Color.BLACK);
+        scanField = new JTextField(15);
+        scanField.addActionListener(e -> scanBook());
+        scanPanel.add(scanLabel, BorderLayout.NORTH);
+        scanPanel.add(scanField, BorderLayout.CENTER);
+
+        cartModel = new DefaultListModel<>();
+        cartList = new JList<>(cartModel);
+        cartList.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        JScrollPane cartScroll = new JScrollPane(cartList);
+        cartScroll.setBorder(BorderFactory.createTitledBorder("Cart"));
+
+        JPanel cartButtons = new JPanel(new FlowLayout(FlowLayout.CENTER, 5, 5));
+        cartButtons.setBackground(isDarkMode ? darkBackground : lightBackground);
+        removeButton = new JButton("Remove");
+        checkoutButton = new JButton("Check Out");
+        styleButton(removeButton);
+        styleButton(checkoutButton);
+        removeButton.addActionListener(e -> {
+            for (CartItem item : cartList.getSelectedValuesList()) {
+                cartModel.removeElement(item);
+            }
+        });
+        checkoutButton.addActionListener(e -> checkout());
+        cartButtons.add(removeButton);
+        cartButtons.add(checkoutButton);
+
+        cartPanel.add(scanPanel, BorderLayout.NORTH);
+        cartPanel.add(cartScroll, BorderLayout.CENTER);
+        cartPanel.add(cartButtons, BorderLayout.SOUTH);
+        return cartPanel;
+    }
+
     private void styleButton(JButton button) {
         button.setBackground(new Color(70, 130, 180));
         button.setForeground(Color.WHITE);
@@ -113,32 +212,31 @@ public class IssueBooksPanel extends JPanel {
     }
 
     private void loadBooks() {
-        tableModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(
-                "SELECT book_id, title, author, category, available_quantity " +
-                "FROM books WHERE is_active = 1 AND available_quantity > 0"
-            );
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                Object[] row = {
-                    rs.getInt("book_id"),
-                    rs.getString("title"),
-                    rs.getString("author"),
-                    rs.getString("category"),
-                    rs.getInt("available_quantity")
-                };
-                tableModel.addRow(row);
+        String category = facetBar.getCategory();
+        int request = ++facetRequest;
+        if (category == null) {
+            // The unfiltered listing does not need the facets, so paint it straight away
+            pager.setIdFilter(null);
+            pager.reload();
+        }
+        DatabaseExecutor.submitLatest(this, "facets", conn ->
+            FacetIndex.getInstance(conn).select(null, category, true),
+        facets -> {
+            if (request != facetRequest) {
+                return;
+            }
+            facetBar.update(facets);
+            if (category != null) {
+                pager.setIdFilter(facets.getIds());
+                pager.reload();
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this,
                 "Error loading books: " + ex.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
     private void searchBooks() {
@@ -148,37 +246,43 @@ public class IssueBooksPanel extends JPanel {
             return;
         }
 
-        tableModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(
-                "SELECT book_id, title, author, category, available_quantity " +
-                "FROM books WHERE is_active = 1 AND available_quantity > 0 " +
-                "AND (title LIKE ? OR author LIKE ? OR category LIKE ?)"
-            );
-            String pattern = "%" + searchText + "%";
-            stmt.setString(1, pattern);
-            stmt.setString(2, pattern);
-            stmt.setString(3, pattern);
-            
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                Object[] row = {
-                    rs.getInt("book_id"),
-                    rs.getString("title"),
-                    rs.getString("author"),
-                    rs.getString("category"),
-                    rs.getInt("available_quantity")
-                };
-                tableModel.addRow(row);
-            }
-        } catch (SQLException ex) {
+        String category = facetBar.getCategory();
+        ++facetRequest;
+        pager.stop();
+        DatabaseExecutor.submitLatest(this, "books", conn -> {
+            // Rank matches first, narrow them with the facets, then load those books by primary key
+            int[] ranked = CatalogIndex.rank(conn, searchText, FacetIndex.MATCH_LIMIT);
+            FacetIndex.Result facets = FacetIndex.getInstance(conn)
+                .select(CompressedBitmap.of(ranked), category, true);
+            int[] ids = facets.keep(ranked, CatalogIndex.SEARCH_LIMIT);
+            return new SearchResult(
+                CatalogService.findByIds(conn, COLUMNS, CatalogService.Filter.AVAILABLE, ids), facets);
+        }, result -> {
+            facetBar.update(result.facets);
+            showBooks(result.books);
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this,
                 "Error searching books: " + ex.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
+        });
+    }
+
+    private Object[] toRow(Book book) {
+        return new Object[]{
+            book.getId(),
+            book.getTitle(),
+            book.getAuthor(),
+            book.getCategory(),
+            book.getAvailableQuantity()
+        };
+    }
+
+    private void showBooks(List<Book> books) {
+        tableModel.setRowCount(0);
+        for (Book book : books) {
+            tableModel.addRow(toRow(book));
         }
     }
 
@@ -202,124 +306,201 @@ public class IssueBooksPanel extends JPanel {
             return;
         }
 
+        int studentId;
         try {
-            int studentId = Integer.parseInt(studentIdText);
-            int bookId = (int) tableModel.getValueAt(selectedRow, 0);
-            
-            Connection conn = DatabaseConnection.getConnection();
-            conn.setAutoCommit(false);
-
-            try {
-                // Verify student exists and is active
-                PreparedStatement checkStudent = conn.prepareStatement(
-                    "SELECT is_active FROM users WHERE user_id = ? AND role = 'STUDENT'"
-                );
-                checkStudent.setInt(1, studentId);
-                ResultSet studentRs = checkStudent.executeQuery();
-
-                if (!studentRs.next()) {
-                    throw new Exception("Student ID not found");
-                }
-
-                if (!studentRs.getBoolean("is_active")) {
-                    throw new Exception("Student account is not active");
-                }
+            studentId = Integer.parseInt(studentIdText);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this,
+                "Invalid student ID format",
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        int bookId = (int) tableModel.getValueAt(selectedRow, 0);
 
-                // Check if student has any overdue books
-                PreparedStatement checkOverdue = conn.prepareStatement(
-                    "SELECT COUNT(*) FROM book_borrowings " +
-                    "WHERE user_id = ? AND status = 'BORROWED' AND due_date < CURRENT_DATE"
-                );
-                checkOverdue.setInt(1, studentId);
-                ResultSet overdueRs = checkOverdue.executeQuery();
-                overdueRs.next();
-                if (overdueRs.getInt(1) > 0) {
-                    throw new Exception("Student has overdue books");
-                }
+        DatabaseExecutor.submit(this, conn -> Circulation.issue(conn, studentId, bookId), result -> {
+            if (result != Circulation.IssueResult.ISSUED) {
+                JOptionPane.showMessageDialog(this,
+                    "Error issuing book: " + result.getMessage(),
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            JOptionPane.showMessageDialog(this,
+                "Book issued successfully",
+                "Success",
+                JOptionPane.INFORMATION_MESSAGE);
 
-                // Check if student already has this book
-                PreparedStatement checkBorrowed = conn.prepareStatement(
-                    "SELECT COUNT(*) FROM book_borrowings " +
-                    "WHERE user_id = ? AND book_id = ? AND status = 'BORROWED'"
-                );
-                checkBorrowed.setInt(1, studentId);
-                checkBorrowed.setInt(2, bookId);
-                ResultSet borrowedRs = checkBorrowed.executeQuery();
-                borrowedRs.next();
-                if (borrowedRs.getInt(1) > 0) {
-                    throw new Exception("Student already has this book");
-                }
+            loadBooks(); // Refresh the table
+            clearFields();
+        }, ex -> {
+            JOptionPane.showMessageDialog(this,
+                "Error issuing book: " + ex.getMessage(),
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+        });
+    }
 
-                // Update book quantity
-                PreparedStatement updateBook = conn.prepareStatement(
-                    "UPDATE books SET available_quantity = available_quantity - 1 " +
-                    "WHERE book_id = ? AND available_quantity > 0"
-                );
-                updateBook.setInt(1, bookId);
-                int updated = updateBook.executeUpdate();
-                if (updated == 0) {
-                    throw new Exception("Book not available");
-                }
+    private void addSelectedToCart() {
+        int selectedRow = booksTable.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(this,
+                "Please select a book to add",
+                "No Selection",
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        addToCart((int) tableModel.getValueAt(selectedRow, 0), (String) tableModel.getValueAt(selectedRow, 1));
+    }
 
-                // Create borrowing record
-                Calendar cal = Calendar.getInstance();
-                Date borrowDate = new Date();
-                cal.setTime(borrowDate);
-                cal.add(Calendar.DAY_OF_MONTH, 14); // 14 days borrowing period
-                Date dueDate = cal.getTime();
-
-                PreparedStatement insertBorrowing = conn.prepareStatement(
-                    "INSERT INTO book_borrowings (book_id, user_id, borrow_date, due_date, status) " +
-                    "VALUES (?, ?, ?, ?, 'BORROWED')"
-                );
-                insertBorrowing.setInt(1, bookId);
-                insertBorrowing.setInt(2, studentId);
-                insertBorrowing.setDate(3, new java.sql.Date(borrowDate.getTime()));
-                insertBorrowing.setDate(4, new java.sql.Date(dueDate.getTime()));
-                insertBorrowing.executeUpdate();
-
-                // Create notification
-                PreparedStatement insertNotification = conn.prepareStatement(
-                    "INSERT INTO notifications (user_id, message, is_read) " +
-                    "VALUES (?, ?, false)"
-                );
-                insertNotification.setInt(1, studentId);
-                insertNotification.setString(2, "Book '" + tableModel.getValueAt(selectedRow, 1) + 
-                    "' has been issued to you. Due date: " + new java.sql.Date(dueDate.getTime()));
-                insertNotification.executeUpdate();
-
-                conn.commit();
+    private void scanBook() {
+        String code = scanField.getText().trim();
+        if (code.isEmpty()) {
+            return;
+        }
+        int typedId;
+        if (Isbn.isValid(code)) {
+            typedId = -1;
+        } else {
+            try {
+                typedId = Integer.parseInt(code);
+            } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(this,
-                    "Book issued successfully",
-                    "Success",
-                    JOptionPane.INFORMATION_MESSAGE);
-
-                loadBooks(); // Refresh the table
-                clearFields();
+                    "Not a valid ISBN or book ID: " + code,
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+        }
+        DatabaseExecutor.submitRead(this, conn -> {
+            int bookId = typedId >= 0 ? typedId : IsbnIndex.getInstance(conn).find(code);
+            return bookId < 0 ? null : CatalogService.findById(conn, COLUMNS, bookId);
+        }, book -> {
+            if (book == null || !book.isActive()) {
+                JOptionPane.showMessageDialog(this,
+                    "No book found for " + code,
+                    "Not Found",
+                    JOptionPane.WARNING_MESSAGE);
+            } else if (book.getAvailableQuantity() <= 0) {
+                JOptionPane.showMessageDialog(this,
+                    "'" + book.getTitle() + "' is not available",
+                    "Not Available",
+                    JOptionPane.WARNING_MESSAGE);
+            } else {
+                addToCart(book.getId(), book.getTitle());
+                scanField.setText("");
+            }
+        }, ex -> {
+            JOptionPane.showMessageDialog(this,
+                "Error looking up book: " + ex.getMessage(),
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+        });
+    }
 
-            } catch (Exception ex) {
-                conn.rollback();
-                throw ex;
-            } finally {
-                conn.setAutoCommit(true);
+    private void addToCart(int bookId, String title) {
+        for (int i = 0; i < cartModel.size(); i++) {
+            if (cartModel.get(i).bookId == bookId) {
+                return;
             }
+        }
+        if (cartModel.size() >= Circulation.CART_LIMIT) {
+            JOptionPane.showMessageDialog(this,
+                "A checkout can hold at most " + Circulation.CART_LIMIT + " books",
+                "Cart Full",
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        cartModel.addElement(new CartItem(bookId, title));
+    }
 
+    private void checkout() {
+        String studentIdText = studentIdField.getText().trim();
+        if (cartModel.isEmpty()) {
+            JOptionPane.showMessageDialog(this,
+                "The cart is empty",
+                "No Selection",
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        if (studentIdText.isEmpty()) {
+            JOptionPane.showMessageDialog(this,
+                "Please enter a student ID",
+                "Missing Information",
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        int studentId;
+        try {
+            studentId = Integer.parseInt(studentIdText);
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this,
                 "Invalid student ID format",
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
-        } catch (Exception ex) {
+            return;
+        }
+        int[] bookIds = new int[cartModel.size()];
+        for (int i = 0; i < bookIds.length; i++) {
+            bookIds[i] = cartModel.get(i).bookId;
+        }
+
+        setCartEnabled(false);
+        DatabaseExecutor.submit(this, conn -> Circulation.checkout(conn, studentId, bookIds), result -> {
+            setCartEnabled(true);
+            if (result.getEligibility() != Circulation.IssueResult.ISSUED) {
+                JOptionPane.showMessageDialog(this,
+                    "Error issuing books: " + result.getEligibility().getMessage(),
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            // Issued books leave the cart; the rest stay, with the reason in the report
+            StringBuilder report = new StringBuilder();
+            report.append(result.getIssuedCount()).append(" of ").append(bookIds.length).append(" books issued");
+            for (int i = cartModel.size() - 1; i >= 0; i--) {
+                if (result.getItems().get(cartModel.get(i).bookId) == Circulation.IssueResult.ISSUED) {
+                    cartModel.remove(i);
+                }
+            }
+            for (int i = 0; i < cartModel.size(); i++) {
+                CartItem item = cartModel.get(i);
+                Circulation.IssueResult itemResult = result.getItems().get(item.bookId);
+                // A scan looked up before the checkout may still have landed in the cart since
+                if (itemResult != null) {
+                    report.append("\n").append(item).append(": ").append(itemResult.getMessage());
+                }
+            }
             JOptionPane.showMessageDialog(this,
-                "Error issuing book: " + ex.getMessage(),
+                report.toString(),
+                cartModel.isEmpty() ? "Success" : "Checkout",
+                cartModel.isEmpty() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+
+            loadBooks();
+            if (cartModel.isEmpty()) {
+                clearFields();
+            }
+        }, ex -> {
+            setCartEnabled(true);
+            JOptionPane.showMessageDialog(this,
+                "Error issuing books: " + ex.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
-        }
+        });
+    }
+
+    private void setCartEnabled(boolean enabled) {
+        scanField.setEnabled(enabled);
+        addToCartButton.setEnabled(enabled);
+        removeButton.setEnabled(enabled);
+        checkoutButton.setEnabled(enabled);
     }
 
     private void clearFields() {
         studentIdField.setText("");
         searchField.setText("");
+        scanField.setText("");
         booksTable.clearSelection();
     }
 }
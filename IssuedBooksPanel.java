@@ -5,6 +5,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class IssuedBooksPanel extends JPanel {
     private int userId;
@@ -91,9 +93,7 @@ public class IssuedBooksPanel extends JPanel {
     }
 
     private void loadIssuedBooks(DefaultTableModel model, String filter) {
-        model.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             String sql = "SELECT b.book_id, b.title, bb.user_id, u.full_name, " +
                         "bb.borrow_date, bb.due_date, bb.status " +
                         "FROM book_borrowings bb " +
@@ -111,8 +111,10 @@ public class IssuedBooksPanel extends JPanel {
             }
 
             ResultSet rs = stmt.executeQuery();
+
+            List<Object[]> rows = new ArrayList<>();
             while (rs.next()) {
-                Object[] row = {
+                rows.add(new Object[]{
                     rs.getInt("book_id"),
                     rs.getString("title"),
                     rs.getInt("user_id"),
@@ -120,22 +122,25 @@ public class IssuedBooksPanel extends JPanel {
                     rs.getDate("borrow_date"),
                     rs.getDate("due_date"),
                     rs.getString("status")
-                };
+                });
+            }
+            return rows;
+        }, rows -> {
+            model.setRowCount(0);
+            for (Object[] row : rows) {
                 model.addRow(row);
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this,
                 "Error loading issued books: " + ex.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
     private void searchIssuedBooks(DefaultTableModel model, String searchText, String filter) {
-        model.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             String sql = "SELECT b.book_id, b.title, bb.user_id, u.full_name, " +
                         "bb.borrow_date, bb.due_date, bb.status " +
                         "FROM book_borrowings bb " +
@@ -156,8 +161,10 @@ public class IssuedBooksPanel extends JPanel {
             }
 
             ResultSet rs = stmt.executeQuery();
+
+            List<Object[]> rows = new ArrayList<>();
             while (rs.next()) {
-                Object[] row = {
+                rows.add(new Object[]{
                     rs.getInt("book_id"),
                     rs.getString("title"),
                     rs.getInt("user_id"),
@@ -165,21 +172,25 @@ public class IssuedBooksPanel extends JPanel {
                     rs.getDate("borrow_date"),
                     rs.getDate("due_date"),
                     rs.getString("status")
-                };
+                });
+            }
+            return rows;
+        }, rows -> {
+            model.setRowCount(0);
+            for (Object[] row : rows) {
                 model.addRow(row);
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this,
                 "Error searching issued books: " + ex.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
     private void updateStatistics(JPanel statsPanel) {
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submitRead(this, conn -> {
             
             // Get total issued books
             PreparedStatement stmt = conn.prepareStatement(
@@ -190,10 +201,15 @@ public class IssuedBooksPanel extends JPanel {
             );
             
             ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                JLabel totalLabel = new JLabel("Total Issues: " + rs.getInt("total"));
-                JLabel currentLabel = new JLabel("Currently Issued: " + rs.getInt("current"));
-                JLabel overdueLabel = new JLabel("Overdue: " + rs.getInt("overdue"));
+            if (!rs.next()) {
+                return null;
+            }
+            return new int[]{rs.getInt("total"), rs.getInt("current"), rs.getInt("overdue")};
+        }, stats -> {
+            if (stats != null) {
+                JLabel totalLabel = new JLabel("Total Issues: " + stats[0]);
+                JLabel currentLabel = new JLabel("Currently Issued: " + stats[1]);
+                JLabel overdueLabel = new JLabel("Overdue: " + stats[2]);
                 
                 totalLabel.setForeground(isDarkMode ? Color.WHITE : Color.BLACK);
                 currentLabel.setForeground(isDarkMode ? Color.WHITE : Color.BLACK);
@@ -204,9 +220,8 @@ public class IssuedBooksPanel extends JPanel {
                 statsPanel.add(currentLabel);
                 statsPanel.add(Box.createHorizontalStrut(20));
                 statsPanel.add(overdueLabel);
+                statsPanel.revalidate();
             }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
+        }, Exception::printStackTrace);
     }
 }
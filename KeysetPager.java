@@ -0,0 +1,179 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fills a book table one page at a time, fetching the next page as the user scrolls.
+ *
+ * Pages are read through CatalogService.page with a book_id keyset cursor, so each page
+ * is one primary key range read however deep into the catalog it is, where OFFSET
+ * would skip over every earlier row again. Only the projection's columns are selected.
+ * With an ID filter set (a FacetIndex selection), the keyset walks the filter's IDs
+ * instead and each page is fetched by primary key.
+ *
+ * Pages are submitted with DatabaseExecutor.submitLatest under the panel's key, so a
+ * reload or a search supersedes a page still in flight. Call stop() before showing
+ * search results in the same table so scrolling them does not append listing pages.
+ */
+public class KeysetPager {
+
+    public static final int PAGE_SIZE = Integer.getInteger("library.catalog.pageSize", 200);
+
+    /** Turns a book into the table row the panel shows. */
+    public interface RowMapper {
+        Object[] toRow(Book book);
+    }
+
+    private final JComponent owner;
+    private final String key;
+    private final JTable table;
+    private final CatalogService.Projection projection;
+    private final CatalogService.Filter filter;
+    private final RowMapper mapper;
+    private final DatabaseExecutor.Callback<Exception> onError;
+    private boolean readOnly = false;
+    private boolean listening = false;
+    private CompressedBitmap idFilter;
+
+    private boolean active = false;
+    private boolean loading = false;
+    private boolean exhausted = false;
+    private int lastId = 0;
+
+    public KeysetPager(JComponent owner, String key, JTable table, CatalogService.Projection projection,
+                       CatalogService.Filter filter, RowMapper mapper,
+                       DatabaseExecutor.Callback<Exception> onError) {
+        this.owner = owner;
+        this.key = key;
+        this.table = table;
+        this.projection = projection;
+        this.filter = filter;
+        this.mapper = mapper;
+        this.onError = onError;
+    }
+
+    /** Reads pages from the replica if there is one; for reports that can be slightly stale. */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Lists only these book IDs from the next reload on, or every book for null. The
+     * bitmap must not be changed afterwards; FacetIndex results are snapshots.
+     */
+    public void setIdFilter(CompressedBitmap ids) {
+        this.idFilter = ids;
+    }
+
+    /** Replaces the table's rows with the first page. */
+    public void reload() {
+        listenForScrolling();
+        active = true;
+        exhausted = false;
+        fetch(0, true);
+    }
+
+    /** Stops appending pages until the next reload. */
+    public void stop() {
+        active = false;
+    }
+
+    private void loadMore() {
+        if (active && !loading && !exhausted) {
+            fetch(lastId, false);
+        }
+    }
+
+    private void fetch(int afterId, boolean replace) {
+        loading = true;
+        CompressedBitmap ids = idFilter;
+        DatabaseExecutor.Work<Page> work = conn -> ids == null ? page(conn, afterId) : page(conn, ids, afterId);
+        DatabaseExecutor.Callback<Page> onPage = page -> {
+            loading = false;
+            DefaultTableModel model = (DefaultTableModel) table.getModel();
+            if (replace) {
+                model.setRowCount(0);
+            }
+            for (Object[] row : page.rows) {
+                model.addRow(row);
+            }
+            lastId = page.lastId;
+            exhausted = !page.more;
+            // A short first page may not fill the view, leaving nothing to scroll
+            SwingUtilities.invokeLater(this::loadIfNearEnd);
+        };
+        DatabaseExecutor.Callback<Exception> onFailure = ex -> {
+            loading = false;
+            onError.accept(ex);
+        };
+        if (readOnly) {
+            DatabaseExecutor.submitLatestRead(owner, key, work, onPage, onFailure);
+        } else {
+            DatabaseExecutor.submitLatest(owner, key, work, onPage, onFailure);
+        }
+    }
+
+    private static class Page {
+        final List<Object[]> rows;
+        final int lastId;
+        final boolean more;
+
+        Page(List<Object[]> rows, int lastId, boolean more) {
+            this.rows = rows;
+            this.lastId = lastId;
+            this.more = more;
+        }
+    }
+
+    private Page page(Connection conn, int afterId) throws SQLException {
+        List<Book> books = CatalogService.page(conn, projection, filter, afterId, PAGE_SIZE);
+        int lastId = books.isEmpty() ? afterId : books.get(books.size() - 1).getId();
+        return new Page(toRows(books), lastId, books.size() == PAGE_SIZE);
+    }
+
+    private Page page(Connection conn, CompressedBitmap idFilter, int afterId) throws SQLException {
+        int[] ids = idFilter.next(afterId, PAGE_SIZE);
+        List<Book> books = CatalogService.findByIds(conn, projection, filter, ids);
+        // Walk on from the last ID asked for, even if that book has since gone
+        int lastId = ids.length == 0 ? afterId : ids[ids.length - 1];
+        return new Page(toRows(books), lastId, ids.length == PAGE_SIZE);
+    }
+
+    private List<Object[]> toRows(List<Book> books) {
+        List<Object[]> rows = new ArrayList<>(books.size());
+        for (Book book : books) {
+            rows.add(mapper.toRow(book));
+        }
+        return rows;
+    }
+
+    private void listenForScrolling() {
+        if (listening) {
+            return;
+        }
+        JScrollPane scrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, table);
+        if (scrollPane != null) {
+            scrollPane.getVerticalScrollBar().getModel().addChangeListener(e -> loadIfNearEnd());
+            listening = true;
+        }
+    }
+
+    // Fetches the next page once the view is within a screen of the last loaded row
+    private void loadIfNearEnd() {
+        JScrollPane scrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, table);
+        if (scrollPane == null) {
+            return;
+        }
+        BoundedRangeModel scroll = scrollPane.getVerticalScrollBar().getModel();
+        // A hidden tab or a table not laid out yet has no extent, and would load every page
+        if (!table.isShowing() || scroll.getExtent() == 0) {
+            return;
+        }
+        if (scroll.getValue() + 2 * scroll.getExtent() >= scroll.getMaximum()) {
+            loadMore();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram in microseconds with HdrHistogram-style log-linear buckets.
+ *
+ * Values are grouped by power of two and split into SUB_BUCKETS linear steps within
+ * each power, so any percentile is reported within about 3% of the true value from
+ * one microsecond up to more than a day, in a fixed 8 KB of counters.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAGNITUDES = 33;
+
+    private final AtomicLongArray counts = new AtomicLongArray(MAGNITUDES * SUB_BUCKETS);
+
+    public void record(long micros) {
+        counts.incrementAndGet(indexFor(Math.max(0, micros)));
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /** Upper bound of the bucket holding the given percentile (0-100), or 0 if empty. */
+    public long getValueAtPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return highestValueIn(i);
+            }
+        }
+        return highestValueIn(counts.length() - 1);
+    }
+
+    private static int indexFor(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // Shift so the top SUB_BUCKET_BITS + 1 bits remain; the shift picks the magnitude
+        int shift = 64 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS + 1);
+        if (shift + 1 >= MAGNITUDES) {
+            return MAGNITUDES * SUB_BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValueIn(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int magnitude = index / SUB_BUCKETS;
+        int subBucket = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (magnitude - 1)) - 1;
+    }
+}
@@ -1,9 +1,7 @@
 import javax.swing.*;
 import java.awt.*;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.SQLException;
 
 public class LibrarianDashboard extends JFrame {
     private int userId;
@@ -62,6 +60,7 @@ public class LibrarianDashboard extends JFrame {
             "Issue Books",
             "View Issued Books",
             "Return Books",
+            "Return Desk",
             "Student Records",
             "Notifications",
             "Toggle Theme",
@@ -104,6 +103,9 @@ public class LibrarianDashboard extends JFrame {
             case "Return Books":
                 showReturnBooks();
                 break;
+            case "Return Desk":
+                showReturnDesk();
+                break;
             case "Student Records":
                 showStudentRecords();
                 break;
@@ -161,19 +163,15 @@ public class LibrarianDashboard extends JFrame {
         welcomePanel.add(welcomeLabel, gbc);
 
         // Add librarian name if available
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(welcomePanel, conn -> {
+            Object[] info = new Object[2];
             PreparedStatement stmt = conn.prepareStatement(
                 "SELECT full_name FROM users WHERE user_id = ?"
             );
             stmt.setInt(1, userId);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                JLabel nameLabel = new JLabel("Welcome, " + rs.getString("full_name"));
-                nameLabel.setFont(new Font("Segoe UI", Font.PLAIN, 18));
-                nameLabel.setForeground(isDarkMode ? Color.WHITE : Color.BLACK);
-                gbc.insets = new Insets(10, 10, 20, 10);
-                welcomePanel.add(nameLabel, gbc);
+                info[0] = rs.getString("full_name");
             }
 
             // Get some statistics
@@ -182,16 +180,30 @@ public class LibrarianDashboard extends JFrame {
             );
             rs = stmt.executeQuery();
             if (rs.next()) {
-                JLabel statsLabel = new JLabel("Total Books Currently Issued: " + rs.getInt(1));
+                info[1] = rs.getInt(1);
+            }
+            return info;
+        }, info -> {
+            if (info[0] != null) {
+                JLabel nameLabel = new JLabel("Welcome, " + info[0]);
+                nameLabel.setFont(new Font("Segoe UI", Font.PLAIN, 18));
+                nameLabel.setForeground(isDarkMode ? Color.WHITE : Color.BLACK);
+                gbc.insets = new Insets(10, 10, 20, 10);
+                welcomePanel.add(nameLabel, gbc);
+            }
+            if (info[1] != null) {
+                JLabel statsLabel = new JLabel("Total Books Currently Issued: " + info[1]);
                 statsLabel.setFont(new Font("Segoe UI", Font.PLAIN, 16));
                 statsLabel.setForeground(isDarkMode ? Color.WHITE : Color.BLACK);
                 gbc.insets = new Insets(20, 10, 10, 10);
                 welcomePanel.add(statsLabel, gbc);
             }
-        } catch (SQLException ex) {
+            welcomePanel.revalidate();
+            welcomePanel.repaint();
+        }, ex -> {
             ex.printStackTrace();
             showErrorMessage("Error loading statistics: " + ex.getMessage());
-        }
+        });
 
         contentPanel.add(welcomePanel);
         contentPanel.revalidate();
@@ -250,6 +262,19 @@ public class LibrarianDashboard extends JFrame {
         contentPanel.repaint();
     }
 
+    private void showReturnDesk() {
+        contentPanel.removeAll();
+        try {
+            ReturnDeskPanel returnDeskPanel = new ReturnDeskPanel(userId, isDarkMode);
+            contentPanel.add(returnDeskPanel);
+        } catch (Exception ex) {
+            showErrorMessage("Error loading return desk panel: " + ex.getMessage());
+            ex.printStackTrace();
+        }
+        contentPanel.revalidate();
+        contentPanel.repaint();
+    }
+
     private void showStudentRecords() {
         contentPanel.removeAll();
         try {
@@ -2,6 +2,8 @@ import javax.swing.*;
 import javax.swing.table.*;
 import java.awt.*;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class LibrarianManagementPanel extends JPanel {
     private JTable librarianTable;
@@ -112,14 +114,14 @@ public class LibrarianManagementPanel extends JPanel {
                 JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                Connection conn = DatabaseConnection.getConnection();
+            DatabaseExecutor.submit(this, conn -> {
                 PreparedStatement stmt = conn.prepareStatement(
                     "UPDATE users SET is_active = false WHERE user_id = ? AND role = 'LIBRARIAN'"
                 );
                 stmt.setInt(1, librarianId);
                 
-                int result = stmt.executeUpdate();
+                return stmt.executeUpdate();
+            }, result -> {
                 if (result > 0) {
                     JOptionPane.showMessageDialog(this, 
                         "Librarian " + username + " has been deactivated successfully",
@@ -127,13 +129,13 @@ public class LibrarianManagementPanel extends JPanel {
                         JOptionPane.INFORMATION_MESSAGE);
                     loadLibrarians();
                 }
-            } catch (SQLException ex) {
+            }, ex -> {
                 ex.printStackTrace();
                 JOptionPane.showMessageDialog(this, 
                     "Database error while deactivating librarian: " + ex.getMessage(),
                     "Error",
                     JOptionPane.ERROR_MESSAGE);
-            }
+            });
         }
     }
 
@@ -165,14 +167,14 @@ public class LibrarianManagementPanel extends JPanel {
                 JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                Connection conn = DatabaseConnection.getConnection();
+            DatabaseExecutor.submit(this, conn -> {
                 PreparedStatement stmt = conn.prepareStatement(
                     "UPDATE users SET is_active = true WHERE user_id = ? AND role = 'LIBRARIAN'"
                 );
                 stmt.setInt(1, librarianId);
                 
-                int result = stmt.executeUpdate();
+                return stmt.executeUpdate();
+            }, result -> {
                 if (result > 0) {
                     JOptionPane.showMessageDialog(this, 
                         "Librarian " + username + " has been reactivated successfully",
@@ -180,13 +182,13 @@ public class LibrarianManagementPanel extends JPanel {
                         JOptionPane.INFORMATION_MESSAGE);
                     loadLibrarians();
                 }
-            } catch (SQLException ex) {
+            }, ex -> {
                 ex.printStackTrace();
                 JOptionPane.showMessageDialog(this, 
                     "Database error while reactivating librarian: " + ex.getMessage(),
                     "Error",
                     JOptionPane.ERROR_MESSAGE);
-            }
+            });
         }
     }
 
@@ -217,24 +219,24 @@ public class LibrarianManagementPanel extends JPanel {
         JTextField emailField = new JTextField(20);
 
         // Load current values
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             PreparedStatement stmt = conn.prepareStatement(
                 "SELECT full_name, email FROM users WHERE user_id = ? AND role = 'LIBRARIAN'"
             );
             stmt.setInt(1, librarianId);
             ResultSet rs = stmt.executeQuery();
             
-            if (rs.next()) {
-                fullNameField.setText(rs.getString("full_name"));
-                emailField.setText(rs.getString("email"));
+            return rs.next() ? new String[]{rs.getString("full_name"), rs.getString("email")} : null;
+        }, current -> {
+            if (current != null) {
+                fullNameField.setText(current[0]);
+                emailField.setText(current[1]);
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(dialog, "Error loading librarian data: " + ex.getMessage());
             dialog.dispose();
-            return;
-        }
+        });
 
         formPanel.add(new JLabel("Full Name:"), gbc);
         gbc.gridx = 1;
@@ -252,26 +254,28 @@ public class LibrarianManagementPanel extends JPanel {
         JButton cancelButton = createStyledButton("Cancel");
 
         updateButton.addActionListener(e -> {
-            try {
-                Connection conn = DatabaseConnection.getConnection();
+            String fullName = fullNameField.getText().trim();
+            String email = emailField.getText().trim();
+            DatabaseExecutor.submit(formPanel, conn -> {
                 PreparedStatement stmt = conn.prepareStatement(
                     "UPDATE users SET full_name = ?, email = ? WHERE user_id = ? AND role = 'LIBRARIAN'"
                 );
                 
-                stmt.setString(1, fullNameField.getText().trim());
-                stmt.setString(2, emailField.getText().trim());
+                stmt.setString(1, fullName);
+                stmt.setString(2, email);
                 stmt.setInt(3, librarianId);
                 
-                int result = stmt.executeUpdate();
+                return stmt.executeUpdate();
+            }, result -> {
                 if (result > 0) {
                     JOptionPane.showMessageDialog(dialog, "Librarian updated successfully");
                     loadLibrarians();
                     dialog.dispose();
                 }
-            } catch (SQLException ex) {
+            }, ex -> {
                 ex.printStackTrace();
                 JOptionPane.showMessageDialog(dialog, "Error updating librarian: " + ex.getMessage());
-            }
+            });
         });
 
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -331,28 +335,32 @@ public class LibrarianManagementPanel extends JPanel {
         JButton cancelButton = createStyledButton("Cancel");
 
         addButton.addActionListener(e -> {
-            try {
-                Connection conn = DatabaseConnection.getConnection();
+            String username = usernameField.getText().trim();
+            String password = new String(passwordField.getPassword());
+            String fullName = fullNameField.getText().trim();
+            String email = emailField.getText().trim();
+            DatabaseExecutor.submit(formPanel, conn -> {
                 PreparedStatement stmt = conn.prepareStatement(
                     "INSERT INTO users (username, password, full_name, email, role, is_active) " +
                     "VALUES (?, ?, ?, ?, 'LIBRARIAN', true)"
                 );
                 
-                stmt.setString(1, usernameField.getText().trim());
-                stmt.setString(2, new String(passwordField.getPassword()));
-                stmt.setString(3, fullNameField.getText().trim());
-                stmt.setString(4, emailField.getText().trim());
+                stmt.setString(1, username);
+                stmt.setString(2, password);
+                stmt.setString(3, fullName);
+                stmt.setString(4, email);
                 
-                int result = stmt.executeUpdate();
+                return stmt.executeUpdate();
+            }, result -> {
                 if (result > 0) {
                     JOptionPane.showMessageDialog(dialog, "Librarian added successfully");
                     loadLibrarians();
                     dialog.dispose();
                 }
-            } catch (SQLException ex) {
+            }, ex -> {
                 ex.printStackTrace();
                 JOptionPane.showMessageDialog(dialog, "Error adding librarian: " + ex.getMessage());
-            }
+            });
         });
 
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -368,28 +376,33 @@ public class LibrarianManagementPanel extends JPanel {
     }
 
     private void loadLibrarians() {
-        tableModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             PreparedStatement stmt = conn.prepareStatement(
                 "SELECT user_id, username, full_name, email, is_active " +
                 "FROM users WHERE role = 'LIBRARIAN' ORDER BY user_id"
             );
             
             ResultSet rs = stmt.executeQuery();
+
+            List<Object[]> rows = new ArrayList<>();
             while (rs.next()) {
-                Object[] row = {
+                rows.add(new Object[]{
                     rs.getInt("user_id"),
                     rs.getString("username"),
                     rs.getString("full_name"),
                     rs.getString("email"),
                     rs.getBoolean("is_active") ? "Active" : "Inactive"
-                };
+                });
+            }
+            return rows;
+        }, rows -> {
+            tableModel.setRowCount(0);
+            for (Object[] row : rows) {
                 tableModel.addRow(row);
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error loading librarians: " + ex.getMessage());
-        }
+        });
     }
 }
\ No newline at end of file
@@ -140,8 +140,7 @@ public class LoginScreen extends JFrame {
             return;
         }
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(getRootPane(), conn -> {
             String query = "SELECT * FROM users WHERE username = ? AND password = ? AND role = ? AND is_active = true";
             PreparedStatement pstmt = conn.prepareStatement(query);
             pstmt.setString(1, username);
@@ -149,17 +148,18 @@ public class LoginScreen extends JFrame {
             pstmt.setString(3, role.toUpperCase());
 
             ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                int userId = rs.getInt("user_id");
+            return rs.next() ? rs.getInt("user_id") : null;
+        }, userId -> {
+            if (userId != null) {
                 showSuccess("Login successful!");
                 openDashboard(userId, role);
             } else {
                 showError("Invalid credentials or account not activated!");
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             showError("Database error occurred: " + ex.getMessage());
-        }
+        });
     }
 
     private void openSignUpScreen() {
@@ -6,6 +6,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
 
 public class NotificationPanel extends JPanel {
     private int userId;
@@ -85,9 +87,7 @@ public class NotificationPanel extends JPanel {
     }
 
     private void loadNotifications() {
-        tableModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             PreparedStatement stmt = conn.prepareStatement(
                 "SELECT created_at, message, is_read " +
                 "FROM notifications " +
@@ -97,25 +97,29 @@ public class NotificationPanel extends JPanel {
             stmt.setInt(1, userId);
             ResultSet rs = stmt.executeQuery();
 
+            List<Object[]> rows = new ArrayList<>();
             while (rs.next()) {
-                Object[] row = {
+                rows.add(new Object[]{
                     dateFormat.format(rs.getTimestamp("created_at")),
                     rs.getString("message"),
                     rs.getBoolean("is_read") ? "READ" : "UNREAD"
-                };
+                });
+            }
+            return rows;
+        }, rows -> {
+            tableModel.setRowCount(0);
+            for (Object[] row : rows) {
                 tableModel.addRow(row);
             }
-
             // Update unread count
             updateUnreadCount();
-
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this,
                 "Error loading notifications: " + ex.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
     private void markAsRead() {
@@ -128,29 +132,31 @@ public class NotificationPanel extends JPanel {
             return;
         }
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        String createdAt = tableModel.getValueAt(selectedRow, 0).toString();
+        String message = tableModel.getValueAt(selectedRow, 1).toString();
+        DatabaseExecutor.submit(this, conn -> {
             PreparedStatement stmt = conn.prepareStatement(
                 "UPDATE notifications SET is_read = true " +
                 "WHERE user_id = ? AND created_at = ? AND message = ?"
             );
             stmt.setInt(1, userId);
-            stmt.setTimestamp(2, java.sql.Timestamp.valueOf(tableModel.getValueAt(selectedRow, 0).toString()));
-            stmt.setString(3, tableModel.getValueAt(selectedRow, 1).toString());
+            stmt.setTimestamp(2, java.sql.Timestamp.valueOf(createdAt));
+            stmt.setString(3, message);
             
-            int updated = stmt.executeUpdate();
-            if (updated > 0) {
-                tableModel.setValueAt("READ", selectedRow, 2);
+            return stmt.executeUpdate();
+        }, updated -> {
+            int row = findRow(createdAt, message);
+            if (updated > 0 && row != -1) {
+                tableModel.setValueAt("READ", row, 2);
                 updateUnreadCount();
             }
-
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this,
                 "Error marking notification as read: " + ex.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
     private void deleteNotification() {
@@ -169,35 +175,46 @@ public class NotificationPanel extends JPanel {
             JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                Connection conn = DatabaseConnection.getConnection();
+            String createdAt = tableModel.getValueAt(selectedRow, 0).toString();
+            String message = tableModel.getValueAt(selectedRow, 1).toString();
+            DatabaseExecutor.submit(this, conn -> {
                 PreparedStatement stmt = conn.prepareStatement(
                     "DELETE FROM notifications " +
                     "WHERE user_id = ? AND created_at = ? AND message = ?"
                 );
                 stmt.setInt(1, userId);
-                stmt.setTimestamp(2, java.sql.Timestamp.valueOf(tableModel.getValueAt(selectedRow, 0).toString()));
-                stmt.setString(3, tableModel.getValueAt(selectedRow, 1).toString());
+                stmt.setTimestamp(2, java.sql.Timestamp.valueOf(createdAt));
+                stmt.setString(3, message);
                 
-                int deleted = stmt.executeUpdate();
-                if (deleted > 0) {
-                    tableModel.removeRow(selectedRow);
+                return stmt.executeUpdate();
+            }, deleted -> {
+                int row = findRow(createdAt, message);
+                if (deleted > 0 && row != -1) {
+                    tableModel.removeRow(row);
                     updateUnreadCount();
                 }
-
-            } catch (SQLException ex) {
+            }, ex -> {
                 ex.printStackTrace();
                 JOptionPane.showMessageDialog(this,
                     "Error deleting notification: " + ex.getMessage(),
                     "Error",
                     JOptionPane.ERROR_MESSAGE);
+            });
+        }
+    }
+
+    private int findRow(String createdAt, String message) {
+        for (int i = 0; i < tableModel.getRowCount(); i++) {
+            if (createdAt.equals(tableModel.getValueAt(i, 0).toString()) &&
+                message.equals(tableModel.getValueAt(i, 1).toString())) {
+                return i;
             }
         }
+        return -1;
     }
 
     private void updateUnreadCount() {
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             PreparedStatement stmt = conn.prepareStatement(
                 "SELECT COUNT(*) FROM notifications " +
                 "WHERE user_id = ? AND is_read = false"
@@ -205,17 +222,15 @@ public class NotificationPanel extends JPanel {
             stmt.setInt(1, userId);
             ResultSet rs = stmt.executeQuery();
 
-            if (rs.next()) {
-                int unreadCount = rs.getInt(1);
+            return rs.next() ? rs.getInt(1) : null;
+        }, unreadCount -> {
+            if (unreadCount != null) {
                 if (unreadCount > 0) {
                     ((JLabel)getComponent(0)).setText("Notifications (" + unreadCount + " unread)");
                 } else {
                     ((JLabel)getComponent(0)).setText("Notifications");
                 }
             }
-
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
+        }, Exception::printStackTrace);
     }
 }
\ No newline at end of file
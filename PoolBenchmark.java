@@ -0,0 +1,221 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares borrow/return throughput through the connection pool against the single
+ * shared connection DatabaseConnection used to hand every panel.
+ *
+ * Run against a scratch database: java PoolBenchmark [desks]. Each of the desks (8 by
+ * default) is a thread that borrows a random book for a random student and returns it
+ * again, each in its own transaction, for library.bench.seconds (20) per variant:
+ * - singleton: every desk shares one connection. A transaction holds it from
+ *   setAutoCommit(false) to commit, as it must to keep the desks' transactions apart;
+ * - pool: every transaction borrows its own connection from the pool and closes it.
+ * Size the pool with -Dlibrary.db.pool.max (10); fewer connections than desks makes
+ * desks wait for one. Students and books are scratch rows that are deleted afterwards
+ * unless -Dlibrary.bench.keep=true is set.
+ */
+public class PoolBenchmark {
+
+    private static final int STUDENTS = 1_000;
+    private static final int BOOKS = 200;
+    private static final int SECONDS = Integer.getInteger("library.bench.seconds", 20);
+    private static final String USER_PREFIX = "bench_pool_";
+    private static final String ISBN_PREFIX = "POOL";
+
+    private interface Desk {
+        /** Runs the work in one transaction on whatever connection the variant hands out. */
+        void inTransaction(Work work) throws SQLException;
+    }
+
+    private interface Work {
+        void run(Connection conn) throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int desks = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                System.exit(2);
+            }
+            try {
+                seed(conn);
+                int[] students = ids(conn, "SELECT user_id FROM users WHERE username LIKE '" + USER_PREFIX + "%'");
+                int[] books = ids(conn, "SELECT book_id FROM books WHERE isbn LIKE '" + ISBN_PREFIX + "%'");
+
+                System.out.printf("%d desks, %d s per variant, pool max %d, %,d students, %d books%n%n",
+                    desks, SECONDS, Integer.getInteger("library.db.pool.max", 10), students.length, books.length);
+                System.out.printf("%-10s %9s %10s %9s %9s %8s%n",
+                    "variant", "loans", "loans/s", "p50 ms", "p99 ms", "errors");
+
+                // The old singleton: one physical connection, one transaction on it at a time
+                try (Connection shared = DatabaseConnection.getConnection()) {
+                    run("singleton", work -> {
+                        synchronized (shared) {
+                            transaction(shared, work);
+                        }
+                    }, desks, students, books);
+                }
+                reset(conn);
+                run("pool", work -> {
+                    try (Connection own = DatabaseConnection.getConnection()) {
+                        if (own == null) {
+                            throw new SQLException("No database connection available");
+                        }
+                        transaction(own, work);
+                    }
+                }, desks, students, books);
+            } finally {
+                reset(conn);
+                if (!Boolean.getBoolean("library.bench.keep")) {
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.executeUpdate("DELETE FROM books WHERE isbn LIKE '" + ISBN_PREFIX + "%'");
+                        stmt.executeUpdate("DELETE FROM users WHERE username LIKE '" + USER_PREFIX + "%'");
+                    }
+                }
+            }
+        } finally {
+            DatabaseConnection.closeConnection();
+        }
+    }
+
+    private static void run(String label, Desk desk, int desks, int[] students, int[] books)
+            throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong loans = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + SECONDS * 1_000_000_000L;
+        List<Thread> threads = new ArrayList<>();
+        for (int d = 0; d < desks; d++) {
+            Random random = new Random(d);
+            Thread thread = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    int student = students[random.nextInt(students.length)];
+                    int book = books[random.nextInt(books.length)];
+                    long start = System.nanoTime();
+                    try {
+                        int[] loan = new int[1];
+                        desk.inTransaction(conn -> loan[0] = borrow(conn, student, book));
+                        if (loan[0] > 0) {
+                            desk.inTransaction(conn -> giveBack(conn, loan[0], book));
+                            loans.incrementAndGet();
+                        }
+                    } catch (SQLException e) {
+                        // Deadlocks, lock wait and pool timeouts count against the variant
+                        errors.incrementAndGet();
+                    }
+                    latency.record((System.nanoTime() - start) / 1000);
+                }
+            }, "desk-" + d);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.printf("%-10s %9d %10.1f %9.2f %9.2f %8d%n", label, loans.get(),
+            (double) loans.get() / SECONDS, latency.getValueAtPercentile(50) / 1000.0,
+            latency.getValueAtPercentile(99) / 1000.0, errors.get());
+    }
+
+    private static void transaction(Connection conn, Work work) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            work.run(conn);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    // Takes a copy and opens a loan, as BorrowBooksPanel does; returns the borrowing ID, or 0
+    private static int borrow(Connection conn, int studentId, int bookId) throws SQLException {
+        try (PreparedStatement take = conn.prepareStatement(
+                "UPDATE books SET available_quantity = available_quantity - 1 " +
+                "WHERE book_id = ? AND available_quantity > 0")) {
+            take.setInt(1, bookId);
+            if (take.executeUpdate() == 0) {
+                return 0;
+            }
+        }
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO book_borrowings (book_id, user_id, borrow_date, due_date, status) " +
+                "VALUES (?, ?, CURRENT_DATE, " + DatabaseConnection.getDialect().addDays("CURRENT_DATE", 14) +
+                ", 'BORROWED')", Statement.RETURN_GENERATED_KEYS)) {
+            insert.setInt(1, bookId);
+            insert.setInt(2, studentId);
+            insert.executeUpdate();
+            ResultSet keys = insert.getGeneratedKeys();
+            keys.next();
+            return keys.getInt(1);
+        }
+    }
+
+    // Closes the loan and puts the copy back, as ReturnBooksPanel does
+    private static void giveBack(Connection conn, int borrowingId, int bookId) throws SQLException {
+        try (PreparedStatement close = conn.prepareStatement(
+                "UPDATE book_borrowings SET status = 'RETURNED', return_date = CURRENT_DATE " +
+                "WHERE borrowing_id = ?")) {
+            close.setInt(1, borrowingId);
+            close.executeUpdate();
+        }
+        try (PreparedStatement restock = conn.prepareStatement(
+                "UPDATE books SET available_quantity = available_quantity + 1 WHERE book_id = ?")) {
+            restock.setInt(1, bookId);
+            restock.executeUpdate();
+        }
+    }
+
+    private static void seed(Connection conn) throws SQLException {
+        try (BatchWriter writer = new BatchWriter(conn,
+                "INSERT INTO users (username, password, full_name, email, role, is_active) " +
+                "VALUES (?, 'x', ?, ?, 'STUDENT', true)")) {
+            for (int i = 0; i < STUDENTS; i++) {
+                writer.add(USER_PREFIX + i, "Bench Student " + i, USER_PREFIX + i + "@bench.invalid");
+            }
+            writer.finish();
+        }
+        try (BatchWriter writer = new BatchWriter(conn,
+                "INSERT INTO books (title, author, isbn, category, quantity, available_quantity) " +
+                "VALUES (?, 'Bench', ?, 'Bench', 1000, 1000)")) {
+            for (int i = 0; i < BOOKS; i++) {
+                writer.add("Pool Bench Book " + i, String.format(ISBN_PREFIX + "%09d", i));
+            }
+            writer.finish();
+        }
+    }
+
+    private static void reset(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM book_borrowings WHERE user_id IN " +
+                "(SELECT user_id FROM users WHERE username LIKE '" + USER_PREFIX + "%')");
+            stmt.executeUpdate("UPDATE books SET available_quantity = quantity WHERE isbn LIKE '" + ISBN_PREFIX + "%'");
+        }
+    }
+
+    private static int[] ids(Connection conn, String sql) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Statement stmt = conn.createStatement()) {
+            ResultSet rs = stmt.executeQuery(sql);
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,172 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Radix (path-compressed) trie of phrases for autocomplete, matched case-insensitively.
+ *
+ * Each edge holds a run of characters rather than one, so a catalog of titles and
+ * authors needs roughly one node per phrase instead of one per character. Phrases are
+ * counted, so the same author added for several books stays until the last is removed.
+ * Completions come back in alphabetical order with the phrase's original casing.
+ */
+public class PrefixTrie {
+
+    private static class Node {
+        String label;
+        Node[] children = new Node[0];
+        String phrase;
+        int count;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node child(char first) {
+            int pos = find(first);
+            return pos >= 0 ? children[pos] : null;
+        }
+
+        // Children are kept sorted by first character for binary search and ordered output
+        int find(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char c = children[mid].label.charAt(0);
+                if (c < first) {
+                    low = mid + 1;
+                } else if (c > first) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        void addChild(Node node) {
+            int pos = -find(node.label.charAt(0)) - 1;
+            Node[] grown = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(grown, pos, grown, pos + 1, children.length - pos);
+            grown[pos] = node;
+            children = grown;
+        }
+
+        void replaceChild(Node old, Node node) {
+            children[find(old.label.charAt(0))] = node;
+        }
+    }
+
+    private final Node root = new Node("");
+
+    public synchronized void add(String phrase) {
+        if (phrase == null || phrase.trim().isEmpty()) {
+            return;
+        }
+        String key = normalize(phrase);
+        Node node = root;
+        int i = 0;
+        while (true) {
+            Node child = node.child(key.charAt(i));
+            if (child == null) {
+                Node leaf = new Node(key.substring(i));
+                leaf.phrase = phrase.trim();
+                leaf.count = 1;
+                node.addChild(leaf);
+                return;
+            }
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                // Split the edge where the new key leaves it
+                Node split = new Node(child.label.substring(0, common));
+                node.replaceChild(child, split);
+                child.label = child.label.substring(common);
+                split.addChild(child);
+                child = split;
+            }
+            i += common;
+            if (i == key.length()) {
+                if (child.count++ == 0) {
+                    child.phrase = phrase.trim();
+                }
+                return;
+            }
+            node = child;
+        }
+    }
+
+    public synchronized void remove(String phrase) {
+        if (phrase == null || phrase.trim().isEmpty()) {
+            return;
+        }
+        Node node = locate(normalize(phrase), true);
+        if (node != null && node.count > 0 && --node.count == 0) {
+            node.phrase = null;
+        }
+    }
+
+    /** Up to limit phrases starting with prefix, alphabetically. */
+    public synchronized List<String> complete(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return result;
+        }
+        Node node = locate(normalize(prefix), false);
+        if (node != null) {
+            collect(node, result, limit);
+        }
+        return result;
+    }
+
+    // Finds the node for key; with exact false, also the node whose edge the key ends inside
+    private Node locate(String key, boolean exact) {
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.child(key.charAt(i));
+            if (child == null) {
+                return null;
+            }
+            int common = commonPrefix(child.label, key, i);
+            if (common == child.label.length()) {
+                i += common;
+                node = child;
+            } else if (!exact && i + common == key.length()) {
+                return child;
+            } else {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private static void collect(Node node, List<String> result, int limit) {
+        if (result.size() >= limit) {
+            return;
+        }
+        if (node.phrase != null) {
+            result.add(node.phrase);
+        }
+        for (Node child : node.children) {
+            collect(child, result, limit);
+            if (result.size() >= limit) {
+                return;
+            }
+        }
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int n = 0;
+        while (n < max && label.charAt(n) == key.charAt(offset + n)) {
+            n++;
+        }
+        return n;
+    }
+
+    private static String normalize(String phrase) {
+        return phrase.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Per-statement execution statistics collected by the connection pool's statement wrappers.
+ *
+ * Statements are grouped by fingerprint: the SQL with literals replaced by ? and
+ * whitespace collapsed, so the same query built with different values lands in one
+ * entry. Executions slower than the slow query threshold are printed with their bind
+ * parameter types only; bind values never reach the log.
+ */
+public class QueryMetrics {
+
+    public static class Stats {
+        private final String fingerprint;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalMicros = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        Stats(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        public String getFingerprint() { return fingerprint; }
+        public long getCalls() { return calls.sum(); }
+        public long getRows() { return rows.sum(); }
+        public long getTotalMicros() { return totalMicros.sum(); }
+        public long getP50Micros() { return latency.getValueAtPercentile(50); }
+        public long getP95Micros() { return latency.getValueAtPercentile(95); }
+        public long getP99Micros() { return latency.getValueAtPercentile(99); }
+
+        public void addRows(long count) {
+            rows.add(count);
+        }
+    }
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int MAX_CACHED_FINGERPRINTS = 1000;
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+    private final long slowQueryMicros;
+
+    public QueryMetrics(long slowQueryMs) {
+        this.slowQueryMicros = slowQueryMs * 1000;
+    }
+
+    /**
+     * Records one execution and returns its stats entry so rows read later from the
+     * ResultSet can be added to it.
+     */
+    public Stats record(String sql, long elapsedNanos, long rows, List<String> bindTypes) {
+        Stats entry = stats.computeIfAbsent(fingerprint(sql), Stats::new);
+        long micros = elapsedNanos / 1000;
+        entry.calls.increment();
+        entry.totalMicros.add(micros);
+        entry.latency.record(micros);
+        if (rows > 0) {
+            entry.rows.add(rows);
+        }
+        if (micros >= slowQueryMicros) {
+            System.err.println("Slow query (" + (micros / 1000) + " ms): " + entry.fingerprint +
+                               " binds=" + bindTypes);
+        }
+        return entry;
+    }
+
+    /** All statements seen so far, slowest total time first. */
+    public List<Stats> getStats() {
+        List<Stats> result = new ArrayList<>(stats.values());
+        result.sort((a, b) -> Long.compare(b.getTotalMicros(), a.getTotalMicros()));
+        return result;
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%8s %10s %9s %9s %9s  %s%n", "calls", "rows", "p50 ms", "p95 ms", "p99 ms", "statement"));
+        for (Stats s : getStats()) {
+            sb.append(String.format("%8d %10d %9.1f %9.1f %9.1f  %s%n",
+                s.getCalls(), s.getRows(),
+                s.getP50Micros() / 1000.0, s.getP95Micros() / 1000.0, s.getP99Micros() / 1000.0,
+                s.getFingerprint()));
+        }
+        return sb.toString();
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    private String fingerprint(String sql) {
+        if (sql == null) {
+            return "<unknown>";
+        }
+        // The panels issue a fixed set of SQL strings, so each is normalized once
+        String cached = fingerprints.get(sql);
+        if (cached != null) {
+            return cached;
+        }
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+        if (fingerprints.size() < MAX_CACHED_FINGERPRINTS) {
+            fingerprints.put(sql, normalized);
+        }
+        return normalized;
+    }
+}
@@ -2,6 +2,8 @@ import javax.swing.*;
 import javax.swing.table.*;
 import java.awt.*;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ReissueBooksPanel extends JPanel {
     private JTable borrowedBooksTable;
@@ -58,9 +60,7 @@ public class ReissueBooksPanel extends JPanel {
     }
 
     private void loadBorrowedBooks() {
-        tableModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             PreparedStatement stmt = conn.prepareStatement(
                 "SELECT bb.borrowing_id, b.title, bb.borrow_date, bb.due_date, bb.status " +
                 "FROM book_borrowings bb " +
@@ -71,20 +71,27 @@ public class ReissueBooksPanel extends JPanel {
             stmt.setInt(1, userId);
             
             ResultSet rs = stmt.executeQuery();
+
+            List<Object[]> rows = new ArrayList<>();
             while (rs.next()) {
-                Object[] row = {
+                rows.add(new Object[]{
                     rs.getInt("borrowing_id"),
                     rs.getString("title"),
                     rs.getDate("borrow_date"),
                     rs.getDate("due_date"),
                     rs.getString("status")
-                };
+                });
+            }
+            return rows;
+        }, rows -> {
+            tableModel.setRowCount(0);
+            for (Object[] row : rows) {
                 tableModel.addRow(row);
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error loading borrowed books: " + ex.getMessage());
-        }
+        });
     }
 
     private void reissueBook() {
@@ -97,42 +104,44 @@ public class ReissueBooksPanel extends JPanel {
         int borrowingId = (int) tableModel.getValueAt(selectedRow, 0);
         String bookTitle = (String) tableModel.getValueAt(selectedRow, 1);
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             
             // Check if book has already been reissued
             PreparedStatement checkStmt = conn.prepareStatement(
                 "SELECT COUNT(*) FROM book_borrowings " +
-                "WHERE borrowing_id = ? AND due_date > DATE_ADD(borrow_date, INTERVAL 14 DAY)"
+                "WHERE borrowing_id = ? AND due_date > " + DatabaseConnection.getDialect().addDays("borrow_date", 14)
             );
             checkStmt.setInt(1, borrowingId);
             ResultSet rs = checkStmt.executeQuery();
             rs.next();
             if (rs.getInt(1) > 0) {
-                JOptionPane.showMessageDialog(this, 
-                    "This book has already been reissued once. Cannot reissue again.");
-                return;
+                return "This book has already been reissued once. Cannot reissue again.";
             }
 
             // Extend due date by 7 days
             PreparedStatement updateStmt = conn.prepareStatement(
-                "UPDATE book_borrowings SET due_date = DATE_ADD(due_date, INTERVAL 7 DAY) " +
+                "UPDATE book_borrowings SET due_date = " + DatabaseConnection.getDialect().addDays("due_date", 7) + " " +
                 "WHERE borrowing_id = ? AND status = 'BORROWED'"
             );
             updateStmt.setInt(1, borrowingId);
             
             int result = updateStmt.executeUpdate();
             if (result > 0) {
+                return null;
+            }
+            return "Failed to reissue book. Please try again.";
+        }, problem -> {
+            if (problem == null) {
                 JOptionPane.showMessageDialog(this, 
                     "Book '" + bookTitle + "' has been reissued successfully.\n" +
                     "Due date extended by 7 days.");
                 loadBorrowedBooks();
             } else {
-                JOptionPane.showMessageDialog(this, "Failed to reissue book. Please try again.");
+                JOptionPane.showMessageDialog(this, problem);
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error reissuing book: " + ex.getMessage());
-        }
+        });
     }
 }
@@ -3,12 +3,16 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.*;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 public class ReportsPanel extends JPanel {
     private JTabbedPane tabbedPane;
     private JTable booksTable, borrowingsTable, finesTable;
-    private DefaultTableModel booksModel, borrowingsModel, finesModel;
+    private CatalogTableModel booksModel;
+    private DefaultTableModel borrowingsModel, finesModel;
+    private JTextField booksSearchField;
     private JComboBox<String> reportTypeCombo;
     private JButton generateButton, exportButton;
 
@@ -50,10 +54,21 @@ public class ReportsPanel extends JPanel {
 
     private void createTables() {
         // Books table
+        // The whole catalog, held as a columnar snapshot rather than a row per book
         String[] bookColumns = {"Book ID", "ISBN", "Title", "Author", "Total Copies", "Available"};
-        booksModel = new DefaultTableModel(bookColumns, 0);
+        booksModel = new CatalogTableModel(bookColumns,
+            CatalogService.Column.ISBN, CatalogService.Column.TITLE, CatalogService.Column.AUTHOR,
+            CatalogService.Column.QUANTITY, CatalogService.Column.AVAILABLE_QUANTITY);
         booksTable = new JTable(booksModel);
-        tabbedPane.addTab("Books", new JScrollPane(booksTable));
+        JPanel booksTab = new JPanel(new BorderLayout());
+        JPanel booksSearchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        booksSearchPanel.add(new JLabel("Find:"));
+        booksSearchField = new JTextField(25);
+        SearchAsYouType.install(booksSearchField, this::searchBooksReport, CatalogIndex::suggest);
+        booksSearchPanel.add(booksSearchField);
+        booksTab.add(booksSearchPanel, BorderLayout.NORTH);
+        booksTab.add(new JScrollPane(booksTable), BorderLayout.CENTER);
+        tabbedPane.addTab("Books", booksTab);
         
         // Borrowings table
         String[] borrowColumns = {"Borrowing ID", "Book Title", "Student Name", "Borrow Date", "Due Date", "Status"};
@@ -88,34 +103,34 @@ public class ReportsPanel extends JPanel {
     }
 
     private void loadBooksReport() {
-        booksModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            String query = "SELECT * FROM books WHERE is_active = true";
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(query);
-            
-            while (rs.next()) {
-                Object[] row = {
-                    rs.getInt("book_id"),
-                    rs.getString("isbn"),
-                    rs.getString("title"),
-                    rs.getString("author"),
-                    rs.getInt("quantity"),
-                    rs.getInt("available_quantity")
-                };
-                booksModel.addRow(row);
+        DatabaseExecutor.submitLatestRead(this, "books", CatalogSnapshot::load, snapshot -> {
+            booksModel.setSnapshot(snapshot);
+            if (!booksSearchField.getText().trim().isEmpty()) {
+                searchBooksReport();
             }
-        } catch (SQLException e) {
+        }, e -> {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error loading books report: " + e.getMessage());
+        });
+    }
+
+    private void searchBooksReport() {
+        String searchText = booksSearchField.getText().trim();
+        if (searchText.isEmpty()) {
+            booksModel.showAll();
+            return;
         }
+        // Rank in the index and show the matches from the snapshot already in memory
+        DatabaseExecutor.submitLatestRead(this, "booksSearch", conn ->
+            CatalogIndex.rank(conn, searchText, FacetIndex.MATCH_LIMIT),
+        booksModel::showOnly, e -> {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error searching books report: " + e.getMessage());
+        });
     }
 
     private void loadBorrowingsReport() {
-        borrowingsModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submitRead(this, conn -> {
             String query = "SELECT bb.borrow_id, b.title, u.full_name, " +
                           "bb.borrow_date, bb.due_date, bb.status " +
                           "FROM book_borrowings bb " +
@@ -124,28 +139,32 @@ public class ReportsPanel extends JPanel {
                           "ORDER BY bb.borrow_date DESC";
             Statement stmt = conn.createStatement();
             ResultSet rs = stmt.executeQuery(query);
-            
+
+            List<Object[]> rows = new ArrayList<>();
             while (rs.next()) {
-                Object[] row = {
+                rows.add(new Object[]{
                     rs.getInt("borrow_id"),
                     rs.getString("title"),
                     rs.getString("full_name"),
                     rs.getDate("borrow_date"),
                     rs.getDate("due_date"),
                     rs.getString("status")
-                };
+                });
+            }
+            return rows;
+        }, rows -> {
+            borrowingsModel.setRowCount(0);
+            for (Object[] row : rows) {
                 borrowingsModel.addRow(row);
             }
-        } catch (SQLException e) {
+        }, e -> {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error loading borrowings report: " + e.getMessage());
-        }
+        });
     }
 
     private void loadFinesReport() {
-        finesModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submitRead(this, conn -> {
             String query = "SELECT f.fine_id, u.full_name, b.title, " +
                           "f.amount, f.status, f.created_at " +
                           "FROM fines f " +
@@ -155,22 +174,28 @@ public class ReportsPanel extends JPanel {
                           "ORDER BY f.created_at DESC";
             Statement stmt = conn.createStatement();
             ResultSet rs = stmt.executeQuery(query);
-            
+
+            List<Object[]> rows = new ArrayList<>();
             while (rs.next()) {
-                Object[] row = {
+                rows.add(new Object[]{
                     rs.getInt("fine_id"),
                     rs.getString("full_name"),
                     rs.getString("title"),
                     String.format("$%.2f", rs.getDouble("amount")),
                     rs.getString("status"),
                     rs.getTimestamp("created_at")
-                };
+                });
+            }
+            return rows;
+        }, rows -> {
+            finesModel.setRowCount(0);
+            for (Object[] row : rows) {
                 finesModel.addRow(row);
             }
-        } catch (SQLException e) {
+        }, e -> {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error loading fines report: " + e.getMessage());
-        }
+        });
     }
 
     private void exportToExcel() {
@@ -2,10 +2,21 @@ import javax.swing.*;
 import javax.swing.table.*;
 import java.awt.*;
 import java.sql.*;
+import java.text.SimpleDateFormat;
+import java.util.List;
 
 public class RequestBooksPanel extends JPanel {
+    private static final CatalogService.Projection COLUMNS = CatalogService.Projection.of(
+        CatalogService.Column.TITLE, CatalogService.Column.AUTHOR, CatalogService.Column.CATEGORY,
+        CatalogService.Column.AVAILABLE_QUANTITY);
+    private static final String NOT_AVAILABLE = "Book is not available for borrowing.";
+
     private JTable booksTable;
     private DefaultTableModel tableModel;
+    private JTable holdsTable;
+    private DefaultTableModel holdsModel;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    private KeysetPager pager;
     private int userId;
     private JTextField searchField;
 
@@ -15,6 +26,7 @@ public class RequestBooksPanel extends JPanel {
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         initializeComponents();
         loadAvailableBooks();
+        loadHolds();
     }
 
     private void initializeComponents() {
@@ -38,6 +50,11 @@ public class RequestBooksPanel extends JPanel {
         booksTable = new JTable(tableModel);
         booksTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         JScrollPane scrollPane = new JScrollPane(booksTable);
+        pager = new KeysetPager(this, "books", booksTable, COLUMNS, CatalogService.Filter.ACTIVE,
+            this::toRow, ex -> {
+                ex.printStackTrace();
+                JOptionPane.showMessageDialog(this, "Error loading books: " + ex.getMessage());
+            });
 
         // Create buttons panel
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
@@ -46,15 +63,47 @@ public class RequestBooksPanel extends JPanel {
         buttonPanel.add(requestButton);
         buttonPanel.add(refreshButton);
 
+        // Create holds panel
+        String[] holdColumns = {"Hold ID", "Title", "Status", "Queue Position / Pick Up By"};
+        holdsModel = new DefaultTableModel(holdColumns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        holdsTable = new JTable(holdsModel);
+        holdsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        JScrollPane holdsScroll = new JScrollPane(holdsTable);
+        holdsScroll.setPreferredSize(new Dimension(0, 120));
+        JPanel holdButtonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton pickUpButton = createStyledButton("Pick Up");
+        JButton cancelHoldButton = createStyledButton("Cancel Hold");
+        holdButtonPanel.add(pickUpButton);
+        holdButtonPanel.add(cancelHoldButton);
+        JPanel holdsPanel = new JPanel(new BorderLayout());
+        holdsPanel.setBorder(BorderFactory.createTitledBorder("My Holds"));
+        holdsPanel.add(holdsScroll, BorderLayout.CENTER);
+        holdsPanel.add(holdButtonPanel, BorderLayout.SOUTH);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(buttonPanel, BorderLayout.NORTH);
+        southPanel.add(holdsPanel, BorderLayout.CENTER);
+
         // Add components
         add(searchPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
-        add(buttonPanel, BorderLayout.SOUTH);
+        add(southPanel, BorderLayout.SOUTH);
 
         // Add listeners
         searchButton.addActionListener(e -> searchBooks());
+        SearchAsYouType.install(searchField, this::searchBooks, CatalogIndex::suggest);
         requestButton.addActionListener(e -> requestBook());
-        refreshButton.addActionListener(e -> loadAvailableBooks());
+        refreshButton.addActionListener(e -> {
+            loadAvailableBooks();
+            loadHolds();
+        });
+        pickUpButton.addActionListener(e -> pickUpHold());
+        cancelHoldButton.addActionListener(e -> cancelHold());
     }
 
     private JButton createStyledButton(String text) {
@@ -69,66 +118,45 @@ public class RequestBooksPanel extends JPanel {
     }
 
     private void loadAvailableBooks() {
-        tableModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(
-                "SELECT book_id, title, author, category, " +
-                "CASE WHEN available_quantity > 0 THEN 'Available' ELSE 'Not Available' END as status " +
-                "FROM books " +
-                "WHERE is_active = true"
-            );
-            
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                Object[] row = {
-                    rs.getInt("book_id"),
-                    rs.getString("title"),
-                    rs.getString("author"),
-                    rs.getString("category"),
-                    rs.getString("status")
-                };
-                tableModel.addRow(row);
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error loading books: " + ex.getMessage());
-        }
+        pager.reload();
     }
 
     private void searchBooks() {
         String searchTerm = searchField.getText().trim();
-        tableModel.setRowCount(0);
-        
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(
-                "SELECT book_id, title, author, category, " +
-                "CASE WHEN available_quantity > 0 THEN 'Available' ELSE 'Not Available' END as status " +
-                "FROM books " +
-                "WHERE is_active = true AND " +
-                "(title LIKE ? OR author LIKE ? OR category LIKE ?)"
-            );
-            
-            String searchPattern = "%" + searchTerm + "%";
-            stmt.setString(1, searchPattern);
-            stmt.setString(2, searchPattern);
-            stmt.setString(3, searchPattern);
-            
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                Object[] row = {
-                    rs.getInt("book_id"),
-                    rs.getString("title"),
-                    rs.getString("author"),
-                    rs.getString("category"),
-                    rs.getString("status")
-                };
-                tableModel.addRow(row);
-            }
-        } catch (SQLException ex) {
+        if (searchTerm.isEmpty()) {
+            loadAvailableBooks();
+            return;
+        }
+
+        pager.stop();
+        List<Book> cached = CatalogService.cachedSearch(COLUMNS, CatalogService.Filter.ACTIVE, searchTerm);
+        if (cached != null) {
+            DatabaseExecutor.cancelLatest(this, "books");
+            showBooks(cached);
+            return;
+        }
+        DatabaseExecutor.submitLatest(this, "books", conn ->
+            CatalogService.search(conn, COLUMNS, CatalogService.Filter.ACTIVE, searchTerm),
+        this::showBooks, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error searching books: " + ex.getMessage());
+        });
+    }
+
+    private Object[] toRow(Book book) {
+        return new Object[]{
+            book.getId(),
+            book.getTitle(),
+            book.getAuthor(),
+            book.getCategory(),
+            book.getAvailableQuantity() > 0 ? "Available" : "Not Available"
+        };
+    }
+
+    private void showBooks(List<Book> books) {
+        tableModel.setRowCount(0);
+        for (Book book : books) {
+            tableModel.addRow(toRow(book));
         }
     }
 
@@ -142,9 +170,7 @@ public class RequestBooksPanel extends JPanel {
         int bookId = (int) tableModel.getValueAt(selectedRow, 0);
         String bookTitle = (String) tableModel.getValueAt(selectedRow, 1);
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            
+        DatabaseExecutor.submit(this, conn -> {
             // Check if user already has a pending request for this book
             PreparedStatement checkRequestStmt = conn.prepareStatement(
                 "SELECT COUNT(*) FROM book_borrowings WHERE user_id = ? AND book_id = ? AND status = 'BORROWED'"
@@ -154,37 +180,29 @@ public class RequestBooksPanel extends JPanel {
             ResultSet requestRs = checkRequestStmt.executeQuery();
             requestRs.next();
             if (requestRs.getInt(1) > 0) {
-                JOptionPane.showMessageDialog(this, "You already have this book borrowed");
-                return;
+                return "You already have this book borrowed";
             }
 
             // Insert borrowing request
             PreparedStatement insertStmt = conn.prepareStatement(
                 "INSERT INTO book_borrowings (book_id, user_id, borrow_date, due_date, status) " +
-                "VALUES (?, ?, CURRENT_DATE, DATE_ADD(CURRENT_DATE, INTERVAL 14 DAY), 'BORROWED')"
+                "VALUES (?, ?, CURRENT_DATE, " + DatabaseConnection.getDialect().addDays("CURRENT_DATE", 14) + ", 'BORROWED')"
             );
             insertStmt.setInt(1, bookId);
             insertStmt.setInt(2, userId);
-            
-            // Update book available quantity
-            PreparedStatement updateBookStmt = conn.prepareStatement(
-                "UPDATE books SET available_quantity = available_quantity - 1 " +
-                "WHERE book_id = ? AND available_quantity > 0"
-            );
-            updateBookStmt.setInt(1, bookId);
 
             conn.setAutoCommit(false);
             try {
-                int updateResult = updateBookStmt.executeUpdate();
-                if (updateResult > 0) {
+                // Take a copy off the shelf
+                if (Inventory.take(conn, bookId)) {
                     insertStmt.executeUpdate();
                     conn.commit();
-                    JOptionPane.showMessageDialog(this, 
-                        "Book borrowed successfully.\nDue date is in 14 days.");
-                    loadAvailableBooks(); // Refresh the table
+                    FacetIndex.availabilityChanged(bookId, -1);
+                    SearchCache.getInstance().availabilityChanged(bookId, -1);
+                    return null;
                 } else {
                     conn.rollback();
-                    JOptionPane.showMessageDialog(this, "Book is not available for borrowing.");
+                    return NOT_AVAILABLE;
                 }
             } catch (SQLException ex) {
                 conn.rollback();
@@ -192,9 +210,102 @@ public class RequestBooksPanel extends JPanel {
             } finally {
                 conn.setAutoCommit(true);
             }
-        } catch (SQLException ex) {
+        }, problem -> {
+            if (problem == null) {
+                JOptionPane.showMessageDialog(this, 
+                    "Book borrowed successfully.\nDue date is in 14 days.");
+                loadAvailableBooks(); // Refresh the table
+            } else if (NOT_AVAILABLE.equals(problem)) {
+                int choice = JOptionPane.showConfirmDialog(this,
+                    "'" + bookTitle + "' has no copy on the shelf.\n" +
+                    "Place a hold? You will be notified when a copy is ready to pick up.",
+                    "Place Hold", JOptionPane.YES_NO_OPTION);
+                if (choice == JOptionPane.YES_OPTION) {
+                    placeHold(bookId);
+                }
+            } else {
+                JOptionPane.showMessageDialog(this, problem);
+            }
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error requesting book: " + ex.getMessage());
+        });
+    }
+
+    private void placeHold(int bookId) {
+        DatabaseExecutor.submit(this, conn -> Holds.place(conn, userId, bookId), result -> {
+            JOptionPane.showMessageDialog(this, result.getMessage());
+            loadHolds();
+        }, ex -> {
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error placing hold: " + ex.getMessage());
+        });
+    }
+
+    // Not from the replica: a hold just placed or picked up must show at once
+    private void loadHolds() {
+        DatabaseExecutor.submitLatest(this, "holds", conn -> Holds.forUser(conn, userId), holds -> {
+            holdsModel.setRowCount(0);
+            for (Holds.Hold hold : holds) {
+                holdsModel.addRow(new Object[]{
+                    hold.getHoldId(),
+                    hold.getTitle(),
+                    hold.isReady() ? "Ready" : "Waiting",
+                    hold.isReady() ? dateFormat.format(hold.getExpiresAt()) : "#" + hold.getPosition()
+                });
+            }
+        }, ex -> {
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error loading holds: " + ex.getMessage());
+        });
+    }
+
+    private void pickUpHold() {
+        int selectedRow = holdsTable.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(this, "Please select a hold to pick up");
+            return;
         }
+
+        int holdId = (int) holdsModel.getValueAt(selectedRow, 0);
+        DatabaseExecutor.submit(this, conn -> Holds.pickUp(conn, userId, holdId), problem -> {
+            if (problem == null) {
+                JOptionPane.showMessageDialog(this,
+                    "Book borrowed successfully.\nDue date is in " + Circulation.LOAN_DAYS + " days.");
+            } else {
+                JOptionPane.showMessageDialog(this, problem);
+            }
+            loadHolds();
+        }, ex -> {
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error picking up hold: " + ex.getMessage());
+        });
+    }
+
+    private void cancelHold() {
+        int selectedRow = holdsTable.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(this, "Please select a hold to cancel");
+            return;
+        }
+
+        int holdId = (int) holdsModel.getValueAt(selectedRow, 0);
+        String bookTitle = (String) holdsModel.getValueAt(selectedRow, 1);
+        int choice = JOptionPane.showConfirmDialog(this,
+            "Cancel your hold on '" + bookTitle + "'?", "Cancel Hold", JOptionPane.YES_NO_OPTION);
+        if (choice != JOptionPane.YES_OPTION) {
+            return;
+        }
+
+        DatabaseExecutor.submit(this, conn -> Holds.cancel(conn, userId, holdId), cancelled -> {
+            if (!cancelled) {
+                JOptionPane.showMessageDialog(this, "This hold is no longer open");
+            }
+            loadHolds();
+            loadAvailableBooks();
+        }, ex -> {
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error cancelling hold: " + ex.getMessage());
+        });
     }
 }
\ No newline at end of file
@@ -5,6 +5,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ReturnBooksPanel extends JPanel {
     private int userId;
@@ -59,7 +61,7 @@ public class ReturnBooksPanel extends JPanel {
             int selectedRow = borrowedBooksTable.getSelectedRow();
             if (selectedRow != -1) {
                 int bookId = (int) borrowedBooksTable.getValueAt(selectedRow, 0);
-                returnBook(bookId, model, selectedRow);
+                returnBook(bookId, model);
             } else {
                 JOptionPane.showMessageDialog(this,
                     "Please select a book to return",
@@ -76,8 +78,7 @@ public class ReturnBooksPanel extends JPanel {
     }
 
     private void loadBorrowedBooks(DefaultTableModel model) {
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             PreparedStatement stmt = conn.prepareStatement(
                 "SELECT b.book_id, b.title, bb.borrow_date, bb.due_date " +
                 "FROM book_borrowings bb " +
@@ -87,27 +88,32 @@ public class ReturnBooksPanel extends JPanel {
             stmt.setInt(1, userId);
             ResultSet rs = stmt.executeQuery();
 
+            List<Object[]> rows = new ArrayList<>();
             while (rs.next()) {
-                Object[] row = {
+                rows.add(new Object[]{
                     rs.getInt("book_id"),
                     rs.getString("title"),
                     rs.getDate("borrow_date"),
                     rs.getDate("due_date")
-                };
+                });
+            }
+            return rows;
+        }, rows -> {
+            model.setRowCount(0);
+            for (Object[] row : rows) {
                 model.addRow(row);
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this,
                 "Error loading borrowed books: " + ex.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
-    private void returnBook(int bookId, DefaultTableModel model, int row) {
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+    private void returnBook(int bookId, DefaultTableModel model) {
+        DatabaseExecutor.submit(this, conn -> {
             conn.setAutoCommit(false);
 
             try {
@@ -118,36 +124,60 @@ public class ReturnBooksPanel extends JPanel {
                 );
                 updateBorrowingStmt.setInt(1, bookId);
                 updateBorrowingStmt.setInt(2, userId);
-                updateBorrowingStmt.executeUpdate();
+                // 0 means a double click or the return desk already closed this loan
+                if (updateBorrowingStmt.executeUpdate() != 1) {
+                    conn.rollback();
+                    return false;
+                }
 
-                // Update book available quantity
-                PreparedStatement updateBookStmt = conn.prepareStatement(
-                    "UPDATE books SET available_quantity = available_quantity + 1 " +
-                    "WHERE book_id = ?"
-                );
-                updateBookStmt.setInt(1, bookId);
-                updateBookStmt.executeUpdate();
+                // The copy goes to the oldest waiting hold, or back on the shelf
+                int shelved = Holds.checkIn(conn, bookId, 1);
 
                 conn.commit();
-                model.removeRow(row);
-                
-                JOptionPane.showMessageDialog(this,
-                    "Book returned successfully",
-                    "Success",
-                    JOptionPane.INFORMATION_MESSAGE);
-                
+                if (shelved > 0) {
+                    FacetIndex.availabilityChanged(bookId, shelved);
+                    SearchCache.getInstance().availabilityChanged(bookId, shelved);
+                }
+                return true;
             } catch (SQLException ex) {
                 conn.rollback();
                 throw ex;
             } finally {
                 conn.setAutoCommit(true);
             }
-        } catch (SQLException ex) {
+        }, returned -> {
+            // The table may have been reloaded meanwhile, so find the row again
+            int current = findRow(model, bookId);
+            if (current != -1) {
+                model.removeRow(current);
+            }
+
+            if (!returned) {
+                JOptionPane.showMessageDialog(this,
+                    "This book is not currently borrowed; it may already have been returned",
+                    "Not Borrowed",
+                    JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            JOptionPane.showMessageDialog(this,
+                "Book returned successfully",
+                "Success",
+                JOptionPane.INFORMATION_MESSAGE);
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this,
                 "Error returning book: " + ex.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
+        });
+    }
+
+    private int findRow(DefaultTableModel model, int bookId) {
+        for (int i = 0; i < model.getRowCount(); i++) {
+            if ((int) model.getValueAt(i, 0) == bookId) {
+                return i;
+            }
         }
+        return -1;
     }
 }
\ No newline at end of file
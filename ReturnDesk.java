@@ -0,0 +1,316 @@
+import javax.swing.SwingUtilities;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks in returned books from a stream of barcode scans at the librarian's return desk.
+ *
+ * scan() only queues the barcode, so the desk can acknowledge it at once however fast
+ * books come out of the drop. One worker thread takes the queued scans in batches of up
+ * to library.returns.batchSize (25), waiting at most library.returns.batchWaitMs (20 ms)
+ * for a batch to fill, and checks each batch in with one transaction: one query finds
+ * the open loans, one batched UPDATE closes them and Holds.checkIn sets copies aside
+ * for waiting holds and puts the rest back on the shelf with one batched Inventory.give.
+ *
+ * A scan is an ISBN or a book ID. The desk does not know who returned the book, so each
+ * scan closes that book's oldest open loan. Results are handed to the listener on the
+ * EDT, a batch at a time.
+ */
+public class ReturnDesk implements AutoCloseable {
+
+    public static final int BATCH_SIZE = Integer.getInteger("library.returns.batchSize", 25);
+    public static final long BATCH_WAIT_MS = Long.getLong("library.returns.batchWaitMs", 20);
+
+    public enum Status {
+        QUEUED("Queued"),
+        RETURNED("Returned"),
+        ON_HOLD("Returned, put on the hold shelf"),
+        NOT_BORROWED("No open loan for this book"),
+        UNKNOWN_BOOK("Unknown ISBN or book ID"),
+        FAILED("Not saved, scan again");
+
+        private final String message;
+
+        Status(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() { return message; }
+    }
+
+    /** One scanned barcode and, once its batch is committed, what became of it. */
+    public static class Scan {
+        private final String code;
+        private final long scannedAt = System.nanoTime();
+        private volatile Status status = Status.QUEUED;
+        private volatile int bookId = -1;
+        private volatile String title;
+        private volatile String borrower;
+        private volatile String error;
+
+        Scan(String code) {
+            this.code = code;
+        }
+
+        public String getCode() { return code; }
+        public Status getStatus() { return status; }
+        public int getBookId() { return bookId; }
+        public String getTitle() { return title; }
+        public String getBorrower() { return borrower; }
+        public String getError() { return error; }
+    }
+
+    public interface Listener {
+        /** Called on the EDT with the scans of one batch, in scan order. */
+        void checkedIn(List<Scan> batch);
+    }
+
+    // An open loan found for a scan
+    private static class Loan {
+        final int borrowingId;
+        final String borrower;
+
+        Loan(int borrowingId, String borrower) {
+            this.borrowingId = borrowingId;
+            this.borrower = borrower;
+        }
+    }
+
+    private static final Scan CLOSE = new Scan(null);
+
+    private final BlockingQueue<Scan> queue = new LinkedBlockingQueue<>();
+    private final Listener listener;
+    private final Thread worker;
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    private volatile boolean closed;
+
+    public ReturnDesk(Listener listener) {
+        this.listener = listener;
+        this.worker = new Thread(this::run, "return-desk");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Queues a scanned ISBN or book ID and returns at once; the result reaches the listener. */
+    public Scan scan(String code) {
+        if (closed) {
+            throw new IllegalStateException("Return desk is closed");
+        }
+        Scan scan = new Scan(code.trim());
+        queue.add(scan);
+        return scan;
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /** Microseconds from scan to commit. */
+    public LatencyHistogram getCommitLatency() {
+        return commitLatency;
+    }
+
+    /** Stops taking scans; those already queued are still checked in. */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            queue.add(CLOSE);
+        }
+    }
+
+    private void run() {
+        List<Scan> batch = new ArrayList<>();
+        boolean closing = false;
+        while (!closing) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_WAIT_MS);
+                while (batch.size() < BATCH_SIZE) {
+                    Scan next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            closing = batch.remove(CLOSE);
+            if (!batch.isEmpty()) {
+                checkIn(batch);
+            }
+            batch = new ArrayList<>();
+        }
+    }
+
+    private void checkIn(List<Scan> batch) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available");
+            }
+            Map<Integer, Integer> shelved = checkIn(conn, batch);
+            for (Map.Entry<Integer, Integer> book : shelved.entrySet()) {
+                FacetIndex.availabilityChanged(book.getKey(), book.getValue());
+                SearchCache.getInstance().availabilityChanged(book.getKey(), book.getValue());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            for (Scan scan : batch) {
+                if (scan.status != Status.UNKNOWN_BOOK) {
+                    scan.status = Status.FAILED;
+                    scan.error = e.getMessage();
+                }
+            }
+        }
+        long now = System.nanoTime();
+        for (Scan scan : batch) {
+            commitLatency.record((now - scan.scannedAt) / 1000);
+        }
+        List<Scan> results = new ArrayList<>(batch);
+        SwingUtilities.invokeLater(() -> listener.checkedIn(results));
+    }
+
+    // Returns the copies put back on the shelf per book ID, in book_id order
+    private static Map<Integer, Integer> checkIn(Connection conn, List<Scan> batch) throws SQLException {
+        resolveBooks(conn, batch);
+        int[] bookIds = batch.stream().mapToInt(Scan::getBookId).filter(id -> id > 0).distinct().toArray();
+        Map<Integer, Integer> returned = new TreeMap<>();
+        Map<Integer, Integer> shelved = new TreeMap<>();
+        if (bookIds.length == 0) {
+            return shelved;
+        }
+        conn.setAutoCommit(false);
+        try {
+            Map<Integer, Deque<Loan>> loans = findOpenLoans(conn, bookIds);
+            List<Scan> matched = new ArrayList<>();
+            List<Loan> closing = new ArrayList<>();
+            for (Scan scan : batch) {
+                if (scan.status == Status.UNKNOWN_BOOK) {
+                    continue;
+                }
+                Deque<Loan> open = loans.get(scan.bookId);
+                if (open == null || open.isEmpty()) {
+                    scan.status = Status.NOT_BORROWED;
+                } else {
+                    Loan loan = open.poll();
+                    scan.borrower = loan.borrower;
+                    matched.add(scan);
+                    closing.add(loan);
+                }
+            }
+            if (!matched.isEmpty()) {
+                int[] counts;
+                try (PreparedStatement close = conn.prepareStatement(
+                        "UPDATE book_borrowings SET status = 'RETURNED', return_date = CURRENT_DATE " +
+                        "WHERE borrowing_id = ? AND status = 'BORROWED'")) {
+                    for (Loan loan : closing) {
+                        close.setInt(1, loan.borrowingId);
+                        close.addBatch();
+                    }
+                    counts = close.executeBatch();
+                }
+                for (int i = 0; i < matched.size(); i++) {
+                    Scan scan = matched.get(i);
+                    // 0 means another desk closed this loan after it was read
+                    if (counts[i] == 0) {
+                        scan.status = Status.NOT_BORROWED;
+                        scan.borrower = null;
+                    } else {
+                        scan.status = Status.RETURNED;
+                        returned.merge(scan.bookId, 1, Integer::sum);
+                    }
+                }
+                shelved = Holds.checkIn(conn, returned);
+                // Copies not put back on the shelf went to holds; mark that many of the book's scans
+                Map<Integer, Integer> held = new HashMap<>();
+                for (Map.Entry<Integer, Integer> book : returned.entrySet()) {
+                    held.put(book.getKey(), book.getValue() - shelved.getOrDefault(book.getKey(), 0));
+                }
+                for (Scan scan : matched) {
+                    if (scan.status == Status.RETURNED && held.merge(scan.bookId, -1, Integer::sum) >= 0) {
+                        scan.status = Status.ON_HOLD;
+                    }
+                }
+            }
+            conn.commit();
+            return shelved;
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    // Sets each scan's book ID and title, or marks it UNKNOWN_BOOK
+    private static void resolveBooks(Connection conn, List<Scan> batch) throws SQLException {
+        IsbnIndex isbns = IsbnIndex.getInstance(conn);
+        for (Scan scan : batch) {
+            if (Isbn.isValid(scan.code)) {
+                scan.bookId = isbns.find(scan.code);
+            } else {
+                try {
+                    scan.bookId = Integer.parseInt(scan.code);
+                } catch (NumberFormatException e) {
+                    scan.bookId = -1;
+                }
+            }
+        }
+        int[] ids = batch.stream().mapToInt(Scan::getBookId).filter(id -> id > 0).distinct().toArray();
+        Map<Integer, String> titles = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT book_id, title FROM books WHERE book_id IN (" + CatalogIndex.ID_PLACEHOLDERS + ")")) {
+            for (int from = 0; from < ids.length; from += CatalogIndex.SEARCH_LIMIT) {
+                CatalogIndex.bindIds(stmt, 1,
+                    Arrays.copyOfRange(ids, from, Math.min(ids.length, from + CatalogIndex.SEARCH_LIMIT)));
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    titles.put(rs.getInt("book_id"), rs.getString("title"));
+                }
+            }
+        }
+        for (Scan scan : batch) {
+            scan.title = titles.get(scan.bookId);
+            if (scan.title == null) {
+                scan.bookId = -1;
+                scan.status = Status.UNKNOWN_BOOK;
+            }
+        }
+    }
+
+    // Open loans per book, oldest first
+    private static Map<Integer, Deque<Loan>> findOpenLoans(Connection conn, int[] bookIds) throws SQLException {
+        Map<Integer, Deque<Loan>> loans = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT bb.borrowing_id, bb.book_id, u.full_name FROM book_borrowings bb " +
+                "JOIN users u ON bb.user_id = u.user_id " +
+                "WHERE bb.status = 'BORROWED' AND bb.book_id IN (" + CatalogIndex.ID_PLACEHOLDERS + ") " +
+                "ORDER BY bb.borrow_date, bb.borrowing_id")) {
+            for (int from = 0; from < bookIds.length; from += CatalogIndex.SEARCH_LIMIT) {
+                CatalogIndex.bindIds(stmt, 1,
+                    Arrays.copyOfRange(bookIds, from, Math.min(bookIds.length, from + CatalogIndex.SEARCH_LIMIT)));
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    loans.computeIfAbsent(rs.getInt("book_id"), id -> new ArrayDeque<>())
+                        .add(new Loan(rs.getInt("borrowing_id"), rs.getString("full_name")));
+                }
+            }
+        }
+        return loans;
+    }
+}
@@ -0,0 +1,153 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ReturnDeskPanel extends JPanel {
+    // Most recent scans shown; older rows are dropped from the top
+    private static final int MAX_ROWS = 500;
+
+    private int userId;
+    private boolean isDarkMode;
+    private Color darkBackground = new Color(33, 33, 33);
+    private Color lightBackground = new Color(242, 242, 242);
+    private JTextField scanField;
+    private JLabel statusLabel;
+    private DefaultTableModel tableModel;
+    private ReturnDesk desk;
+    // Row of each scan still waiting for its batch; rows only move up as old ones are dropped
+    private final Map<ReturnDesk.Scan, Integer> pendingRows = new IdentityHashMap<>();
+    private int droppedRows = 0;
+    private int returnedCount = 0;
+    private int problemCount = 0;
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+
+    public ReturnDeskPanel(int userId, boolean isDarkMode) {
+        this.userId = userId;
+        this.isDarkMode = isDarkMode;
+
+        setLayout(new BorderLayout(10, 10));
+        setBackground(isDarkMode ? darkBackground : lightBackground);
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        createComponents();
+
+        desk = new ReturnDesk(this::showResults);
+        // Queued scans are still checked in after the panel is swapped out
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0 && !isDisplayable()) {
+                desk.close();
+            }
+        });
+    }
+
+    private void createComponents() {
+        JPanel topPanel = new JPanel(new BorderLayout(10, 10));
+        topPanel.setBackground(isDarkMode ? darkBackground : lightBackground);
+
+        JLabel titleLabel = new JLabel("Return Desk", SwingConstants.CENTER);
+        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
+        titleLabel.setForeground(isDarkMode ? Color.WHITE : Color.BLACK);
+        topPanel.add(titleLabel, BorderLayout.NORTH);
+
+        // A barcode scanner types the ISBN and presses Enter; the field is ready for the next at once
+        JPanel scanPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        scanPanel.setBackground(isDarkMode ? darkBackground : lightBackground);
+        JLabel scanLabel = new JLabel("Scan ISBN / Book ID:");
+        scanLabel.setForeground(isDarkMode ? Color.WHITE : Color.BLACK);
+        scanField = new JTextField(20);
+        scanField.setFont(new Font("Segoe UI", Font.PLAIN, 16));
+        scanField.addActionListener(e -> scanBook());
+        scanPanel.add(scanLabel);
+        scanPanel.add(scanField);
+        topPanel.add(scanPanel, BorderLayout.CENTER);
+        add(topPanel, BorderLayout.NORTH);
+
+        String[] columns = {"Time", "Scanned", "Book ID", "Title", "Borrower", "Status"};
+        tableModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+
+        JTable scansTable = new JTable(tableModel);
+        scansTable.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        scansTable.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 12));
+        scansTable.setRowHeight(25);
+        scansTable.setFocusable(false);
+        add(new JScrollPane(scansTable), BorderLayout.CENTER);
+
+        statusLabel = new JLabel(" ");
+        statusLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        statusLabel.setForeground(isDarkMode ? Color.WHITE : Color.BLACK);
+        JPanel statusPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        statusPanel.setBackground(isDarkMode ? darkBackground : lightBackground);
+        statusPanel.add(statusLabel);
+        add(statusPanel, BorderLayout.SOUTH);
+        updateStatus();
+    }
+
+    // Acknowledges the scan with a Queued row straight away; no database work happens here
+    private void scanBook() {
+        String code = scanField.getText().trim();
+        scanField.setText("");
+        if (code.isEmpty()) {
+            return;
+        }
+        ReturnDesk.Scan scan = desk.scan(code);
+        tableModel.addRow(new Object[]{
+            timeFormat.format(new Date()),
+            code,
+            "",
+            "",
+            "",
+            scan.getStatus().getMessage()
+        });
+        pendingRows.put(scan, droppedRows + tableModel.getRowCount() - 1);
+        if (tableModel.getRowCount() > MAX_ROWS) {
+            tableModel.removeRow(0);
+            droppedRows++;
+        }
+        updateStatus();
+    }
+
+    private void showResults(List<ReturnDesk.Scan> batch) {
+        for (ReturnDesk.Scan scan : batch) {
+            Integer position = pendingRows.remove(scan);
+            if (returned(scan)) {
+                returnedCount++;
+            } else {
+                problemCount++;
+            }
+            int row = position == null ? -1 : position - droppedRows;
+            if (row < 0) {
+                continue;
+            }
+            tableModel.setValueAt(scan.getBookId() > 0 ? scan.getBookId() : "", row, 2);
+            tableModel.setValueAt(scan.getTitle() != null ? scan.getTitle() : "", row, 3);
+            tableModel.setValueAt(scan.getBorrower() != null ? scan.getBorrower() : "", row, 4);
+            tableModel.setValueAt(scan.getStatus().getMessage(), row, 5);
+        }
+        updateStatus();
+        if (batch.stream().anyMatch(scan -> !returned(scan))) {
+            Toolkit.getDefaultToolkit().beep();
+        }
+    }
+
+    // A copy set aside for a hold is returned too; the librarian shelves it behind the desk
+    private static boolean returned(ReturnDesk.Scan scan) {
+        return scan.getStatus() == ReturnDesk.Status.RETURNED || scan.getStatus() == ReturnDesk.Status.ON_HOLD;
+    }
+
+    private void updateStatus() {
+        statusLabel.setText(String.format("Returned: %d    Needs attention: %d    Waiting: %d    p99 scan to saved: %.0f ms",
+            returnedCount, problemCount, pendingRows.size(),
+            desk == null ? 0.0 : desk.getCommitLatency().getValueAtPercentile(99) / 1000.0));
+    }
+}
@@ -0,0 +1,334 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Versioned schema changes applied on top of DatabaseConnection.createTables.
+ *
+ * Each migration runs once; applied versions are recorded in the schema_version table.
+ * Clients starting together take turns through a MySQL named lock, and each statement
+ * of an unfinished migration is recorded in schema_version_step as it completes, so a
+ * migration that failed partway resumes at the failed statement. New changes are
+ * appended to MIGRATIONS with the next version number and never edited once released.
+ * Running this class directly EXPLAINs the hot-path queries and exits non-zero if any
+ * of them needs a full table scan.
+ */
+public class SchemaMigrations {
+
+    private static class Migration {
+        final int version;
+        final SqlDialect dialect;
+        final String description;
+        final String[] statements;
+
+        Migration(int version, String description, String... statements) {
+            this(version, null, description, statements);
+        }
+
+        // A migration for one dialect only is recorded as applied on the others without running
+        Migration(int version, SqlDialect dialect, String description, String... statements) {
+            this.version = version;
+            this.dialect = dialect;
+            this.description = description;
+            this.statements = statements;
+        }
+    }
+
+    private static final String LOCK_NAME = "library_db.schema_migrations";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    // issue_book as migration 4 created it, before stock slots existed; migration 6 replaces it
+    private static final String ISSUE_BOOK_PROCEDURE_V4 =
+        "CREATE PROCEDURE issue_book(IN p_user_id INT, IN p_book_id INT, IN p_loan_days INT, OUT p_result INT) " +
+        "BEGIN " +
+        "  DECLARE v_active BOOLEAN DEFAULT NULL; " +
+        "  DECLARE v_title VARCHAR(255); " +
+        "  DECLARE v_due DATE; " +
+        "  DECLARE EXIT HANDLER FOR SQLEXCEPTION BEGIN ROLLBACK; RESIGNAL; END; " +
+        "  SET p_result = 0; " +
+        "  START TRANSACTION; " +
+        "  SELECT is_active INTO v_active FROM users WHERE user_id = p_user_id AND role = 'STUDENT'; " +
+        "  IF v_active IS NULL THEN SET p_result = 1; " +
+        "  ELSEIF NOT v_active THEN SET p_result = 2; " +
+        "  ELSEIF EXISTS (SELECT 1 FROM book_borrowings WHERE user_id = p_user_id " +
+        "                 AND status = 'BORROWED' AND due_date < CURRENT_DATE) THEN SET p_result = 3; " +
+        "  ELSEIF EXISTS (SELECT 1 FROM book_borrowings WHERE user_id = p_user_id " +
+        "                 AND book_id = p_book_id AND status = 'BORROWED') THEN SET p_result = 4; " +
+        "  ELSE " +
+        "    UPDATE books SET available_quantity = available_quantity - 1 " +
+        "      WHERE book_id = p_book_id AND available_quantity > 0; " +
+        "    IF ROW_COUNT() = 0 THEN SET p_result = 5; " +
+        "    ELSE " +
+        "      SET v_due = DATE_ADD(CURRENT_DATE, INTERVAL p_loan_days DAY); " +
+        "      SELECT title INTO v_title FROM books WHERE book_id = p_book_id; " +
+        "      INSERT INTO book_borrowings (book_id, user_id, borrow_date, due_date, status) " +
+        "        VALUES (p_book_id, p_user_id, CURRENT_DATE, v_due, 'BORROWED'); " +
+        "      INSERT INTO notifications (user_id, message, is_read) " +
+        "        VALUES (p_user_id, CONCAT('Book ''', v_title, ''' has been issued to you. Due date: ', v_due), false); " +
+        "    END IF; " +
+        "  END IF; " +
+        "  IF p_result = 0 THEN COMMIT; ELSE ROLLBACK; END IF; " +
+        "END";
+
+    // issue_book as migration 6 created it: a split title's copies come from its stock slots
+    private static final String ISSUE_BOOK_PROCEDURE_V6 =
+        "CREATE PROCEDURE issue_book(IN p_user_id INT, IN p_book_id INT, IN p_loan_days INT, OUT p_result INT) " +
+        "BEGIN " +
+        "  DECLARE v_active BOOLEAN DEFAULT NULL; " +
+        "  DECLARE v_title VARCHAR(255); " +
+        "  DECLARE v_due DATE; " +
+        "  DECLARE v_slots INT DEFAULT 0; " +
+        "  DECLARE v_slot INT; " +
+        "  DECLARE v_taken INT DEFAULT 0; " +
+        "  DECLARE EXIT HANDLER FOR SQLEXCEPTION BEGIN ROLLBACK; RESIGNAL; END; " +
+        "  SET p_result = 0; " +
+        "  START TRANSACTION; " +
+        "  SELECT is_active INTO v_active FROM users WHERE user_id = p_user_id AND role = 'STUDENT'; " +
+        "  IF v_active IS NULL THEN SET p_result = 1; " +
+        "  ELSEIF NOT v_active THEN SET p_result = 2; " +
+        "  ELSEIF EXISTS (SELECT 1 FROM book_borrowings WHERE user_id = p_user_id " +
+        "                 AND status = 'BORROWED' AND due_date < CURRENT_DATE) THEN SET p_result = 3; " +
+        "  ELSEIF EXISTS (SELECT 1 FROM book_borrowings WHERE user_id = p_user_id " +
+        "                 AND book_id = p_book_id AND status = 'BORROWED') THEN SET p_result = 4; " +
+        "  ELSE " +
+        // A split title's copies are in book_stock_slots; see Inventory
+        "    SELECT stock_slots INTO v_slots FROM books WHERE book_id = p_book_id; " +
+        "    IF v_slots = 0 THEN " +
+        "      UPDATE books SET available_quantity = available_quantity - 1 " +
+        "        WHERE book_id = p_book_id AND stock_slots = 0 AND available_quantity > 0; " +
+        "      SET v_taken = ROW_COUNT(); " +
+        "    ELSE " +
+        "      SET v_slot = FLOOR(RAND() * v_slots); " +
+        "      UPDATE book_stock_slots SET available = available - 1 " +
+        "        WHERE book_id = p_book_id AND slot = v_slot AND available > 0; " +
+        "      SET v_taken = ROW_COUNT(); " +
+        "      IF v_taken = 0 THEN " +
+        "        UPDATE book_stock_slots SET available = available - 1 " +
+        "          WHERE book_id = p_book_id AND available > 0 ORDER BY slot LIMIT 1; " +
+        "        SET v_taken = ROW_COUNT(); " +
+        "      END IF; " +
+        "    END IF; " +
+        "    IF v_taken = 0 THEN SET p_result = 5; " +
+        "    ELSE " +
+        "      SET v_due = DATE_ADD(CURRENT_DATE, INTERVAL p_loan_days DAY); " +
+        "      SELECT title INTO v_title FROM books WHERE book_id = p_book_id; " +
+        "      INSERT INTO book_borrowings (book_id, user_id, borrow_date, due_date, status) " +
+        "        VALUES (p_book_id, p_user_id, CURRENT_DATE, v_due, 'BORROWED'); " +
+        "      INSERT INTO notifications (user_id, message, is_read) " +
+        "        VALUES (p_user_id, CONCAT('Book ''', v_title, ''' has been issued to you. Due date: ', v_due), false); " +
+        "    END IF; " +
+        "  END IF; " +
+        "  IF p_result = 0 THEN COMMIT; ELSE ROLLBACK; END IF; " +
+        "END";
+
+    private static final List<Migration> MIGRATIONS = List.of(
+        new Migration(1, "Index book_borrowings for per-student and per-book lookups",
+            // Overdue checks and the return/reissue lists: user_id = ? AND status = ? [AND due_date < ?]
+            "CREATE INDEX idx_borrowings_user_status_due ON book_borrowings (user_id, status, due_date)",
+            // Duplicate-loan checks: book_id = ? AND user_id = ? AND status = ?
+            "CREATE INDEX idx_borrowings_book_user_status ON book_borrowings (book_id, user_id, status)"
+        ),
+        new Migration(2, "Index notifications for the inbox and unread count",
+            "CREATE INDEX idx_notifications_user_read_created ON notifications (user_id, is_read, created_at)"
+        ),
+        new Migration(3, SqlDialect.MYSQL, "FULLTEXT index for MATCH ... AGAINST book search",
+            "CREATE FULLTEXT INDEX ft_books_title_author_category ON books (title, author, category)"
+        ),
+        new Migration(4, SqlDialect.MYSQL, "issue_book procedure: an issue in one round trip",
+            ISSUE_BOOK_PROCEDURE_V4
+        ),
+        new Migration(5, "Stock slots: a hot title's copies split over several rows",
+            "ALTER TABLE books ADD COLUMN stock_slots INT NOT NULL DEFAULT 0",
+            "CREATE TABLE IF NOT EXISTS book_stock_slots (" +
+            "book_id INT NOT NULL, " +
+            "slot INT NOT NULL, " +
+            "available INT NOT NULL, " +
+            "PRIMARY KEY (book_id, slot), " +
+            "FOREIGN KEY (book_id) REFERENCES books(book_id)" +
+            ")"
+        ),
+        new Migration(6, SqlDialect.MYSQL, "issue_book takes a split title's copies from its stock slots",
+            "DROP PROCEDURE IF EXISTS issue_book",
+            ISSUE_BOOK_PROCEDURE_V6
+        ),
+        new Migration(7, "Hold queue for books with no copy on the shelf",
+            "CREATE TABLE IF NOT EXISTS book_holds (" +
+            "hold_id " + DatabaseConnection.getDialect().autoIncrementKey() + ", " +
+            "book_id INT NOT NULL, " +
+            "user_id INT NOT NULL, " +
+            "status ENUM('WAITING', 'READY', 'FULFILLED', 'EXPIRED', 'CANCELLED') NOT NULL DEFAULT 'WAITING', " +
+            "placed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "ready_at TIMESTAMP NULL, " +
+            "expires_at TIMESTAMP NULL, " +
+            "FOREIGN KEY (book_id) REFERENCES books(book_id), " +
+            "FOREIGN KEY (user_id) REFERENCES users(user_id)" +
+            ")",
+            // Head of a title's queue: book_id = ? AND status = 'WAITING' ORDER BY hold_id
+            "CREATE INDEX idx_holds_book_status ON book_holds (book_id, status, hold_id)",
+            // A student's open holds and duplicate-hold checks: user_id = ? AND status IN (...)
+            "CREATE INDEX idx_holds_user_status ON book_holds (user_id, status)",
+            // Expiry sweep: status = 'READY' AND expires_at < ?
+            "CREATE INDEX idx_holds_status_expires ON book_holds (status, expires_at)"
+        )
+    );
+
+    // Queries on the hot paths, as the panels issue them; every ? is bound to 1
+    private static final String[] CANONICAL_QUERIES = {
+        "SELECT COUNT(*) FROM book_borrowings " +
+            "WHERE user_id = ? AND status = 'BORROWED' AND due_date < CURRENT_DATE",
+        "SELECT COUNT(*) FROM book_borrowings " +
+            "WHERE user_id = ? AND book_id = ? AND status = 'BORROWED'",
+        "SELECT bb.borrowing_id, b.title, bb.due_date FROM book_borrowings bb " +
+            "JOIN books b ON bb.book_id = b.book_id " +
+            "WHERE bb.user_id = ? AND bb.status = 'BORROWED' ORDER BY bb.due_date",
+        "SELECT message, created_at, is_read FROM notifications " +
+            "WHERE user_id = ? ORDER BY created_at DESC",
+        "SELECT COUNT(*) FROM notifications WHERE user_id = ? AND is_read = false"
+    };
+
+    /**
+     * Applies every migration newer than the database's recorded versions. Waits up to
+     * LOCK_TIMEOUT_SECONDS for a migration another client is running.
+     */
+    public static synchronized void migrate(Connection conn) throws SQLException {
+        boolean mysql = DatabaseConnection.getDialect() == SqlDialect.MYSQL;
+        try (Statement stmt = conn.createStatement()) {
+            // A session lock, so the implicit commits of DDL do not release it. The embedded
+            // database belongs to this process, where synchronized is enough.
+            if (mysql) {
+                try (ResultSet rs = stmt.executeQuery(
+                        "SELECT GET_LOCK('" + LOCK_NAME + "', " + LOCK_TIMEOUT_SECONDS + ")")) {
+                    if (!rs.next() || rs.getInt(1) != 1) {
+                        throw new SQLException("Timed out waiting for another client's schema migration");
+                    }
+                }
+            }
+            try {
+                applyPending(conn, stmt);
+            } finally {
+                if (mysql) {
+                    stmt.executeQuery("SELECT RELEASE_LOCK('" + LOCK_NAME + "')").close();
+                }
+            }
+        }
+    }
+
+    private static void applyPending(Connection conn, Statement stmt) throws SQLException {
+        stmt.executeUpdate(
+            "CREATE TABLE IF NOT EXISTS schema_version (" +
+            "version INT PRIMARY KEY, " +
+            "description VARCHAR(200) NOT NULL, " +
+            "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+            ")"
+        );
+        stmt.executeUpdate(
+            "CREATE TABLE IF NOT EXISTS schema_version_step (" +
+            "version INT NOT NULL, " +
+            "step INT NOT NULL, " +
+            "PRIMARY KEY (version, step)" +
+            ")"
+        );
+
+        Set<Integer> applied = new HashSet<>();
+        try (ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version")) {
+            while (rs.next()) {
+                applied.add(rs.getInt(1));
+            }
+        }
+        // Statements already run by a migration that failed before it finished
+        Set<String> doneSteps = new HashSet<>();
+        try (ResultSet rs = stmt.executeQuery("SELECT version, step FROM schema_version_step")) {
+            while (rs.next()) {
+                doneSteps.add(rs.getInt(1) + ":" + rs.getInt(2));
+            }
+        }
+
+        for (Migration migration : MIGRATIONS) {
+            if (applied.contains(migration.version)) {
+                continue;
+            }
+            if (migration.dialect == null || migration.dialect == DatabaseConnection.getDialect()) {
+                for (int step = 0; step < migration.statements.length; step++) {
+                    if (doneSteps.contains(migration.version + ":" + step)) {
+                        continue;
+                    }
+                    stmt.executeUpdate(migration.statements[step]);
+                    // DDL commits implicitly on MySQL, so record each statement as soon as it has run
+                    try (PreparedStatement record = conn.prepareStatement(
+                            "INSERT INTO schema_version_step (version, step) VALUES (?, ?)")) {
+                        record.setInt(1, migration.version);
+                        record.setInt(2, step);
+                        record.executeUpdate();
+                    }
+                }
+            }
+            try (PreparedStatement record = conn.prepareStatement(
+                    "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                record.setInt(1, migration.version);
+                record.setString(2, migration.description);
+                record.executeUpdate();
+            }
+            try (PreparedStatement clear = conn.prepareStatement(
+                    "DELETE FROM schema_version_step WHERE version = ?")) {
+                clear.setInt(1, migration.version);
+                clear.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * EXPLAINs each canonical query and returns one message per query that scans a whole
+     * table. Run against a database with realistic data: on near-empty tables the
+     * optimizer may prefer a scan even when the index exists.
+     */
+    public static List<String> findFullScans(Connection conn) throws SQLException {
+        List<String> problems = new ArrayList<>();
+        boolean h2 = DatabaseConnection.getDialect() == SqlDialect.H2;
+
+        for (String query : CANONICAL_QUERIES) {
+            try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + query)) {
+                int params = (int) query.chars().filter(c -> c == '?').count();
+                for (int i = 1; i <= params; i++) {
+                    stmt.setInt(i, 1);
+                }
+
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    if (h2) {
+                        // H2 returns the plan as text and marks scans with a tableScan comment
+                        if (rs.getString(1).contains("tableScan")) {
+                            problems.add("Full table scan: " + query);
+                        }
+                    } else if ("ALL".equals(rs.getString("type"))) {
+                        problems.add("Full table scan of " + rs.getString("table") + ": " + query);
+                    }
+                }
+            }
+        }
+        return problems;
+    }
+
+    public static void main(String[] args) throws SQLException {
+        List<String> problems;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                System.exit(2);
+            }
+            problems = findFullScans(conn);
+        }
+        DatabaseConnection.closeConnection();
+
+        for (String problem : problems) {
+            System.err.println(problem);
+        }
+        System.out.println(CANONICAL_QUERIES.length + " queries checked, " +
+                           problems.size() + " full table scans");
+        System.exit(problems.isEmpty() ? 0 : 1);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,151 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+/**
+ * Turns a search field into search-as-you-type with an autocomplete popup.
+ *
+ * The search runs once typing pauses for DEBOUNCE_MS, or at once on Enter. While
+ * typing, a popup lists completions; Up/Down move through them, Enter or a click picks
+ * one and Escape closes the popup. The search itself should go through
+ * DatabaseExecutor.submitLatest so a slow earlier query can never overwrite the
+ * results of a later one.
+ */
+public class SearchAsYouType {
+
+    public static final int DEBOUNCE_MS = Integer.getInteger("library.search.debounceMs", 250);
+
+    public interface Completer {
+        List<String> complete(String prefix);
+    }
+
+    private final JTextField field;
+    private final Runnable search;
+    private final Completer completer;
+    private final Timer debounce;
+    private final DefaultListModel<String> suggestions = new DefaultListModel<>();
+    private final JList<String> suggestionList = new JList<>(suggestions);
+    private final JPopupMenu popup = new JPopupMenu();
+    private boolean settingText = false;
+
+    public static void install(JTextField field, Runnable search, Completer completer) {
+        new SearchAsYouType(field, search, completer);
+    }
+
+    private SearchAsYouType(JTextField field, Runnable search, Completer completer) {
+        this.field = field;
+        this.search = search;
+        this.completer = completer;
+
+        debounce = new Timer(DEBOUNCE_MS, e -> search.run());
+        debounce.setRepeats(false);
+
+        suggestionList.setFocusable(false);
+        suggestionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        suggestionList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = suggestionList.locationToIndex(e.getPoint());
+                if (index >= 0) {
+                    accept(suggestions.get(index));
+                }
+            }
+        });
+        popup.setFocusable(false);
+        popup.add(new JScrollPane(suggestionList));
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { textChanged(); }
+            @Override
+            public void removeUpdate(DocumentEvent e) { textChanged(); }
+            @Override
+            public void changedUpdate(DocumentEvent e) { textChanged(); }
+        });
+        field.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                popup.setVisible(false);
+            }
+        });
+
+        bind("DOWN", "completion-next", () -> moveSelection(1));
+        bind("UP", "completion-previous", () -> moveSelection(-1));
+        bind("ESCAPE", "completion-hide", () -> popup.setVisible(false));
+        bind("ENTER", "search-now", () -> {
+            String selected = popup.isVisible() ? suggestionList.getSelectedValue() : null;
+            if (selected != null) {
+                accept(selected);
+            } else {
+                popup.setVisible(false);
+                debounce.stop();
+                search.run();
+            }
+        });
+    }
+
+    private void bind(String key, String name, Runnable action) {
+        field.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(key), name);
+        field.getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+
+    private void textChanged() {
+        if (settingText) {
+            return;
+        }
+        debounce.restart();
+        // Document events can arrive mid-edit; update the popup once the edit is done
+        SwingUtilities.invokeLater(this::showSuggestions);
+    }
+
+    private void showSuggestions() {
+        String text = field.getText().trim();
+        List<String> matches = completer.complete(text);
+        suggestions.clear();
+        for (String match : matches) {
+            if (!match.equalsIgnoreCase(text)) {
+                suggestions.addElement(match);
+            }
+        }
+        if (suggestions.isEmpty() || !field.isShowing() || !field.hasFocus()) {
+            popup.setVisible(false);
+            return;
+        }
+        suggestionList.setVisibleRowCount(Math.min(8, suggestions.size()));
+        suggestionList.clearSelection();
+        popup.pack();
+        popup.show(field, 0, field.getHeight());
+    }
+
+    private void moveSelection(int delta) {
+        if (!popup.isVisible() || suggestions.isEmpty()) {
+            return;
+        }
+        int index = suggestionList.getSelectedIndex() + delta;
+        index = Math.max(0, Math.min(suggestions.size() - 1, index));
+        suggestionList.setSelectedIndex(index);
+        suggestionList.ensureIndexIsVisible(index);
+    }
+
+    private void accept(String value) {
+        settingText = true;
+        try {
+            field.setText(value);
+        } finally {
+            settingText = false;
+        }
+        popup.setVisible(false);
+        debounce.stop();
+        search.run();
+    }
+}
@@ -0,0 +1,266 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of CatalogService search results, keyed by projection, normalized query
+ * text and filter.
+ *
+ * Popular searches are answered on the EDT without ranking or a database round trip.
+ * Entries are kept exact rather than just left to expire: when a book's title, author
+ * or category changes, the entries listing the book and those whose words now match it
+ * are evicted, and a change in a book's available quantity is patched into the books
+ * that show it. An "available only" entry keeps the books with no copies left and
+ * hides them when served, so a return can bring a book back without a reload.
+ *
+ * Changes made by other clients are not seen, so entries also expire after
+ * library.search.cacheTtlMs. The cache holds at most library.search.cacheSize entries.
+ */
+public class SearchCache {
+
+    private static final int MAX_ENTRIES = Integer.getInteger("library.search.cacheSize", 500);
+    private static final long TTL_MS = Long.getLong("library.search.cacheTtlMs", 60 * 1000);
+
+    private static final SearchCache INSTANCE = new SearchCache(MAX_ENTRIES, TTL_MS);
+
+    private static class Entry {
+        final String query;
+        final List<Book> books;
+        final boolean availableOnly;
+        final long expiresAt;
+
+        Entry(String query, List<Book> books, boolean availableOnly, long expiresAt) {
+            this.query = query;
+            this.books = new ArrayList<>(books);
+            this.availableOnly = availableOnly;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Entry> entries;
+    // Keys of the entries listing each book, for precise invalidation
+    private final Map<Integer, Set<String>> keysByBook = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long version = 0;
+
+    public SearchCache(int maxEntries, long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /** The cache shared by the search panels. */
+    public static SearchCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The books cached for this search, or null on a miss.
+     *
+     * @param view   the shape of the cached books, e.g. a CatalogService projection
+     * @param filter the caller's other filters, or "" for none
+     */
+    public synchronized List<Book> get(String view, String query, String filter) {
+        String key = key(view, query, filter);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+            evict(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return visibleBooks(entry);
+    }
+
+    /**
+     * Changes to the cache so far; read it before querying and pass it to put, which
+     * drops the rows if a book changed in between.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Caches the books found by a search and returns those to show.
+     *
+     * @param books         ranked books with their available quantity; for an
+     *                      "available only" search, include those with no copies left
+     * @param availableOnly hide books whose available quantity is 0
+     * @param readVersion   getVersion() from before the books were read
+     */
+    public synchronized List<Book> put(String view, String query, String filter, List<Book> books,
+                                       boolean availableOnly, long readVersion) {
+        Entry entry = new Entry(normalize(query), books, availableOnly, System.currentTimeMillis() + ttlMs);
+        if (readVersion != version) {
+            return visibleBooks(entry);
+        }
+        String key = key(view, query, filter);
+        evict(key);
+        entries.put(key, entry);
+        for (Book book : books) {
+            keysByBook.computeIfAbsent(book.getId(), id -> new HashSet<>()).add(key);
+        }
+        if (entries.size() > maxEntries) {
+            evict(entries.keySet().iterator().next());
+        }
+        return visibleBooks(entry);
+    }
+
+    /**
+     * Records a committed change to a book's title, author or category, or a new book:
+     * evicts the entries listing it and those whose query matches its new text.
+     */
+    public synchronized void bookChanged(int bookId, String title, String author, String category) {
+        version++;
+        evictBook(bookId);
+        Set<String> words = new HashSet<>();
+        words.addAll(CatalogIndex.tokenize(title));
+        words.addAll(CatalogIndex.tokenize(author));
+        words.addAll(CatalogIndex.tokenize(category));
+        List<String> matched = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (matches(e.getValue().query, words)) {
+                matched.add(e.getKey());
+            }
+        }
+        for (String key : matched) {
+            evict(key);
+        }
+    }
+
+    /** Records that a book was deleted. */
+    public synchronized void bookRemoved(int bookId) {
+        version++;
+        evictBook(bookId);
+    }
+
+    /** Patches a committed change to a book's available_quantity, e.g. -1 after an issue. */
+    public synchronized void availabilityChanged(int bookId, int delta) {
+        version++;
+        Set<String> keys = keysByBook.get(bookId);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                continue;
+            }
+            for (int i = 0; i < entry.books.size(); i++) {
+                Book book = entry.books.get(i);
+                if (book.getId() == bookId) {
+                    entry.books.set(i, book.withAvailableQuantity(Math.max(0, book.getAvailableQuantity() + delta)));
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        version++;
+        entries.clear();
+        keysByBook.clear();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** Fraction of lookups answered from the cache, 0 before the first lookup. */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public String report() {
+        return String.format("Search cache: %d entries, %d hits, %d misses, hit ratio %.1f%%%n",
+            size(), getHits(), getMisses(), 100 * getHitRatio());
+    }
+
+    /** Lower case with single spaces, and a valid ISBN in canonical form. */
+    static String normalize(String query) {
+        String canonical = Isbn.normalize(query);
+        if (canonical != null) {
+            return canonical;
+        }
+        return String.join(" ", CatalogIndex.tokenize(query));
+    }
+
+    private static String key(String view, String query, String filter) {
+        return view + '\u0000' + (filter == null ? "" : filter) + '\u0000' + normalize(query);
+    }
+
+    // Every query word must start some word of the book, as CatalogIndex matches them
+    private static boolean matches(String query, Set<String> words) {
+        if (query.isEmpty()) {
+            return false;
+        }
+        for (String term : query.split(" ")) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(term)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Book> visibleBooks(Entry entry) {
+        List<Book> books = new ArrayList<>(entry.books.size());
+        for (Book book : entry.books) {
+            if (!entry.availableOnly || book.getAvailableQuantity() > 0) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    private void evictBook(int bookId) {
+        Set<String> keys = keysByBook.remove(bookId);
+        if (keys != null) {
+            for (String key : new ArrayList<>(keys)) {
+                evict(key);
+            }
+        }
+    }
+
+    private void evict(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return;
+        }
+        for (Book book : entry.books) {
+            Set<String> keys = keysByBook.get(book.getId());
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByBook.remove(book.getId());
+                }
+            }
+        }
+    }
+}
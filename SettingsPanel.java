@@ -90,21 +90,25 @@ public class SettingsPanel extends JPanel {
     }
 
     private void loadSettings() {
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             String query = "SELECT theme_mode, notification_enabled FROM settings WHERE user_id = ?";
             PreparedStatement pstmt = conn.prepareStatement(query);
             pstmt.setInt(1, userId);
             
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
-                themeComboBox.setSelectedItem(rs.getString("theme_mode"));
-                notificationsCheckBox.setSelected(rs.getBoolean("notification_enabled"));
+                return new Object[]{rs.getString("theme_mode"), rs.getBoolean("notification_enabled")};
             }
-        } catch (SQLException e) {
+            return null;
+        }, settings -> {
+            if (settings != null) {
+                themeComboBox.setSelectedItem(settings[0]);
+                notificationsCheckBox.setSelected((Boolean) settings[1]);
+            }
+        }, e -> {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error loading settings: " + e.getMessage());
-        }
+        });
     }
 
     private void saveSettings() {
@@ -114,36 +118,38 @@ public class SettingsPanel extends JPanel {
         String newPassword = new String(newPasswordField.getPassword());
         String confirmPassword = new String(confirmPasswordField.getPassword());
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        // Check the new password before touching the database
+        boolean changePassword = !currentPassword.isEmpty() && !newPassword.isEmpty();
+        if (changePassword && !newPassword.equals(confirmPassword)) {
+            JOptionPane.showMessageDialog(this, "New passwords do not match!");
+            return;
+        }
+
+        DatabaseExecutor.submit(this, conn -> {
             
             // Update settings
-            String settingsQuery = "INSERT INTO settings (user_id, theme_mode, notification_enabled) " +
-                                 "VALUES (?, ?, ?) " +
-                                 "ON DUPLICATE KEY UPDATE theme_mode = ?, notification_enabled = ?";
+            String settingsQuery = DatabaseConnection.getDialect()
+                .upsert("settings", "user_id", "theme_mode", "notification_enabled");
             PreparedStatement settingsStmt = conn.prepareStatement(settingsQuery);
             settingsStmt.setInt(1, userId);
             settingsStmt.setString(2, theme);
             settingsStmt.setBoolean(3, notifications);
-            settingsStmt.setString(4, theme);
-            settingsStmt.setBoolean(5, notifications);
             settingsStmt.executeUpdate();
 
             // Update password if provided
-            if (!currentPassword.isEmpty() && !newPassword.isEmpty()) {
-                if (!newPassword.equals(confirmPassword)) {
-                    JOptionPane.showMessageDialog(this, "New passwords do not match!");
-                    return;
-                }
-
+            if (changePassword) {
                 String passwordQuery = "UPDATE users SET password = ? WHERE user_id = ? AND password = ?";
                 PreparedStatement passwordStmt = conn.prepareStatement(passwordQuery);
                 passwordStmt.setString(1, newPassword);
                 passwordStmt.setInt(2, userId);
                 passwordStmt.setString(3, currentPassword);
                 
-                int updated = passwordStmt.executeUpdate();
-                if (updated > 0) {
+                return passwordStmt.executeUpdate() > 0;
+            }
+            return null;
+        }, passwordUpdated -> {
+            if (passwordUpdated != null) {
+                if (passwordUpdated) {
                     JOptionPane.showMessageDialog(this, "Password updated successfully!");
                     clearPasswordFields();
                 } else {
@@ -152,10 +158,10 @@ public class SettingsPanel extends JPanel {
             }
 
             JOptionPane.showMessageDialog(this, "Settings saved successfully!");
-        } catch (SQLException e) {
+        }, e -> {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error saving settings: " + e.getMessage());
-        }
+        });
     }
 
     private void clearPasswordFields() {
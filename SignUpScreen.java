@@ -130,8 +130,7 @@ public class SignUpScreen extends JFrame {
             return;
         }
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(getRootPane(), conn -> {
             
             // Check if username already exists
             String checkQuery = "SELECT COUNT(*) FROM users WHERE username = ?";
@@ -140,8 +139,7 @@ public class SignUpScreen extends JFrame {
             ResultSet rs = checkStmt.executeQuery();
             rs.next();
             if (rs.getInt(1) > 0) {
-                JOptionPane.showMessageDialog(this, "Username already exists!");
-                return;
+                return "Username already exists!";
             }
 
             // Check if email already exists
@@ -151,8 +149,7 @@ public class SignUpScreen extends JFrame {
             rs = checkStmt.executeQuery();
             rs.next();
             if (rs.getInt(1) > 0) {
-                JOptionPane.showMessageDialog(this, "Email already registered!");
-                return;
+                return "Email already registered!";
             }
 
             // Insert new user
@@ -174,6 +171,12 @@ public class SignUpScreen extends JFrame {
             PreparedStatement notifyStmt = conn.prepareStatement(notifyQuery);
             notifyStmt.setString(1, "New " + role + " account registration: " + username);
             notifyStmt.executeUpdate();
+            return null;
+        }, problem -> {
+            if (problem != null) {
+                JOptionPane.showMessageDialog(this, problem);
+                return;
+            }
 
             JOptionPane.showMessageDialog(this, 
                 "Account created successfully!\nPlease wait for admin approval to login.");
@@ -181,11 +184,10 @@ public class SignUpScreen extends JFrame {
             // Return to login screen
             new LoginScreen().setVisible(true);
             this.dispose();
-
-        } catch (SQLException e) {
+        }, e -> {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error creating account: " + e.getMessage());
-        }
+        });
     }
 
     private boolean isValidEmail(String email) {
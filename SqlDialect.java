@@ -0,0 +1,97 @@
+/**
+ * The SQL that differs between the MySQL server and the embedded H2 database.
+ *
+ * Panels build their date arithmetic and upserts through the dialect returned by
+ * DatabaseConnection.getDialect() instead of writing MySQL syntax directly.
+ */
+public enum SqlDialect {
+
+    MYSQL("com.mysql.cj.jdbc.Driver") {
+        @Override
+        public String addDays(String dateExpr, int days) {
+            return "DATE_ADD(" + dateExpr + ", INTERVAL " + days + " DAY)";
+        }
+
+        @Override
+        public String daysBetween(String laterExpr, String earlierExpr) {
+            return "DATEDIFF(" + laterExpr + ", " + earlierExpr + ")";
+        }
+
+        @Override
+        public String upsert(String table, String keyColumn, String... columns) {
+            StringBuilder sql = new StringBuilder(insertInto(table, keyColumn, columns));
+            sql.append(" ON DUPLICATE KEY UPDATE ");
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(columns[i]).append(" = VALUES(").append(columns[i]).append(")");
+            }
+            return sql.toString();
+        }
+
+        @Override
+        public String autoIncrementKey() {
+            return "INT PRIMARY KEY AUTO_INCREMENT";
+        }
+    },
+
+    H2("org.h2.Driver") {
+        @Override
+        public String addDays(String dateExpr, int days) {
+            return "DATEADD(DAY, " + days + ", " + dateExpr + ")";
+        }
+
+        @Override
+        public String daysBetween(String laterExpr, String earlierExpr) {
+            // H2 counts from the second argument to the third, the opposite of MySQL
+            return "DATEDIFF(DAY, " + earlierExpr + ", " + laterExpr + ")";
+        }
+
+        @Override
+        public String upsert(String table, String keyColumn, String... columns) {
+            return insertInto(table, keyColumn, columns).replaceFirst("^INSERT INTO", "MERGE INTO")
+                .replace(") VALUES (", ") KEY (" + keyColumn + ") VALUES (");
+        }
+
+        @Override
+        public String autoIncrementKey() {
+            return "INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY";
+        }
+    };
+
+    private final String driverClass;
+
+    SqlDialect(String driverClass) {
+        this.driverClass = driverClass;
+    }
+
+    public String getDriverClass() {
+        return driverClass;
+    }
+
+    /** Expression for dateExpr moved forward by the given number of days. */
+    public abstract String addDays(String dateExpr, int days);
+
+    /** Expression for the whole days from earlierExpr to laterExpr (MySQL DATEDIFF order). */
+    public abstract String daysBetween(String laterExpr, String earlierExpr);
+
+    /**
+     * Insert-or-update keyed on keyColumn, with one ? per column in the order given:
+     * the key column first, then the columns.
+     */
+    public abstract String upsert(String table, String keyColumn, String... columns);
+
+    /** Column definition for an auto-generated integer primary key. */
+    public abstract String autoIncrementKey();
+
+    private static String insertInto(String table, String keyColumn, String... columns) {
+        StringBuilder names = new StringBuilder(keyColumn);
+        StringBuilder marks = new StringBuilder("?");
+        for (String column : columns) {
+            names.append(", ").append(column);
+            marks.append(", ?");
+        }
+        return "INSERT INTO " + table + " (" + names + ") VALUES (" + marks + ")";
+    }
+}
@@ -0,0 +1,137 @@
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of prepared statements for a single physical connection, keyed by SQL text.
+ *
+ * A cached statement is checked out while a caller is using it and checked back in
+ * when the caller closes it or the connection goes back to the pool. Statements
+ * pushed out of the cache are closed, or closed on check-in if still in use.
+ */
+public class StatementCache {
+
+    public interface Preparer {
+        PreparedStatement prepare(String sql) throws SQLException;
+    }
+
+    private static class Entry {
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    private final int maxSize;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final LinkedHashMap<String, Entry> entries;
+
+    public StatementCache(int maxSize, AtomicLong hits, AtomicLong misses) {
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= StatementCache.this.maxSize) {
+                    return false;
+                }
+                Entry entry = eldest.getValue();
+                entry.evicted = true;
+                if (!entry.inUse) {
+                    closeQuietly(entry.statement);
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Checks out the cached statement for this SQL, preparing and caching it on a miss.
+     * Returns null if the statement is already checked out, in which case the caller
+     * should prepare a private, uncached statement.
+     */
+    public synchronized PreparedStatement checkOut(String sql, Preparer preparer) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null) {
+            if (entry.inUse) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            entry.inUse = true;
+            return entry.statement;
+        }
+        misses.incrementAndGet();
+        entry = new Entry(preparer.prepare(sql));
+        entry.inUse = true;
+        entries.put(sql, entry);
+        return entry.statement;
+    }
+
+    public synchronized void checkIn(String sql, PreparedStatement statement) {
+        Entry entry = entries.get(sql);
+        if (entry != null && entry.statement == statement) {
+            release(entry);
+        } else {
+            // Evicted while checked out
+            closeQuietly(statement);
+        }
+    }
+
+    /** Checks every statement back in; called when the connection returns to the pool. */
+    public synchronized void releaseAll() {
+        for (Entry entry : new ArrayList<>(entries.values())) {
+            if (entry.inUse) {
+                release(entry);
+            }
+        }
+    }
+
+    public synchronized void closeAll() {
+        for (Entry entry : entries.values()) {
+            closeQuietly(entry.statement);
+        }
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void release(Entry entry) {
+        entry.inUse = false;
+        if (entry.evicted) {
+            closeQuietly(entry.statement);
+            return;
+        }
+        try {
+            // Closes the open cursor and drops bind values so nothing leaks to the next caller
+            PreparedStatement statement = entry.statement;
+            if (statement.getResultSet() != null) {
+                statement.getResultSet().close();
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+        } catch (SQLException e) {
+            entry.evicted = true;
+            entries.values().remove(entry);
+            closeQuietly(entry.statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Statement is being discarded anyway
+        }
+    }
+}
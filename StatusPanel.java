@@ -2,6 +2,8 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class StatusPanel extends JPanel {
     private int userId;
@@ -47,9 +49,7 @@ public class StatusPanel extends JPanel {
     }
 
     private void loadBorrowings() {
-        tableModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             String query = "SELECT b.title, bb.borrow_date, bb.due_date, bb.status, bb.fine_amount " +
                           "FROM book_borrowings bb " +
                           "JOIN books b ON bb.book_id = b.book_id " +
@@ -59,37 +59,44 @@ public class StatusPanel extends JPanel {
             pstmt.setInt(1, userId);
             
             ResultSet rs = pstmt.executeQuery();
+
+            List<Object[]> rows = new ArrayList<>();
             while (rs.next()) {
-                Object[] row = {
+                rows.add(new Object[]{
                     rs.getString("title"),
                     rs.getDate("borrow_date"),
                     rs.getDate("due_date"),
                     rs.getString("status"),
                     String.format("$%.2f", rs.getDouble("fine_amount"))
-                };
+                });
+            }
+            return rows;
+        }, rows -> {
+            tableModel.setRowCount(0);
+            for (Object[] row : rows) {
                 tableModel.addRow(row);
             }
-        } catch (SQLException e) {
+        }, e -> {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error loading borrowing history: " + e.getMessage());
-        }
+        });
     }
 
     private void updateFineAmount() {
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             String query = "SELECT SUM(fine_amount) FROM book_borrowings WHERE user_id = ? AND fine_paid = false";
             PreparedStatement pstmt = conn.prepareStatement(query);
             pstmt.setInt(1, userId);
             
             ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                double totalFine = rs.getDouble(1);
+            return rs.next() ? rs.getDouble(1) : null;
+        }, totalFine -> {
+            if (totalFine != null) {
                 fineLabel.setText(String.format("Total Outstanding Fines: $%.2f", totalFine));
             }
-        } catch (SQLException e) {
+        }, e -> {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error calculating fines: " + e.getMessage());
-        }
+        });
     }
 }
@@ -1,9 +1,7 @@
 import javax.swing.*;
 import java.awt.*;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.SQLException;
 
 public class StudentDashboard extends JFrame {
     private int userId;
@@ -164,8 +162,7 @@ public class StudentDashboard extends JFrame {
         welcomePanel.add(welcomeLabel, gbc);
 
         // Add some stats or quick info
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(welcomePanel, conn -> {
             
             // Get borrowed books count
             PreparedStatement stmt = conn.prepareStatement(
@@ -173,16 +170,18 @@ public class StudentDashboard extends JFrame {
             );
             stmt.setInt(1, userId);
             ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                JLabel statsLabel = new JLabel("Currently Borrowed Books: " + rs.getInt(1));
+            return rs.next() ? rs.getInt(1) : null;
+        }, borrowedCount -> {
+            if (borrowedCount != null) {
+                JLabel statsLabel = new JLabel("Currently Borrowed Books: " + borrowedCount);
                 statsLabel.setFont(new Font("Segoe UI", Font.PLAIN, 16));
                 statsLabel.setForeground(isDarkMode ? Color.WHITE : Color.BLACK);
                 gbc.insets = new Insets(20, 10, 10, 10);
                 welcomePanel.add(statsLabel, gbc);
+                welcomePanel.revalidate();
+                welcomePanel.repaint();
             }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
+        }, Exception::printStackTrace);
 
         contentPanel.add(welcomePanel);
         contentPanel.revalidate();
@@ -5,6 +5,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class StudentRecordsPanel extends JPanel {
     private int userId;
@@ -128,9 +130,7 @@ public class StudentRecordsPanel extends JPanel {
     }
 
     private void loadStudentData() {
-        tableModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             String sql = 
                 "SELECT u.user_id, u.full_name, u.email, u.is_active, " +
                 "(SELECT COUNT(*) FROM book_borrowings WHERE user_id = u.user_id) as total_borrowed, " +
@@ -140,30 +140,34 @@ public class StudentRecordsPanel extends JPanel {
             PreparedStatement stmt = conn.prepareStatement(sql);
             ResultSet rs = stmt.executeQuery();
 
+            List<Object[]> rows = new ArrayList<>();
             while (rs.next()) {
-                Object[] row = {
+                rows.add(new Object[]{
                     rs.getInt("user_id"),
                     rs.getString("full_name"),
                     rs.getString("email"),
                     rs.getInt("total_borrowed"),
                     rs.getInt("total_returned"),
                     rs.getBoolean("is_active") ? "Active" : "Inactive"
-                };
+                });
+            }
+            return rows;
+        }, rows -> {
+            tableModel.setRowCount(0);
+            for (Object[] row : rows) {
                 tableModel.addRow(row);
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this,
                 "Error loading student data: " + ex.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
     private void searchStudents(String searchText) {
-        tableModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             String sql = 
                 "SELECT u.user_id, u.full_name, u.email, u.is_active, " +
                 "(SELECT COUNT(*) FROM book_borrowings WHERE user_id = u.user_id) as total_borrowed, " +
@@ -179,24 +183,30 @@ public class StudentRecordsPanel extends JPanel {
 
             ResultSet rs = stmt.executeQuery();
 
+            List<Object[]> rows = new ArrayList<>();
             while (rs.next()) {
-                Object[] row = {
+                rows.add(new Object[]{
                     rs.getInt("user_id"),
                     rs.getString("full_name"),
                     rs.getString("email"),
                     rs.getInt("total_borrowed"),
                     rs.getInt("total_returned"),
                     rs.getBoolean("is_active") ? "Active" : "Inactive"
-                };
+                });
+            }
+            return rows;
+        }, rows -> {
+            tableModel.setRowCount(0);
+            for (Object[] row : rows) {
                 tableModel.addRow(row);
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this,
                 "Error searching students: " + ex.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
     private void viewStudentDetails() {
@@ -228,15 +238,24 @@ public class StudentRecordsPanel extends JPanel {
     }
 
     private void showStudentDetailsDialog(int studentId) {
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             PreparedStatement stmt = conn.prepareStatement(
                 "SELECT * FROM users WHERE user_id = ?"
             );
             stmt.setInt(1, studentId);
             ResultSet rs = stmt.executeQuery();
 
-            if (rs.next()) {
+            if (!rs.next()) {
+                return null;
+            }
+            return new String[]{
+                String.valueOf(rs.getInt("user_id")),
+                rs.getString("full_name"),
+                rs.getString("email"),
+                rs.getBoolean("is_active") ? "Active" : "Inactive"
+            };
+        }, details -> {
+            if (details != null) {
                 JDialog dialog = new JDialog();
                 dialog.setTitle("Student Details");
                 dialog.setLayout(new BorderLayout(10, 10));
@@ -246,21 +265,21 @@ public class StudentRecordsPanel extends JPanel {
                 JPanel detailsPanel = new JPanel(new GridLayout(0, 2, 10, 10));
                 detailsPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
-                addDetailField(detailsPanel, "Student ID:", String.valueOf(rs.getInt("user_id")));
-                addDetailField(detailsPanel, "Full Name:", rs.getString("full_name"));
-                addDetailField(detailsPanel, "Email:", rs.getString("email"));
-                addDetailField(detailsPanel, "Status:", rs.getBoolean("is_active") ? "Active" : "Inactive");
+                addDetailField(detailsPanel, "Student ID:", details[0]);
+                addDetailField(detailsPanel, "Full Name:", details[1]);
+                addDetailField(detailsPanel, "Email:", details[2]);
+                addDetailField(detailsPanel, "Status:", details[3]);
 
                 dialog.add(detailsPanel, BorderLayout.CENTER);
                 dialog.setVisible(true);
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this,
                 "Error loading student details: " + ex.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
     private void showStudentHistoryDialog(int studentId) {
@@ -274,8 +293,7 @@ public class StudentRecordsPanel extends JPanel {
         DefaultTableModel historyModel = new DefaultTableModel(columns, 0);
         JTable historyTable = new JTable(historyModel);
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             PreparedStatement stmt = conn.prepareStatement(
                 "SELECT b.title, bb.borrow_date, bb.return_date, bb.status " +
                 "FROM book_borrowings bb " +
@@ -286,22 +304,28 @@ public class StudentRecordsPanel extends JPanel {
             stmt.setInt(1, studentId);
             ResultSet rs = stmt.executeQuery();
 
+            List<Object[]> rows = new ArrayList<>();
             while (rs.next()) {
-                Object[] row = {
+                rows.add(new Object[]{
                     rs.getString("title"),
                     rs.getDate("borrow_date"),
                     rs.getDate("return_date"),
                     rs.getString("status")
-                };
+                });
+            }
+            return rows;
+        }, rows -> {
+            historyModel.setRowCount(0);
+            for (Object[] row : rows) {
                 historyModel.addRow(row);
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this,
                 "Error loading borrowing history: " + ex.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
-        }
+        });
 
         dialog.add(new JScrollPane(historyTable), BorderLayout.CENTER);
         dialog.setVisible(true);
@@ -2,6 +2,8 @@ import javax.swing.*;
 import javax.swing.table.*;
 import java.awt.*;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class UserApprovalPanel extends JPanel {
     private JTable pendingTable;
@@ -44,73 +46,106 @@ public class UserApprovalPanel extends JPanel {
     }
 
     private void handleApproval(boolean isApproved) {
-        int selectedRow = pendingTable.getSelectedRow();
-        if (selectedRow == -1) {
+        int[] selectedRows = pendingTable.getSelectedRows();
+        if (selectedRows.length == 0) {
             JOptionPane.showMessageDialog(this, "Please select a user to " + 
                 (isApproved ? "approve" : "reject"));
             return;
         }
 
-        int userId = (int) tableModel.getValueAt(selectedRow, 0);
-        String username = (String) tableModel.getValueAt(selectedRow, 1);
+        List<Integer> userIds = new ArrayList<>();
+        List<String> usernames = new ArrayList<>();
+        for (int row : selectedRows) {
+            userIds.add((int) tableModel.getValueAt(row, 0));
+            usernames.add((String) tableModel.getValueAt(row, 1));
+        }
+        String message = "Your account has been " + 
+            (isApproved ? "approved" : "rejected") + " by the administrator.";
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(
-                "UPDATE users SET is_active = ? WHERE user_id = ?"
-            );
-            
-            stmt.setBoolean(1, isApproved);
-            stmt.setInt(2, userId);
-            
-            int result = stmt.executeUpdate();
-            if (result > 0) {
-                tableModel.removeRow(selectedRow);
-                JOptionPane.showMessageDialog(this, 
-                    "User " + username + " has been " + 
-                    (isApproved ? "approved" : "rejected") + " successfully");
-                
-                // Add notification
-                PreparedStatement notifyStmt = conn.prepareStatement(
-                    "INSERT INTO notifications (user_id, message) VALUES (?, ?)"
-                );
-                notifyStmt.setInt(1, userId);
-                notifyStmt.setString(2, "Your account has been " + 
-                    (isApproved ? "approved" : "rejected") + " by the administrator.");
-                notifyStmt.executeUpdate();
+        DatabaseExecutor.submit(this, conn -> {
+            BatchWriter.Result result;
+            try (BatchWriter users = new BatchWriter(conn,
+                    "UPDATE users SET is_active = ? WHERE user_id = ?")) {
+                for (int userId : userIds) {
+                    users.add(isApproved, userId);
+                }
+                result = users.finish();
+            }
+
+            // Add notifications for the users that were updated
+            try (BatchWriter notifications = new BatchWriter(conn,
+                    "INSERT INTO notifications (user_id, message) VALUES (?, ?)")) {
+                for (int i = 0; i < userIds.size(); i++) {
+                    if (!result.failed(i)) {
+                        notifications.add(userIds.get(i), message);
+                    }
+                }
+                notifications.finish();
             }
-        } catch (SQLException ex) {
+            return result;
+        }, result -> {
+            List<String> updated = new ArrayList<>();
+            List<String> failed = new ArrayList<>();
+            for (int i = 0; i < userIds.size(); i++) {
+                if (result.failed(i)) {
+                    failed.add(usernames.get(i));
+                    continue;
+                }
+                updated.add(usernames.get(i));
+                for (int row = 0; row < tableModel.getRowCount(); row++) {
+                    if ((int) tableModel.getValueAt(row, 0) == userIds.get(i)) {
+                        tableModel.removeRow(row);
+                        break;
+                    }
+                }
+            }
+
+            String done = updated.size() == 1
+                ? "User " + updated.get(0) + " has"
+                : updated.size() + " users have";
+            StringBuilder summary = new StringBuilder(done + " been " + 
+                (isApproved ? "approved" : "rejected") + " successfully");
+            if (!failed.isEmpty()) {
+                summary.append("\nCould not update: ").append(String.join(", ", failed));
+            }
+            JOptionPane.showMessageDialog(this, summary.toString());
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this, 
                 "Error " + (isApproved ? "approving" : "rejecting") + 
                 " user: " + ex.getMessage());
-        }
+        });
     }
 
     private void loadPendingApprovals() {
-        tableModel.setRowCount(0);
-        try {
-            Connection conn = DatabaseConnection.getConnection();
+        DatabaseExecutor.submit(this, conn -> {
             PreparedStatement stmt = conn.prepareStatement(
                 "SELECT user_id, username, full_name, email, role " +
                 "FROM users WHERE is_active = false ORDER BY user_id"
             );
             
             ResultSet rs = stmt.executeQuery();
+
+            List<Object[]> rows = new ArrayList<>();
             while (rs.next()) {
-                Object[] row = {
+                rows.add(new Object[]{
                     rs.getInt("user_id"),
                     rs.getString("username"),
                     rs.getString("full_name"),
                     rs.getString("email"),
                     rs.getString("role")
-                };
+                });
+            }
+            return rows;
+        }, rows -> {
+            tableModel.setRowCount(0);
+            for (Object[] row : rows) {
                 tableModel.addRow(row);
             }
-        } catch (SQLException ex) {
+        }, ex -> {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this, 
                 "Error loading pending approvals: " + ex.getMessage());
-        }
+        });
     }
 }
\ No newline at end of file